@@ -0,0 +1,83 @@
+package org.jenkinsci.plugins.pretestedintegration.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.FindCommitAuthorCallback;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.GetAllCommitsFromBranchCallback;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.GetCommitCountFromBranchCallback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Walks the development branch of a synthetic repository the way the integration strategies do:
+ * counting its commits, collecting their messages for the squash commit, and finding the author of its tip.
+ * See {@link SyntheticRepositories} for the repositories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BranchWalkBenchmark {
+
+    @Param({"LINEAR", "MERGE_HEAVY"})
+    public SyntheticRepositories.Shape shape;
+
+    @Param({"10", "1000", "100000"})
+    public int commits;
+
+    private Repository repo;
+    private ObjectId devTip;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        repo = SyntheticRepositories.history(shape, commits);
+        devTip = repo.resolve(Constants.R_REMOTES + SyntheticRepositories.DEV_BRANCH);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repo.close();
+    }
+
+    /**
+     * The exact count, as when the strategies decide between squash and accumulated.
+     */
+    @Benchmark
+    public Integer countCommits() throws IOException, InterruptedException {
+        return new GetCommitCountFromBranchCallback(devTip, SyntheticRepositories.MASTER).invoke(repo, null);
+    }
+
+    /**
+     * The bounded count, as when the strategies only need to know if there is more than one commit.
+     */
+    @Benchmark
+    public Integer countCommitsUpToTwo() throws IOException, InterruptedException {
+        return new GetCommitCountFromBranchCallback(devTip, SyntheticRepositories.MASTER, 2).invoke(repo, null);
+    }
+
+    @Benchmark
+    public String collectCommitMessages() throws IOException, InterruptedException {
+        return new GetAllCommitsFromBranchCallback(devTip, SyntheticRepositories.MASTER).invoke(repo, null);
+    }
+
+    @Benchmark
+    public String findCommitAuthor() throws IOException, InterruptedException {
+        return new FindCommitAuthorCallback(devTip).invoke(repo, null);
+    }
+}
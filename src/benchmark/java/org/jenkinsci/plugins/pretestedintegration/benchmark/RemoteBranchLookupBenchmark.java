@@ -0,0 +1,63 @@
+package org.jenkinsci.plugins.pretestedintegration.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.RemoteBranchExistsCallback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looks up a remote branch among many, the way the integration strategies check that the development branch
+ * still exists before merging it (<code>containsRemoteBranch</code>).
+ * See {@link SyntheticRepositories} for the repositories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemoteBranchLookupBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int refs;
+
+    @Param({"true", "false"})
+    public boolean packed;
+
+    private Repository repo;
+    private String existing;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        repo = SyntheticRepositories.refs(refs, packed);
+        existing = SyntheticRepositories.branchName(refs / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repo.close();
+    }
+
+    @Benchmark
+    public Boolean existingBranch() throws IOException, InterruptedException {
+        return new RemoteBranchExistsCallback(existing).invoke(repo, null);
+    }
+
+    @Benchmark
+    public Boolean missingBranch() throws IOException, InterruptedException {
+        return new RemoteBranchExistsCallback("origin/ready/no-such-branch").invoke(repo, null);
+    }
+}
@@ -0,0 +1,297 @@
+package org.jenkinsci.plugins.pretestedintegration.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+/**
+ * Generates the repositories the benchmarks run on, written straight to the object database so even 100k commits
+ * take minutes rather than the hours of checking out and committing each one.
+ * <p>
+ * Every repository has a short history on <code>master</code> (also <code>origin/master</code>) and a development
+ * branch <code>origin/ready/feature</code> of the requested number of commits on top of it. Each commit changes one
+ * file of a wide tree, {@link #DIRECTORIES} directories of {@link #FILES_PER_DIRECTORY} files, so trees are as large
+ * as in a real project. Optionally there are many other <code>origin/ready/branch-N</code> refs, packed or loose.
+ * <p>
+ * Repositories are generated once below {@link #ROOT} and reused by later runs.
+ */
+public final class SyntheticRepositories {
+
+    /**
+     * The directory holding the generated repositories, the system property <code>benchmark.repos</code> or
+     * <code>target/benchmark-repos</code>.
+     */
+    public static final File ROOT = new File(System.getProperty("benchmark.repos", "target/benchmark-repos"));
+
+    public static final String MASTER = "master";
+    public static final String REMOTE_MASTER = "origin/master";
+    public static final String DEV_BRANCH = "origin/ready/feature";
+    public static final int DIRECTORIES = 32;
+    public static final int FILES_PER_DIRECTORY = 32;
+
+    /**
+     * The commits on master before the development branch starts.
+     */
+    private static final int BASE_COMMITS = 10;
+
+    /**
+     * Every how many commits a merge-heavy branch merges in a side commit.
+     */
+    private static final int MERGE_INTERVAL = 10;
+
+    private static final String COMPLETE_MARKER = "benchmark-complete";
+    private static final long START_SECONDS = 1500000000L;
+    private static final String[] AUTHORS = {"Alice", "Bob", "Carol", "Dave"};
+
+    /**
+     * The shape of the history of the development branch.
+     */
+    public enum Shape {
+        /** One commit after the other */
+        LINEAR,
+        /** Every tenth commit merges a commit from a side branch, as with pull requests */
+        MERGE_HEAVY
+    }
+
+    private SyntheticRepositories() {
+    }
+
+    /**
+     * @param shape The shape of the development branch
+     * @param commits The commits on the development branch, not counting the side commits of merges
+     * @return the repository, generated if needed
+     * @throws IOException if the repository could not be generated
+     */
+    public static Repository history(Shape shape, int commits) throws IOException {
+        File dir = new File(ROOT, "history-" + shape.name().toLowerCase() + "-" + commits);
+        if (!isComplete(dir)) {
+            Repository repo = create(dir);
+            try {
+                Generator generator = new Generator(repo);
+                generator.history(shape, commits);
+                generator.gc();
+                markComplete(dir);
+            } finally {
+                repo.close();
+            }
+        }
+        return open(dir);
+    }
+
+    /**
+     * @param refs The other remote branches besides master and the development branch
+     * @param packed Whether the refs are packed, as after a clone, or loose, as after fetches
+     * @return the repository, generated if needed
+     * @throws IOException if the repository could not be generated
+     */
+    public static Repository refs(int refs, boolean packed) throws IOException {
+        File dir = new File(ROOT, "refs-" + refs + (packed ? "-packed" : "-loose"));
+        if (!isComplete(dir)) {
+            Repository repo = create(dir);
+            try {
+                Generator generator = new Generator(repo);
+                generator.history(Shape.LINEAR, MERGE_INTERVAL);
+                generator.gc();
+                generator.branches(refs, packed);
+                markComplete(dir);
+            } finally {
+                repo.close();
+            }
+        }
+        return open(dir);
+    }
+
+    /**
+     * @param index The number of one of the refs made by {@link #refs}
+     * @return its remote branch name, like origin/ready/branch-42
+     */
+    public static String branchName(int index) {
+        return String.format("origin/ready/branch-%d", index);
+    }
+
+    private static boolean isComplete(File dir) {
+        return new File(dir, COMPLETE_MARKER).isFile();
+    }
+
+    private static void markComplete(File dir) throws IOException {
+        Files.createFile(new File(dir, COMPLETE_MARKER).toPath());
+    }
+
+    private static Repository create(File dir) throws IOException {
+        // An earlier run was interrupted, start over
+        if (dir.exists()) {
+            FileUtils.deleteDirectory(dir);
+        }
+        Repository repo = new FileRepositoryBuilder().setGitDir(dir).build();
+        repo.create(true);
+        return repo;
+    }
+
+    private static Repository open(File dir) throws IOException {
+        return new FileRepositoryBuilder().setGitDir(dir).setMustExist(true).build();
+    }
+
+    /**
+     * Writes commits with one changed file each, keeping the current tree in memory.
+     */
+    private static final class Generator {
+        private final Repository repo;
+        private final ObjectInserter inserter;
+        private final ObjectId[][] blobs = new ObjectId[DIRECTORIES][FILES_PER_DIRECTORY];
+        private final ObjectId[] directories = new ObjectId[DIRECTORIES];
+        private final List<ObjectId> commits = new ArrayList<>();
+        private int changes;
+
+        Generator(Repository repo) throws IOException {
+            this.repo = repo;
+            this.inserter = repo.newObjectInserter();
+            for (int d = 0; d < DIRECTORIES; d++) {
+                for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+                    blobs[d][f] = blob(String.format("dir-%02d/file-%02d.txt initial%n", d, f));
+                }
+                directories[d] = directory(d);
+            }
+        }
+
+        void history(Shape shape, int count) throws IOException {
+            ObjectId tip = null;
+            for (int i = 0; i < BASE_COMMITS; i++) {
+                tip = commit("Base commit " + i, tip);
+            }
+            setRef(Constants.R_HEADS + MASTER, tip);
+            setRef(Constants.R_REMOTES + REMOTE_MASTER, tip);
+            repo.updateRef(Constants.HEAD).link(Constants.R_HEADS + MASTER);
+
+            for (int i = 1; i <= count; i++) {
+                if (shape == Shape.MERGE_HEAVY && i % MERGE_INTERVAL == 0) {
+                    ObjectId side = commit("Side commit " + i, tip);
+                    tip = commit("Merge side commit " + i, tip, side);
+                } else {
+                    tip = commit("Feature commit " + i + "\n\nChanges one file of the wide tree.", tip);
+                }
+                inserter.flush();
+            }
+            setRef(Constants.R_REMOTES + DEV_BRANCH, tip);
+        }
+
+        /**
+         * Points the refs at commits spread over the history.
+         */
+        void branches(int count, boolean packed) throws IOException {
+            if (packed) {
+                // Sorted by name, like git pack-refs writes them
+                Map<String, ObjectId> refs = new TreeMap<>();
+                for (int i = 0; i < count; i++) {
+                    refs.put(Constants.R_REMOTES + branchName(i), commits.get(i % commits.size()));
+                }
+                for (Map.Entry<String, Ref> ref : repo.getAllRefs().entrySet()) {
+                    if (!ref.getValue().isSymbolic()) {
+                        refs.put(ref.getKey(), ref.getValue().getObjectId());
+                    }
+                }
+                File packedRefs = new File(repo.getDirectory(), Constants.PACKED_REFS);
+                try (Writer writer = new OutputStreamWriter(Files.newOutputStream(packedRefs.toPath()), StandardCharsets.UTF_8)) {
+                    writer.write("# pack-refs with: peeled fully-peeled \n");
+                    for (Map.Entry<String, ObjectId> ref : refs.entrySet()) {
+                        writer.write(ref.getValue().name() + " " + ref.getKey() + "\n");
+                    }
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    setRef(Constants.R_REMOTES + branchName(i), commits.get(i % commits.size()));
+                }
+            }
+        }
+
+        /**
+         * Packs the loose objects, as a clone would have them.
+         */
+        void gc() throws IOException {
+            inserter.flush();
+            GC gc = new GC((FileRepository) repo);
+            gc.setProgressMonitor(NullProgressMonitor.INSTANCE);
+            try {
+                gc.gc();
+            } catch (ParseException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        private ObjectId commit(String message, ObjectId... parents) throws IOException {
+            int file = changes % (DIRECTORIES * FILES_PER_DIRECTORY);
+            int d = file / FILES_PER_DIRECTORY;
+            int f = file % FILES_PER_DIRECTORY;
+            blobs[d][f] = blob(String.format("dir-%02d/file-%02d.txt change %d%n", d, f, changes));
+            directories[d] = directory(d);
+
+            TreeFormatter root = new TreeFormatter();
+            for (int i = 0; i < DIRECTORIES; i++) {
+                root.append(String.format("dir-%02d", i), FileMode.TREE, directories[i]);
+            }
+
+            PersonIdent ident = new PersonIdent(AUTHORS[changes % AUTHORS.length],
+                    AUTHORS[changes % AUTHORS.length].toLowerCase() + "@example.com",
+                    (START_SECONDS + changes * 60L) * 1000, 0);
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(inserter.insert(root));
+            for (ObjectId parent : parents) {
+                if (parent != null) {
+                    commit.addParentId(parent);
+                }
+            }
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage(message);
+            ObjectId id = inserter.insert(commit);
+            commits.add(id);
+            changes++;
+            return id;
+        }
+
+        private ObjectId blob(String content) throws IOException {
+            return inserter.insert(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private ObjectId directory(int d) throws IOException {
+            TreeFormatter tree = new TreeFormatter();
+            for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+                tree.append(String.format("file-%02d.txt", f), FileMode.REGULAR_FILE, blobs[d][f]);
+            }
+            return inserter.insert(tree);
+        }
+
+        private void setRef(String name, ObjectId id) throws IOException {
+            inserter.flush();
+            RefUpdate update = repo.updateRef(name);
+            update.setNewObjectId(id);
+            update.setForceUpdate(true);
+            RefUpdate.Result result = update.update();
+            if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FORCED) {
+                throw new IOException("Could not set " + name + ": " + result);
+            }
+        }
+    }
+}
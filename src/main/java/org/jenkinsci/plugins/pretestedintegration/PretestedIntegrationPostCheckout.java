@@ -2,30 +2,53 @@ package org.jenkinsci.plugins.pretestedintegration;
 
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.matrix.*;
 import hudson.model.*;
+import hudson.plugins.git.Branch;
+import hudson.plugins.git.GitException;
 import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.Revision;
+import hudson.plugins.git.RevisionParameterAction;
 import hudson.plugins.git.extensions.impl.RelativeTargetDirectory;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
+import hudson.util.FormValidation;
+import jenkins.model.ParameterizedJobMixIn;
 import jenkins.tasks.SimpleBuildStep;
+import org.eclipse.jgit.lib.ObjectId;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.gitclient.Git;
 import org.jenkinsci.plugins.gitclient.GitClient;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.PushFailedException;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.BatchIntegrationAction;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.CommitTimeCallback;
 import org.jenkinsci.plugins.pretestedintegration.scm.git.GitBridge;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.IntegrationMetrics;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.IntegrationOutcomeAction;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.IntegrationTimingAction;
 import org.jenkinsci.plugins.pretestedintegration.scm.git.PretestTriggerCommitAction;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.PushRetryPolicy;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.SpeculativeChains;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.SpeculativeIntegrationAction;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,12 +61,121 @@ public class PretestedIntegrationPostCheckout extends Recorder implements Serial
     final static String LOG_PREFIX = "[PREINT] ";
     private static final Logger LOGGER = Logger.getLogger(PretestedIntegrationPostCheckout.class.getName());
 
+    /**
+     * Push the integration branch and delete the development branch in one atomic push.
+     */
+    private boolean atomicPush;
+
+    /**
+     * Retries of a failed push to the integration branch, null for the default.
+     */
+    private Integer pushRetries;
+
+    /**
+     * Largest delay in seconds before the first push retry, null for the default.
+     */
+    private Integer pushRetryDelay;
+
+    /**
+     * Total time in seconds pushing may take including retries, null for the default.
+     */
+    private Integer pushRetryBudget;
+
+    /**
+     * How often the tested commit is re-applied when the integration branch moved while building, 0 to fail right away.
+     */
+    private int rebaseAttempts;
+
     /**
      * Constructor for PretestedIntegrationPostCheckout
      */
     @DataBoundConstructor
     public PretestedIntegrationPostCheckout() { }
 
+    /**
+     * @return true if the integration branch is pushed and the development branch deleted in one atomic push
+     */
+    public boolean isAtomicPush() {
+        return atomicPush;
+    }
+
+    /**
+     * @param atomicPush true to push the integration branch and delete the development branch in one atomic push
+     */
+    @DataBoundSetter
+    public void setAtomicPush(boolean atomicPush) {
+        this.atomicPush = atomicPush;
+    }
+
+    /**
+     * @return the number of retries of a failed push to the integration branch
+     */
+    public int getPushRetries() {
+        return pushRetries == null ? PushRetryPolicy.DEFAULT_MAX_RETRIES : pushRetries;
+    }
+
+    /**
+     * @param pushRetries the number of retries of a failed push to the integration branch
+     */
+    @DataBoundSetter
+    public void setPushRetries(int pushRetries) {
+        this.pushRetries = Math.max(0, pushRetries);
+    }
+
+    /**
+     * @return the largest delay in seconds before the first push retry
+     */
+    public int getPushRetryDelay() {
+        return pushRetryDelay == null ? (int) TimeUnit.MILLISECONDS.toSeconds(PushRetryPolicy.DEFAULT_INITIAL_DELAY_MILLIS) : pushRetryDelay;
+    }
+
+    /**
+     * @param pushRetryDelay the largest delay in seconds before the first push retry, doubled for each following retry
+     */
+    @DataBoundSetter
+    public void setPushRetryDelay(int pushRetryDelay) {
+        this.pushRetryDelay = Math.max(0, pushRetryDelay);
+    }
+
+    /**
+     * @return the total time in seconds pushing may take including retries, 0 for no limit
+     */
+    public int getPushRetryBudget() {
+        return pushRetryBudget == null ? (int) TimeUnit.MILLISECONDS.toSeconds(PushRetryPolicy.DEFAULT_BUDGET_MILLIS) : pushRetryBudget;
+    }
+
+    /**
+     * @param pushRetryBudget the total time in seconds pushing may take including retries, 0 for no limit
+     */
+    @DataBoundSetter
+    public void setPushRetryBudget(int pushRetryBudget) {
+        this.pushRetryBudget = Math.max(0, pushRetryBudget);
+    }
+
+    /**
+     * @return how often the tested commit is re-applied when the integration branch moved while building
+     */
+    public int getRebaseAttempts() {
+        return rebaseAttempts;
+    }
+
+    /**
+     * @param rebaseAttempts how often the tested commit is re-applied when the integration branch moved while building, 0 to fail right away
+     */
+    @DataBoundSetter
+    public void setRebaseAttempts(int rebaseAttempts) {
+        this.rebaseAttempts = Math.max(0, rebaseAttempts);
+    }
+
+    /**
+     * @return the retry policy for pushes to the integration branch
+     */
+    public PushRetryPolicy getPushRetryPolicy() {
+        long initialDelay = TimeUnit.SECONDS.toMillis(getPushRetryDelay());
+        return new PushRetryPolicy(getPushRetries(), initialDelay,
+                Math.max(initialDelay, PushRetryPolicy.DEFAULT_MAX_DELAY_MILLIS), TimeUnit.SECONDS.toMillis(getPushRetryBudget()));
+    }
+
     /**
      * Calls the SCM-specific function according to the chosen SCM. Only called for Non pipeline jobs
      *
@@ -132,26 +264,96 @@ public class PretestedIntegrationPostCheckout extends Recorder implements Serial
                 String integrationBranch = run.getAction(PretestTriggerCommitAction.class).integrationBranch;
                 String integrationRepo = run.getAction(PretestTriggerCommitAction.class).integrationRepo;
                 String ucCredentialsId = run.getAction(PretestTriggerCommitAction.class).ucCredentialsId;
+                BatchIntegrationAction batch = run.getAction(BatchIntegrationAction.class);
+                SpeculativeIntegrationAction speculation = run.getAction(SpeculativeIntegrationAction.class);
+                SpeculativeChains.Entry chainEntry = speculation == null ? null : speculation.getEntry();
+                // The integrated development branches, each with the commit that was integrated
+                Map<String, String> branchesToDelete = integratedCommits(run.getAction(PretestTriggerCommitAction.class).triggerBranch, batch);
+                String gitExe = run.getAction(PretestTriggerCommitAction.class).getGitExe();
                 try {
-                    // The choice of 'jgit' or 'git'. It must be set though..
-                    GitClient client = Git.with(listener, run.getEnvironment(listener)).in(ws).using("git").getClient();
+                    EnvVars environment = run.getEnvironment(listener);
+                    GitClient client = Git.with(listener, environment).in(ws).using(gitExe).getClient();
 
-                    if (ucCredentialsId != null) {
-                        StandardUsernameCredentials credentials = CredentialsProvider.findCredentialById(ucCredentialsId, StandardUsernameCredentials.class, run, Collections.EMPTY_LIST);
-
-                        if (credentials != null) {
-                            listener.getLogger().println("[PREINT] Found credentials");
-                            client.setCredentials(credentials);
-                        }
+                    StandardUsernameCredentials credentials = findCredentials(run, ucCredentialsId);
+                    if (credentials != null) {
+                        listener.getLogger().println("[PREINT] Found credentials");
+                        client.setCredentials(credentials);
                     }
 
                     // Make sure we accidently do not try to delete the integration branch - nor push when not needed. Consider moving this to the two functions
                     if (triggeredBranch.replaceFirst(integrationRepo + "/" , "").equals(integrationBranch)) {
                         LOGGER.log(Level.WARNING, LOG_PREFIX + "The development/triggered branch: " +  triggeredBranch.replaceFirst(integrationRepo + "/" , "") + " equals the integration branch: " + integrationBranch + " SKIP the push to integration branch and deletion of the development branch");
                         listener.getLogger().println(LOG_PREFIX + "The development/triggered branch: " +  triggeredBranch.replaceFirst(integrationRepo + "/" , "") + " equals the integration branch: " + integrationBranch + " SKIP the push to integration branch and deletion of the development branch");
+                    } else if (speculation != null && speculation.baseRunId != null && chainEntry == null) {
+                        // The chain was lost in a restart, so it is not known whether the build this one was integrated on top of was pushed
+                        listener.getLogger().println(LOG_PREFIX + "Jenkins restarted while this build was integrated on top of " + speculation.baseRunId + ", not pushing. Scheduling " + triggeredBranch + " again");
+                        run.setResult(Result.NOT_BUILT);
+                        IntegrationOutcomeAction.outcome(run, IntegrationOutcomeAction.Outcome.RESCHEDULED);
+                        GitBridge.deleteRef(listener, client, integrationRepo, speculation.ref);
+                        scheduleAgain(run, run.getAction(PretestTriggerCommitAction.class).triggerBranch);
+                    } else if (chainEntry != null && !awaitEarlierSpeculations(run, listener, chainEntry)) {
+                        // What this build tested will never be on the integration branch, so build the branch again
+                        listener.getLogger().println(LOG_PREFIX + "A build this one was integrated on top of failed or did not push in time, not pushing. Scheduling " + triggeredBranch + " again");
+                        run.setResult(Result.NOT_BUILT);
+                        IntegrationOutcomeAction.outcome(run, IntegrationOutcomeAction.Outcome.RESCHEDULED);
+                        GitBridge.deleteRef(listener, client, integrationRepo, speculation.ref);
+                        scheduleAgain(run, run.getAction(PretestTriggerCommitAction.class).triggerBranch);
                     } else {
-                        GitBridge.pushToIntegrationBranchGit(run, listener, client, integrationRepo, integrationBranch);
-                        GitBridge.deleteBranch(run, listener, client, triggeredBranch, integrationRepo);
+                        boolean pushed = false;
+                        try {
+                            if (atomicPush) {
+                                long start = System.nanoTime();
+                                try {
+                                    pushed = GitBridge.pushAndDeleteBranchesAtomically(listener, client, gitExe, environment, credentials, integrationRepo, integrationBranch, branchesToDelete);
+                                } catch (PushFailedException ex) {
+                                    // Nothing was pushed, so the separate pushes can push the tested commit
+                                    if (GitBridge.isStaleBranchRejection(ex.getMessage())) {
+                                        // The leased deletes of the separate pushes keep the branch that moved
+                                        listener.getLogger().println(LOG_PREFIX + "A development branch got new commits while building, pushing and deleting separately");
+                                    } else if (rebaseAttempts > 0 && GitBridge.isStaleTipRejection(ex.getMessage())) {
+                                        // The separate pushes can re-apply the tested commit
+                                        listener.getLogger().println(LOG_PREFIX + "Integration branch moved while building, pushing and deleting separately");
+                                    } else {
+                                        throw ex;
+                                    }
+                                } finally {
+                                    IntegrationTimingAction.record(run, IntegrationTimingAction.PUSH, start);
+                                }
+                            }
+                            if (!pushed) {
+                                GitBridge.pushToIntegrationBranchGit(run, listener, client, integrationRepo, integrationBranch, getPushRetryPolicy(), rebaseAttempts);
+                                pushed = true;
+                                List<String> deleted = new ArrayList<>();
+                                for (Map.Entry<String, String> branch : branchesToDelete.entrySet()) {
+                                    if (batch == null && !atomicPush) {
+                                        GitBridge.deleteBranch(run, listener, client, branch.getKey(), integrationRepo);
+                                        deleted.add(branch.getKey());
+                                    } else if (GitBridge.deleteBranch(run, listener, client, gitExe, environment, credentials, branch.getKey(), branch.getValue(), integrationRepo)) {
+                                        // Batches and atomic pushes keep a development branch that got new commits while building
+                                        deleted.add(branch.getKey());
+                                    }
+                                }
+                                GitBridge.pruneTrackingBranches(listener, client, deleted);
+                            } else {
+                                GitBridge.pruneTrackingBranches(listener, client, new ArrayList<>(branchesToDelete.keySet()));
+                            }
+                            if (batch != null) {
+                                cancelQueuedBuilds(run, listener, branchesToDelete.values());
+                            }
+                        } finally {
+                            recordPushMetrics(run, client, integrationBranch, pushed, run.getAction(PretestTriggerCommitAction.class).triggerBranch, batch);
+                            IntegrationOutcomeAction.outcome(run, pushed ? IntegrationOutcomeAction.Outcome.PUSHED : IntegrationOutcomeAction.Outcome.PUSH_FAILED);
+                            if (chainEntry != null) {
+                                if (pushed) {
+                                    SpeculativeChains.get().promote(chainEntry);
+                                } else {
+                                    SpeculativeChains.get().fail(chainEntry);
+                                }
+                            }
+                            if (speculation != null) {
+                                GitBridge.deleteRef(listener, client, integrationRepo, speculation.ref);
+                            }
+                        }
                     }
                 } catch (IOException ex) {
                     LOGGER.log(Level.SEVERE, "Cannot launch the Git Client.." + ex);
@@ -167,12 +369,149 @@ public class PretestedIntegrationPostCheckout extends Recorder implements Serial
                 String integrationBranch = run.getAction(PretestTriggerCommitAction.class).integrationBranch;
                 String integrationRepo = run.getAction(PretestTriggerCommitAction.class).integrationRepo;
                 listener.getLogger().println(LOG_PREFIX + "Build result not satisfied - skipped post-build step.");
+                IntegrationOutcomeAction.outcomeIfUnset(run, IntegrationOutcomeAction.Outcome.BUILD_FAILED);
+                SpeculativeIntegrationAction speculation = run.getAction(SpeculativeIntegrationAction.class);
+                if (speculation != null) {
+                    failSpeculation(run, ws, listener, integrationRepo, run.getAction(PretestTriggerCommitAction.class).ucCredentialsId, speculation);
+                }
+                BatchIntegrationAction batch = run.getAction(BatchIntegrationAction.class);
+                if (batch != null && batch.getBranches().size() > 1) {
+                    listener.getLogger().println(LOG_PREFIX + "The batch " + batch.getBranches() + " failed, the next builds test half of it at a time");
+                } else if (batch != null) {
+                    listener.getLogger().println(LOG_PREFIX + batch.getBranches().get(0) + " failed on its own and is left out of later batches until it changes");
+                }
                 GitBridge.updateBuildDescription(run, listener, "Failed:" + integrationBranch, triggeredBranch.replace(integrationRepo + "/", ""));
             } else {
                 GitBridge.updateBuildDescription(run, listener, "", "Unknown error: " + LOG_PREFIX);
                 listener.getLogger().println(LOG_PREFIX + "Build result not satisfied - skipped post-build step.");
             }
         }
+        printTimings(run, listener);
+    }
+
+    /**
+     * @return the integrated development branches, like origin/ready/feature, each with the SHA that was integrated
+     */
+    private static Map<String, String> integratedCommits(Branch triggerBranch, BatchIntegrationAction batch) {
+        Map<String, String> commits = new LinkedHashMap<>();
+        if (batch == null) {
+            commits.put(triggerBranch.getName(), triggerBranch.getSHA1String());
+        } else {
+            for (int i = 0; i < batch.getBranches().size(); i++) {
+                commits.put(batch.getBranches().get(i), batch.getCommits().get(i));
+            }
+        }
+        return commits;
+    }
+
+    /**
+     * Waits until the builds this one was speculatively integrated on top of have pushed.
+     *
+     * @return true if this build may push, false if one of them failed or did not push in time
+     */
+    private static boolean awaitEarlierSpeculations(Run<?, ?> run, TaskListener listener, SpeculativeChains.Entry entry) throws InterruptedException {
+        SpeculativeChains.Entry base = entry.getBase();
+        if (base != null && base.getState() != SpeculativeChains.State.PROMOTED) {
+            listener.getLogger().println(LOG_PREFIX + "Waiting for the build integrating " + base.getTriggerBranch() + " to push first");
+        }
+        long start = System.nanoTime();
+        try {
+            return SpeculativeChains.get().awaitPromotion(entry);
+        } finally {
+            IntegrationTimingAction.record(run, IntegrationTimingAction.WAIT_FOR_PROMOTION, start);
+        }
+    }
+
+    /**
+     * Records the push in the integration metrics, with the time from each integrated commit to the push.
+     * Failures to find the commit times are only logged.
+     */
+    private static void recordPushMetrics(Run<?, ?> run, GitClient client, String integrationBranch, boolean pushed, Branch triggerBranch, BatchIntegrationAction batch) {
+        String key = IntegrationMetrics.key(run.getParent().getFullName(), integrationBranch);
+        if (!pushed) {
+            IntegrationMetrics.get().pushRejected(key);
+            return;
+        }
+        List<Long> commitTimes = new ArrayList<>();
+        List<String> commits = batch == null ? Collections.singletonList(triggerBranch.getSHA1String()) : batch.getCommits();
+        try {
+            for (String commit : commits) {
+                commitTimes.add(client.withRepository(new CommitTimeCallback(ObjectId.fromString(commit))));
+            }
+        } catch (IOException | GitException ex) {
+            LOGGER.log(Level.WARNING, "Failed to find the commit times of " + commits, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        IntegrationMetrics.get().pushed(key, commitTimes);
+    }
+
+    /**
+     * Prints how long each phase of the integration took, see {@link IntegrationTimingAction}.
+     */
+    private static void printTimings(Run<?, ?> run, TaskListener listener) {
+        IntegrationTimingAction timings = run.getAction(IntegrationTimingAction.class);
+        if (timings == null) {
+            return;
+        }
+        listener.getLogger().println(LOG_PREFIX + "Integration timings:");
+        for (String line : timings.formatTable()) {
+            listener.getLogger().println(LOG_PREFIX + "  " + line);
+        }
+    }
+
+    /**
+     * Takes a failed build out of its speculative chain, and deletes its speculative commit from the remote.
+     */
+    private static void failSpeculation(Run<?, ?> run, FilePath ws, TaskListener listener, String integrationRepo, String ucCredentialsId, SpeculativeIntegrationAction speculation) throws InterruptedException {
+        if (speculation.getEntry() != null) {
+            for (SpeculativeChains.Entry invalidated : SpeculativeChains.get().fail(speculation.getEntry())) {
+                listener.getLogger().println(LOG_PREFIX + "Invalidated the build integrating " + invalidated.getTriggerBranch() + " on top of this one");
+            }
+        }
+        try {
+            GitClient client = Git.with(listener, run.getEnvironment(listener)).in(ws).using(run.getAction(PretestTriggerCommitAction.class).getGitExe()).getClient();
+            StandardUsernameCredentials credentials = findCredentials(run, ucCredentialsId);
+            if (credentials != null) {
+                client.setCredentials(credentials);
+            }
+            GitBridge.deleteRef(listener, client, integrationRepo, speculation.ref);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Cannot launch the Git Client to delete " + speculation.ref, ex);
+        }
+    }
+
+    /**
+     * Cancels the queued builds of this job for commits a batch integrated, since there is nothing left for them to do.
+     * Builds started by polling choose their branch when they start, and find that the batch integrated it.
+     */
+    private static void cancelQueuedBuilds(Run<?, ?> run, TaskListener listener, Collection<String> integratedCommits) {
+        Queue queue = Queue.getInstance();
+        for (Queue.Item item : queue.getItems()) {
+            if (item.task != run.getParent()) {
+                continue;
+            }
+            RevisionParameterAction revision = item.getAction(RevisionParameterAction.class);
+            String commit = revision == null ? null : revision.revision != null ? revision.revision.getSha1String() : revision.commit;
+            if (commit != null && integratedCommits.contains(commit) && queue.cancel(item)) {
+                listener.getLogger().println(LOG_PREFIX + "Cancelled the queued build of " + commit + ", this batch integrated it");
+            }
+        }
+    }
+
+    /**
+     * Schedules another build of the development branch, with the commit it pointed to when this build started.
+     */
+    private static void scheduleAgain(Run<?, ?> run, Branch triggerBranch) {
+        Revision revision = new Revision(triggerBranch.getSHA1(), Collections.singletonList(triggerBranch));
+        ParameterizedJobMixIn.scheduleBuild2(run.getParent(), 0, new CauseAction(new Cause.UpstreamCause(run)), new RevisionParameterAction(revision));
+    }
+
+    private static StandardUsernameCredentials findCredentials(Run<?, ?> run, String ucCredentialsId) {
+        if (ucCredentialsId == null) {
+            return null;
+        }
+        return CredentialsProvider.findCredentialById(ucCredentialsId, StandardUsernameCredentials.class, run, Collections.EMPTY_LIST);
     }
 
     /**
@@ -204,5 +543,19 @@ public class PretestedIntegrationPostCheckout extends Recorder implements Serial
         public boolean isApplicable(Class<? extends AbstractProject> jobType) {
             return true;
         }
+
+        /**
+         * Warns about the requirements of atomic pushes, since the plugin quietly pushes separately without them.
+         *
+         * @param value Whether atomic push is enabled
+         * @return a warning if it is enabled
+         */
+        public FormValidation doCheckAtomicPush(@QueryParameter boolean value) {
+            if (value) {
+                return FormValidation.warning("Needs git 2.4 or newer on the nodes, and a remote that supports atomic pushes. "
+                        + "Without them the integration branch is pushed and the development branch deleted separately, as without this option.");
+            }
+            return FormValidation.ok();
+        }
     }
 }
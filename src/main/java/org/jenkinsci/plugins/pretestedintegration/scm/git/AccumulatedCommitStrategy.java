@@ -41,22 +41,36 @@ public class AccumulatedCommitStrategy extends GitIntegrationStrategy {
      */
     private static final String B_NAME = "Accumulated commit";
 
-    private void doTheIntegration(Run build, TaskListener listener, GitBridge gitbridge, ObjectId commitId, GitClient client, String expandedIntegrationBranch, Branch triggerBranch) throws IntegrationFailedException, NothingToDoException, UnsupportedConfigurationException, IntegrationUnknownFailureException {
-        //Get the commit count
-        int commitCount;
+    private void doTheIntegration(GitSCM scm, Run build, TaskListener listener, GitBridge gitbridge, ObjectId commitId, GitClient client, String expandedIntegrationBranch, Branch triggerBranch) throws IntegrationFailedException, NothingToDoException, UnsupportedConfigurationException, IntegrationUnknownFailureException {
+        //Analyze the development branch: commit count, author and, unless a short message is used, the commits
+        BranchAnalysis analysis;
+        long start = System.nanoTime();
         try {
-            commitCount = PretestedIntegrationGitUtils.countCommits(commitId, client, expandedIntegrationBranch);
-            String text = "Branch commit count: " + commitCount;
+            analysis = PretestedIntegrationGitUtils.analyzeBranch(commitId, client, expandedIntegrationBranch, !isShortCommitMessage(), getMaxCommitMessageEntries(), getMaxCommitMessageBytes());
+            IntegrationOutcomeAction.commits(build, analysis);
+            String text = String.format("Branch commit count: %s (counted using %s)", analysis.getCommitCountDescription(), analysis.getCountMethod().getDescription());
             LOGGER.log(Level.INFO, GitMessages.LOG_PREFIX+ text);
             listener.getLogger().println(GitMessages.LOG_PREFIX+ text);
         } catch (IOException | InterruptedException ex) {
             throw new IntegrationFailedException("Failed to count commits.", ex);
+        } finally {
+            IntegrationTimingAction.record(build, IntegrationTimingAction.COUNT_COMMITS, start);
         }
-        if ( commitCount == 0 ){
+        BoundedCommitCount commitCount = analysis.getBoundedCommitCount();
+        if ( commitCount == BoundedCommitCount.ZERO ){
             throw new NothingToDoException("Commit count is 0. Already integrated/part of integration branch: " + expandedIntegrationBranch);
         }
-        if ( commitCount == 1 ){
-            if (tryFastForward(commitId, listener.getLogger(), client)) {
+        if ( commitCount == BoundedCommitCount.ONE ){
+            boolean fastForwarded;
+            start = System.nanoTime();
+            try {
+                fastForwarded = requiresIntegrationBranchCheckout()
+                        ? tryFastForward(commitId, listener.getLogger(), client)
+                        : tryFastForwardInCore(commitId, listener.getLogger(), client, expandedIntegrationBranch);
+            } finally {
+                IntegrationTimingAction.record(build, IntegrationTimingAction.MERGE, start);
+            }
+            if (fastForwarded) {
                 return;
             }
         }
@@ -77,59 +91,57 @@ public class AccumulatedCommitStrategy extends GitIntegrationStrategy {
             throw new NothingToDoException(logMessage);
         }
 
-        String commitAuthor; //leaving un-assigned, want to fail later if not assigned
+        String commitAuthor = analysis.getHeadAuthor();
         String commitMessage = "Merge of " + triggerBranch.getName() + " into "+ expandedIntegrationBranch;
         try {
-            // FIXME I don't like this call back design.
-            // We build the commit message based on a series of commits which aren't guaranteed to match we end up merging.
-            // The method that gets all the commits from a integrationBranch walks the git tree using JGit.
-            // It's complete independent from the following merge.
+            // The commit message is built from the commits found by the branch analysis.
+            // It walks the git tree using JGit, independent from the following merge.
             // Worst case scenario: The merge commit message is based on different commits than those actually merged.
-            logMessage = String.format(GitMessages.LOG_PREFIX+ "Collecting commit messages on development branch %s", triggerBranch.getName());
-            LOGGER.log(Level.INFO, logMessage);
-            listener.getLogger().println(logMessage);
-
             String headerLine = String.format("Accumulated commit of the following from branch '%s':%n", triggerBranch.getName());
 
-            // Collect commits
+            // Format collected commits
             if(!isShortCommitMessage()) {
-                String commits = client.withRepository(new GetAllCommitsFromBranchCallback( triggerBranch.getSHA1(), expandedIntegrationBranch));
+                commitMessage = buildCommitMessage(headerLine, analysis);
                 logMessage = String.format(GitMessages.LOG_PREFIX+ "Done collecting commit messages");
                 LOGGER.log(Level.INFO, logMessage);
                 listener.getLogger().println(logMessage);
-                LOGGER.log(Level.INFO, String.format(GitMessages.LOG_PREFIX+ "Collecting author of last commit on development branch"));
-                String commitMsg = String.format("%s%n%s", headerLine, commits);
-                commitMessage = commitMsg.replaceAll("\"", "'");
+                if (analysis.getOmittedCommitCount() > 0) {
+                    logMessage = String.format(GitMessages.LOG_PREFIX+ "Commit message capped, left out %d commits", analysis.getOmittedCommitCount());
+                    LOGGER.log(Level.INFO, logMessage);
+                    listener.getLogger().println(logMessage);
+                }
             } else {
                 logMessage = String.format(GitMessages.LOG_PREFIX+ "Using short commit message");
                 LOGGER.log(Level.INFO, logMessage);
                 listener.getLogger().println(logMessage);
             }
 
-            // Collect author
-            listener.getLogger().println(String.format(GitMessages.LOG_PREFIX+ "Collecting author of last commit on development branch"));
-            commitAuthor = client.withRepository(new FindCommitAuthorCallback(triggerBranch.getSHA1()));
             logMessage = String.format(GitMessages.LOG_PREFIX+ "Done collecting last commit author: %s", commitAuthor);
             LOGGER.log(Level.INFO, logMessage);
             listener.getLogger().println(logMessage);
 
-            logMessage = GitMessages.LOG_PREFIX+ "Starting accumulated merge (no-ff) - without commit:";
-            LOGGER.info(logMessage);
-            listener.getLogger().println(logMessage);
-            try {
-                client.merge()
-                        .setMessage("Merge of " + triggerBranch.getName() + " into "+ expandedIntegrationBranch + " (temporary message)")
-                        .setCommit(false)
-                        .setGitPluginFastForwardMode(MergeCommand.GitPluginFastForwardMode.NO_FF)
-                        .setRevisionToMerge(commitId).execute();
-
-            } catch ( GitException | InterruptedException ex ){
-                logMessage = String.format(GitMessages.LOG_PREFIX+ "Exception while merging. Logging exception msg: %s", ex.getMessage());
-                LOGGER.log(Level.SEVERE, logMessage, ex);
+            if (requiresIntegrationBranchCheckout()) {
+                logMessage = GitMessages.LOG_PREFIX+ "Starting accumulated merge (no-ff) - without commit:";
+                LOGGER.info(logMessage);
                 listener.getLogger().println(logMessage);
-                throw new IntegrationFailedException(ex);
+                start = System.nanoTime();
+                try {
+                    client.merge()
+                            .setMessage("Merge of " + triggerBranch.getName() + " into "+ expandedIntegrationBranch + " (temporary message)")
+                            .setCommit(false)
+                            .setGitPluginFastForwardMode(MergeCommand.GitPluginFastForwardMode.NO_FF)
+                            .setRevisionToMerge(commitId).execute();
+
+                } catch ( GitException | InterruptedException ex ){
+                    logMessage = String.format(GitMessages.LOG_PREFIX+ "Exception while merging. Logging exception msg: %s", ex.getMessage());
+                    LOGGER.log(Level.SEVERE, logMessage, ex);
+                    listener.getLogger().println(logMessage);
+                    throw new IntegrationFailedException(ex);
+                } finally {
+                    IntegrationTimingAction.record(build, IntegrationTimingAction.MERGE, start);
+                }
             }
-        } catch (IOException | InterruptedException ex) {
+        } catch (IOException ex) {
             if (ex instanceof IntegrationFailedException) {
                 throw new IntegrationFailedException(ex);
             } else {
@@ -142,9 +154,23 @@ public class AccumulatedCommitStrategy extends GitIntegrationStrategy {
             }
         }
 
+        if (!requiresIntegrationBranchCheckout()) {
+            start = System.nanoTime();
+            try {
+                integrateWithoutCheckout(scm, build, listener, client, commitId, expandedIntegrationBranch, InCoreMergeCallback.Mode.MERGE, commitMessage, commitAuthor);
+            } finally {
+                IntegrationTimingAction.record(build, IntegrationTimingAction.MERGE, start);
+            }
+            logMessage = String.format(GitMessages.LOG_PREFIX+ "Commit was successful");
+            LOGGER.log(Level.INFO, logMessage);
+            listener.getLogger().println(logMessage);
+            return;
+        }
+
         LOGGER.log(Level.INFO, String.format(GitMessages.LOG_PREFIX+ "Merge was successful"));
         listener.getLogger().println(String.format(GitMessages.LOG_PREFIX+ "Merge was successful"));
         String message = "";
+        start = System.nanoTime();
         try {
             logMessage = String.format(GitMessages.LOG_PREFIX+ "Starting to commit accumulated merge changes:");
             LOGGER.info(logMessage);
@@ -170,14 +196,46 @@ public class AccumulatedCommitStrategy extends GitIntegrationStrategy {
             listener.getLogger().println(logMessage);
             ex.printStackTrace(listener.getLogger());
             throw new IntegrationUnknownFailureException(ex);
+        } finally {
+            IntegrationTimingAction.record(build, IntegrationTimingAction.COMMIT, start);
         }
         logMessage = String.format(GitMessages.LOG_PREFIX+ "Commit was successful");
         LOGGER.log(Level.INFO, logMessage);
         listener.getLogger().println(logMessage);
     }
 
+    /**
+     * Builds the accumulated commit message in a single buffer.
+     * Double quotes are replaced by single quotes in place, without copying the message.
+     *
+     * @param headerLine The first line of the message
+     * @param analysis The analysis holding the commits to list
+     * @return the commit message
+     */
+    static String buildCommitMessage(String headerLine, BranchAnalysis analysis) {
+        StringBuilder sb = new StringBuilder(headerLine.length() + analysis.estimateFormattedLength() + 64);
+        sb.append(headerLine).append(System.lineSeparator());
+        analysis.appendCommits(sb);
+        int omitted = analysis.getOmittedCommitCount();
+        if (omitted > 0) {
+            sb.append("... and ").append(omitted).append(omitted == 1 ? " more commit" : " more commits").append(System.lineSeparator());
+        }
+        CommitMessageFormatter.replaceDoubleQuotes(sb, 0);
+        return sb.toString();
+    }
+
     private boolean shortCommitMessage = false;
 
+    /**
+     * The most commits to list in the commit message, 0 for no limit.
+     */
+    private int maxCommitMessageEntries = 0;
+
+    /**
+     * The most bytes the listed commits may take up in the commit message, 0 for no limit.
+     */
+    private int maxCommitMessageBytes = 0;
+
     /**
      * Constructor for AccumulatedCommitStrategy.
      * DataBound to work in UI.
@@ -199,7 +257,7 @@ public class AccumulatedCommitStrategy extends GitIntegrationStrategy {
         }
 
         String expandedIntegrationBranch = gitbridge.getExpandedIntegrationBranch(build.getEnvironment(listener));
-        doTheIntegration((Run) build, listener, gitbridge, triggeredBranch.getSHA1(), git, expandedIntegrationBranch, triggeredBranch);
+        doTheIntegration(scm, (Run) build, listener, gitbridge, triggeredBranch.getSHA1(), git, expandedIntegrationBranch, triggeredBranch);
     }
 
     public boolean isShortCommitMessage() {
@@ -211,6 +269,24 @@ public class AccumulatedCommitStrategy extends GitIntegrationStrategy {
         this.shortCommitMessage = shortCommitMessage;
     }
 
+    public int getMaxCommitMessageEntries() {
+        return maxCommitMessageEntries;
+    }
+
+    @DataBoundSetter
+    public void setMaxCommitMessageEntries(int maxCommitMessageEntries) {
+        this.maxCommitMessageEntries = Math.max(0, maxCommitMessageEntries);
+    }
+
+    public int getMaxCommitMessageBytes() {
+        return maxCommitMessageBytes;
+    }
+
+    @DataBoundSetter
+    public void setMaxCommitMessageBytes(int maxCommitMessageBytes) {
+        this.maxCommitMessageBytes = Math.max(0, maxCommitMessageBytes);
+    }
+
     /**
      * Descriptor implementation for AccumulatedCommitStrategy
      */
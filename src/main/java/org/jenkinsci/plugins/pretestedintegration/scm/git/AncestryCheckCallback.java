@@ -0,0 +1,78 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+
+/**
+ * Callback to find out how a given commit relates to a branch, without walking every commit in between.
+ */
+public class AncestryCheckCallback extends RepositoryListenerAwareCallback<AncestryCheckCallback.Ancestry> {
+
+    /**
+     * How the commit relates to the branch.
+     */
+    public enum Ancestry {
+        /**
+         * The commit is already part of the branch.
+         */
+        ALREADY_INTEGRATED,
+        /**
+         * The branch is an ancestor of the commit, so the branch can be fast-forwarded to it.
+         */
+        FAST_FORWARDABLE,
+        /**
+         * The commit and the branch have both moved on from their merge base.
+         */
+        DIVERGED
+    }
+
+    /**
+     * The commit Id.
+     */
+    public final ObjectId id;
+
+    /**
+     * The integrationBranch name.
+     */
+    public final String branch;
+
+    /**
+     * Constructor for AncestryCheckCallback
+     * @param id The commit Id of the commit to check
+     * @param branch The integrationBranch name to check against
+     */
+    public AncestryCheckCallback(final ObjectId id, final String branch) {
+        this.id = id;
+        this.branch = branch;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Ancestry invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+        RevWalk walk = new RevWalk(repo);
+        try {
+            RevCommit commit = walk.parseCommit(id);
+            RevCommit branchHead = walk.parseCommit(repo.resolve(branch));
+
+            if (walk.isMergedInto(commit, branchHead)) {
+                return Ancestry.ALREADY_INTEGRATED;
+            }
+
+            walk.reset();
+            walk.setRevFilter(RevFilter.MERGE_BASE);
+            walk.markStart(commit);
+            walk.markStart(branchHead);
+            RevCommit mergeBase = walk.next();
+            return branchHead.equals(mergeBase) ? Ancestry.FAST_FORWARDABLE : Ancestry.DIVERGED;
+        } finally {
+            walk.dispose();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.PushFailedException;
+
+/**
+ * Callback that pushes HEAD to the integration branch and deletes the development branches in a single
+ * git push --atomic. Either all refs are updated on the remote or none is.
+ * The development branches are deleted with a lease, so the push is rejected if one of them got new commits
+ * since the build started. Runs the git configured for the node, with the credentials of the remote.
+ */
+public class AtomicPushCallback extends RepositoryListenerAwareCallback<Boolean> {
+
+    /**
+     * The git executable on the agent.
+     */
+    public final String gitExe;
+
+    /**
+     * The environment of the build, so git gets its PATH, proxies and configuration.
+     */
+    public final Map<String, String> environment;
+
+    /**
+     * The credentials of the remote, or null.
+     */
+    public final StandardUsernameCredentials credentials;
+
+    /**
+     * The remote to push to, like origin.
+     */
+    public final String remote;
+
+    /**
+     * The integration branch on the remote, like master.
+     */
+    public final String integrationBranch;
+
+    /**
+     * The branches to delete on the remote, like ready/feature, each with the commit it must still point to.
+     */
+    public final Map<String, String> branchesToDelete;
+
+    /**
+     * Constructor for AtomicPushCallback
+     * @param gitExe The git executable on the agent
+     * @param environment The environment of the build
+     * @param credentials The credentials of the remote, may be null
+     * @param remote The remote to push to
+     * @param integrationBranch The integration branch on the remote
+     * @param branchesToDelete The branches to delete on the remote, each with the SHA it was built at
+     */
+    public AtomicPushCallback(final String gitExe, final Map<String, String> environment, final StandardUsernameCredentials credentials,
+                              final String remote, final String integrationBranch, final Map<String, String> branchesToDelete) {
+        this.gitExe = gitExe;
+        this.environment = new HashMap<>(environment);
+        // The credentials are sent to the agent, so take what they hold on the controller now
+        this.credentials = credentials == null ? null : CredentialsProvider.snapshot(StandardUsernameCredentials.class, credentials);
+        this.remote = remote;
+        this.integrationBranch = integrationBranch;
+        this.branchesToDelete = new LinkedHashMap<>(branchesToDelete);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return true if pushed, false if the local git or the remote does not support atomic pushes and nothing was pushed
+     * @throws PushFailedException When the remote rejected the push
+     */
+    @Override
+    public Boolean invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+        ObjectId head = repo.resolve(Constants.HEAD);
+        if (head == null) {
+            throw new PushFailedException("Failed to push, HEAD does not point to a commit");
+        }
+        List<String> args = new ArrayList<>();
+        Collections.addAll(args, "push", "--atomic", "--porcelain");
+        for (Map.Entry<String, String> branch : branchesToDelete.entrySet()) {
+            // Only delete the branch if nobody pushed to it since it was built
+            args.add("--force-with-lease=" + Constants.R_HEADS + branch.getKey() + ":" + branch.getValue());
+        }
+        Collections.addAll(args, remote, head.getName() + ":" + Constants.R_HEADS + integrationBranch);
+        for (String branch : branchesToDelete.keySet()) {
+            args.add(":" + Constants.R_HEADS + branch);
+        }
+        GitProcess.Result push;
+        try (CommandLineCredentials commandLineCredentials = CommandLineCredentials.write(credentials, gitExe)) {
+            Map<String, String> env = new HashMap<>(environment);
+            env.putAll(commandLineCredentials.getEnvironment());
+            push = GitProcess.run(gitExe, repo.getDirectory(), env, null, args.toArray(new String[args.size()]));
+        }
+        if (push.exitCode == 0) {
+            return true;
+        }
+        if (push.exitCode == GitProcess.USAGE_ERROR || push.stderr.contains("does not support --atomic")) {
+            return false;
+        }
+        if (push.stdout.contains("(stale info)")) {
+            throw new PushFailedException(String.format(GitBridge.STALE_BRANCH_REJECTION + ":%n%s%s", push.stdout, push.stderr));
+        }
+        throw new PushFailedException(String.format("Failed to push changes to integration branch, message was:%n%s%s", push.stdout, push.stderr));
+    }
+}
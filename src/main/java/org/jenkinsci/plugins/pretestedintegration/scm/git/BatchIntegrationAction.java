@@ -0,0 +1,81 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Result;
+import hudson.model.Run;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records which development branches a build of the {@link BatchedCommitStrategy} integrated.
+ * Later builds read it to bisect a failed batch and to leave out branches known to fail.
+ */
+public class BatchIntegrationAction extends InvisibleAction {
+
+    /**
+     * How many earlier builds to look through for the last batch.
+     */
+    private static final int MAX_BUILDS_TO_SEARCH = 20;
+
+    private final List<String> branches;
+    private final List<String> commits;
+    private final List<String> excluded;
+
+    /**
+     * Constructor for BatchIntegrationAction
+     * @param branches The integrated development branches, like origin/ready/feature, in the order they were integrated
+     * @param commits The integrated commits, in the same order as the branches
+     * @param excluded The branches left out because they failed on their own, see {@link BatchPlanner#key}
+     */
+    public BatchIntegrationAction(List<String> branches, List<String> commits, List<String> excluded) {
+        this.branches = new ArrayList<>(branches);
+        this.commits = new ArrayList<>(commits);
+        this.excluded = new ArrayList<>(excluded);
+    }
+
+    /**
+     * @return the integrated development branches, in the order they were integrated
+     */
+    public List<String> getBranches() {
+        return Collections.unmodifiableList(branches);
+    }
+
+    /**
+     * @return the integrated commits, in the same order as the branches
+     */
+    public List<String> getCommits() {
+        return Collections.unmodifiableList(commits);
+    }
+
+    /**
+     * @return the branches left out because they failed on their own
+     */
+    public List<String> getExcluded() {
+        return Collections.unmodifiableList(excluded);
+    }
+
+    /**
+     * @param run The build
+     * @return true if the build of this batch failed, so the batch has to be bisected
+     */
+    public static boolean isFailed(Run<?, ?> run) {
+        Result result = run.getResult();
+        return result != null && result.isWorseThan(GitBridge.getRequiredResult()) && result.isBetterOrEqualTo(Result.FAILURE);
+    }
+
+    /**
+     * @param run The current build
+     * @return the last completed build before the given one that integrated a batch, or null
+     */
+    public static Run<?, ?> findPreviousBatch(Run<?, ?> run) {
+        Run<?, ?> previous = run.getPreviousCompletedBuild();
+        for (int i = 0; previous != null && i < MAX_BUILDS_TO_SEARCH; i++) {
+            if (previous.getAction(BatchIntegrationAction.class) != null) {
+                return previous;
+            }
+            previous = previous.getPreviousCompletedBuild();
+        }
+        return null;
+    }
+}
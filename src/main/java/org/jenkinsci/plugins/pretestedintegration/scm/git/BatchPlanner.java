@@ -0,0 +1,103 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.plugins.git.Branch;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides which development branches go into a batch.
+ * A batch is the triggering branch followed by the other pending branches.
+ * After a failed batch, the next batch is the half of it holding the triggering branch, so a failing branch is
+ * found in about log2(N) builds. A branch that fails on its own is left out of later batches until it changes.
+ */
+public final class BatchPlanner {
+
+    private BatchPlanner() { }
+
+    /**
+     * @param branch A development branch
+     * @return the key used to remember a branch at a given commit, like 'origin/ready/feature@sha1'
+     */
+    public static String key(Branch branch) {
+        return branch.getName() + "@" + branch.getSHA1String();
+    }
+
+    /**
+     * @param previous The batch of the previous batch build, or null
+     * @param previousFailed True if the previous batch build failed
+     * @param pending The development branches waiting to be integrated
+     * @return the keys of the branches to leave out of the next batch
+     */
+    public static List<String> excludedAfter(BatchIntegrationAction previous, boolean previousFailed, Collection<Branch> pending) {
+        List<String> excluded = new ArrayList<>();
+        if (previous == null) {
+            return excluded;
+        }
+        List<String> known = new ArrayList<>(previous.getExcluded());
+        if (previousFailed && previous.getBranches().size() == 1) {
+            known.add(previous.getBranches().get(0) + "@" + previous.getCommits().get(0));
+        }
+        // Only keep branches that still point to the failing commit
+        for (Branch branch : pending) {
+            if (known.contains(key(branch))) {
+                excluded.add(key(branch));
+            }
+        }
+        return excluded;
+    }
+
+    /**
+     * @param triggered The branch that triggered the build, always first in the batch
+     * @param pending The other development branches waiting to be integrated
+     * @param previous The batch of the previous batch build, or null
+     * @param previousFailed True if the previous batch build failed
+     * @param excluded Keys of branches to leave out, see {@link #excludedAfter}
+     * @param maxBatchSize The most branches in a batch, 0 for no limit
+     * @return the branches to integrate, in order
+     */
+    public static List<Branch> plan(Branch triggered, Collection<Branch> pending, BatchIntegrationAction previous, boolean previousFailed, Set<String> excluded, int maxBatchSize) {
+        List<Branch> candidates = new ArrayList<>();
+        for (Branch branch : pending) {
+            if (!branch.getName().equals(triggered.getName()) && !excluded.contains(key(branch))) {
+                candidates.add(branch);
+            }
+        }
+        Collections.sort(candidates, new Comparator<Branch>() {
+            @Override
+            public int compare(Branch b1, Branch b2) {
+                return b1.getName().compareTo(b2.getName());
+            }
+        });
+
+        if (previous != null && previousFailed && previous.getBranches().size() > 1) {
+            List<String> batch = previous.getBranches();
+            int half = batch.size() / 2;
+            List<String> firstHalf = batch.subList(0, half);
+            List<String> secondHalf = batch.subList(half, batch.size());
+            List<String> chosen = secondHalf.contains(triggered.getName()) ? secondHalf : firstHalf;
+            List<Branch> inHalf = new ArrayList<>();
+            for (String name : chosen) {
+                for (Branch branch : candidates) {
+                    if (branch.getName().equals(name)) {
+                        inHalf.add(branch);
+                    }
+                }
+            }
+            candidates = inHalf;
+        }
+
+        List<Branch> plan = new ArrayList<>();
+        plan.add(triggered);
+        for (Branch branch : candidates) {
+            if (maxBatchSize > 0 && plan.size() >= maxBatchSize) {
+                break;
+            }
+            plan.add(branch);
+        }
+        return plan;
+    }
+}
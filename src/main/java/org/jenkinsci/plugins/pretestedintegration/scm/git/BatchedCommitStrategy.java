@@ -0,0 +1,245 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.git.Branch;
+import hudson.plugins.git.BranchSpec;
+import hudson.plugins.git.GitException;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.Revision;
+import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.jenkinsci.plugins.pretestedintegration.AbstractSCMBridge;
+import org.jenkinsci.plugins.pretestedintegration.IntegrationStrategyDescriptor;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.IntegrationFailedException;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.IntegrationUnknownFailureException;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.NothingToDoException;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Integration strategy for integrating several development branches in one build.
+ * The triggering branch and the other pending development branches are merged or squashed one after another
+ * onto the integration branch, so the whole batch is tested and pushed once.
+ * When a batch fails, the following builds bisect it, see {@link BatchPlanner}.
+ * Always merges without checking out the integration branch, see {@link MergeEngine}.
+ */
+public class BatchedCommitStrategy extends GitIntegrationStrategy {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchedCommitStrategy.class.getName());
+
+    /**
+     * Strategy name. Used in UI.
+     */
+    private static final String B_NAME = "Batched commits";
+
+    /**
+     * Squash every branch into a single commit instead of merging it.
+     */
+    private boolean squash = false;
+
+    /**
+     * The most branches in a batch, 0 for no limit.
+     */
+    private int maxBatchSize = 10;
+
+    /**
+     * Constructor for BatchedCommitStrategy.
+     * DataBound to work in UI.
+     */
+    @DataBoundConstructor
+    public BatchedCommitStrategy() { }
+
+    public boolean isSquash() {
+        return squash;
+    }
+
+    @DataBoundSetter
+    public void setSquash(boolean squash) {
+        this.squash = squash;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @DataBoundSetter
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = Math.max(0, maxBatchSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Batches are merged without checking out the integration branch, so merging in the workspace means merging in memory.
+     */
+    @Override
+    public MergeEngine getMergeEngine() {
+        MergeEngine engine = super.getMergeEngine();
+        return engine == MergeEngine.WORKSPACE ? MergeEngine.IN_CORE : engine;
+    }
+
+    @Override
+    public void integrate(GitSCM scm, Run<?, ?> build, GitClient git, TaskListener listener, Revision marked, Branch triggeredBranch, GitBridge gitbridge) throws IOException, InterruptedException {
+        EnvVars environment = build.getEnvironment(listener);
+        String expandedRepoName = gitbridge.getExpandedRepository(environment);
+        if (!PretestedIntegrationGitUtils.isRelevant(triggeredBranch, expandedRepoName)) {
+            throw new NothingToDoException("No revision matches configuration in 'Integration repository'");
+        }
+        String expandedIntegrationBranch = gitbridge.getExpandedIntegrationBranch(environment);
+
+        // Bisect the last batch if it failed, and leave out branches that failed on their own
+        Run<?, ?> previousBuild = BatchIntegrationAction.findPreviousBatch(build);
+        BatchIntegrationAction previous = previousBuild == null ? null : previousBuild.getAction(BatchIntegrationAction.class);
+        boolean previousFailed = previousBuild != null && BatchIntegrationAction.isFailed(previousBuild);
+        List<Branch> pending = pendingBranches(scm, git, environment, expandedRepoName, expandedIntegrationBranch);
+        List<String> excluded = BatchPlanner.excludedAfter(previous, previousFailed, pending);
+        List<Branch> batch = BatchPlanner.plan(triggeredBranch, pending, previous, previousFailed, new HashSet<>(excluded), maxBatchSize);
+
+        String logMessage;
+        if (previousFailed && previous.getBranches().size() > 1) {
+            logMessage = String.format(GitMessages.LOG_PREFIX + "The batch of %s failed, bisecting it", previousBuild.getFullDisplayName());
+            LOGGER.log(Level.INFO, logMessage);
+            listener.getLogger().println(logMessage);
+        }
+        for (String key : excluded) {
+            logMessage = GitMessages.LOG_PREFIX + "Leaving out " + key + ", it failed on its own";
+            LOGGER.log(Level.INFO, logMessage);
+            listener.getLogger().println(logMessage);
+        }
+        logMessage = String.format(GitMessages.LOG_PREFIX + "Integrating a batch of %d branch(es) into %s", batch.size(), expandedIntegrationBranch);
+        LOGGER.log(Level.INFO, logMessage);
+        listener.getLogger().println(logMessage);
+
+        List<String> integratedBranches = new ArrayList<>();
+        List<String> integratedCommits = new ArrayList<>();
+        for (Branch branch : batch) {
+            boolean triggering = branch.getName().equals(triggeredBranch.getName());
+            try {
+                integrateBranch(scm, build, listener, git, branch, expandedIntegrationBranch);
+                integratedBranches.add(branch.getName());
+                integratedCommits.add(branch.getSHA1String());
+            } catch (NothingToDoException ex) {
+                // Already part of the integration branch, nothing to test
+                listener.getLogger().println(GitMessages.LOG_PREFIX + "Skipping " + branch.getName() + ": " + ex.getMessage());
+            } catch (IntegrationFailedException ex) {
+                if (triggering) {
+                    throw ex;
+                }
+                // Conflicts with the batch so far, a later build integrates it on its own terms
+                listener.getLogger().println(GitMessages.LOG_PREFIX + "Leaving " + branch.getName() + " out of the batch: " + ex.getMessage());
+            }
+        }
+        if (integratedBranches.isEmpty()) {
+            throw new NothingToDoException("None of the branches in the batch had anything to integrate into " + expandedIntegrationBranch);
+        }
+        build.addAction(new BatchIntegrationAction(integratedBranches, integratedCommits, excluded));
+        logMessage = GitMessages.LOG_PREFIX + "Batch integrated: " + integratedBranches;
+        LOGGER.log(Level.INFO, logMessage);
+        listener.getLogger().println(logMessage);
+    }
+
+    private void integrateBranch(GitSCM scm, Run<?, ?> build, TaskListener listener, GitClient client, Branch branch, String expandedIntegrationBranch) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        BranchAnalysis analysis;
+        try {
+            analysis = PretestedIntegrationGitUtils.analyzeBranch(branch.getSHA1(), client, expandedIntegrationBranch, true);
+        } finally {
+            IntegrationTimingAction.record(build, IntegrationTimingAction.COUNT_COMMITS, start);
+        }
+        if (analysis.getBoundedCommitCount() == BoundedCommitCount.ZERO) {
+            throw new NothingToDoException("Commit count is 0. Already integrated/part of integration branch: " + expandedIntegrationBranch);
+        }
+        String logMessage = String.format(GitMessages.LOG_PREFIX + "Integrating %s (%s commits)", branch.getName(), analysis.getCommitCountDescription());
+        LOGGER.log(Level.INFO, logMessage);
+        listener.getLogger().println(logMessage);
+
+        start = System.nanoTime();
+        try {
+            mergeBranch(scm, build, listener, client, branch, expandedIntegrationBranch, analysis);
+        } finally {
+            IntegrationTimingAction.record(build, IntegrationTimingAction.MERGE, start);
+        }
+        // Only the branches that made it into the batch count
+        IntegrationOutcomeAction.commits(build, analysis);
+    }
+
+    private void mergeBranch(GitSCM scm, Run<?, ?> build, TaskListener listener, GitClient client, Branch branch, String expandedIntegrationBranch, BranchAnalysis analysis) throws IOException, InterruptedException {
+        if (squash) {
+            StringBuilder message = new StringBuilder(analysis.estimateFormattedLength() + 128);
+            message.append(String.format("Squashed commit of branch '%s'%n%n", branch.getName()));
+            int commitsStart = message.length();
+            message.append(String.format("Squashed commit of the following:%n%n"));
+            analysis.appendSquashedCommits(message);
+            CommitMessageFormatter.replaceDoubleQuotes(message, commitsStart);
+            integrateWithoutCheckout(scm, build, listener, client, branch.getSHA1(), expandedIntegrationBranch, InCoreMergeCallback.Mode.SQUASH, message.toString(), analysis.getHeadAuthor());
+        } else {
+            String headerLine = String.format("Accumulated commit of the following from branch '%s':%n", branch.getName());
+            String message = AccumulatedCommitStrategy.buildCommitMessage(headerLine, analysis);
+            integrateWithoutCheckout(scm, build, listener, client, branch.getSHA1(), expandedIntegrationBranch, InCoreMergeCallback.Mode.MERGE, message, analysis.getHeadAuthor());
+        }
+    }
+
+    /**
+     * @return the development branches of the integration repository matching the branch specifier of the job
+     */
+    private static List<Branch> pendingBranches(GitSCM scm, GitClient client, EnvVars environment, String expandedRepoName, String expandedIntegrationBranch) throws IntegrationUnknownFailureException, InterruptedException {
+        List<Branch> pending = new ArrayList<>();
+        try {
+            for (Branch branch : client.getRemoteBranches()) {
+                String name = branch.getName();
+                if (!name.startsWith(expandedRepoName + "/") || name.equals(expandedRepoName + "/" + expandedIntegrationBranch)) {
+                    continue;
+                }
+                for (BranchSpec spec : scm.getBranches()) {
+                    if (spec.matches(name, environment)) {
+                        pending.add(branch);
+                        break;
+                    }
+                }
+            }
+        } catch (GitException ex) {
+            throw new IntegrationUnknownFailureException("Failed to list the development branches", ex);
+        }
+        return pending;
+    }
+
+    /**
+     * Descriptor implementation for BatchedCommitStrategy
+     */
+    @Symbol("batched")
+    @Extension
+    public static final class DescriptorImpl extends IntegrationStrategyDescriptor<BatchedCommitStrategy> {
+
+        /**
+         * Constructor for the Descriptor
+         */
+        public DescriptorImpl() {
+            load();
+        }
+
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public String getDisplayName() {
+            return B_NAME;
+        }
+
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public boolean isApplicable(Class<? extends AbstractSCMBridge> bridge) {
+            return GitBridge.class.equals(bridge);
+        }
+    }
+}
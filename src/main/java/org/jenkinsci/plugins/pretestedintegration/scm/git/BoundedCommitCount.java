@@ -0,0 +1,36 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+/**
+ * The commit count as far as the integration strategies care about it.
+ * A count bounded by {@link #LIMIT} is enough to tell the three apart.
+ */
+public enum BoundedCommitCount {
+    /**
+     * Nothing to integrate.
+     */
+    ZERO,
+    /**
+     * A single commit, which may be fast-forwarded or rebased.
+     */
+    ONE,
+    /**
+     * More than one commit.
+     */
+    MANY;
+
+    /**
+     * The number of commits it takes to tell ZERO, ONE and MANY apart.
+     */
+    public static final int LIMIT = 2;
+
+    /**
+     * @param count a commit count, possibly bounded by {@link #LIMIT}
+     * @return the bounded commit count
+     */
+    public static BoundedCommitCount of(int count) {
+        if (count <= 0) {
+            return ZERO;
+        }
+        return count == 1 ? ONE : MANY;
+    }
+}
@@ -0,0 +1,242 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a {@link BranchAnalysisCallback}.
+ * Holds everything the integration strategies need to know about the commits on a development branch,
+ * collected in a single walk so it can be sent back from the agent in one remoting call.
+ */
+public class BranchAnalysis implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of commits on the development branch not yet on the integration branch.
+     */
+    private final int commitCount;
+
+    /**
+     * True when counting stopped at a limit, so there may be more commits than counted.
+     */
+    private final boolean countBounded;
+
+    /**
+     * How the commits were counted.
+     */
+    private final CommitCounter.Method countMethod;
+
+    /**
+     * The author of the head commit of the development branch, as an external identity string.
+     */
+    private final String headAuthor;
+
+    /**
+     * The SHA of the merge base between the development branch and the integration branch.
+     * Null when the two have no common history, or when it was not asked for.
+     */
+    private final String mergeBase;
+
+    /**
+     * The commits on the development branch, newest first.
+     * Empty when the summaries were not requested.
+     */
+    private final List<CommitSummary> commits;
+
+    /**
+     * The number of commits on the development branch left out of the summaries because of a size cap.
+     */
+    private final int omittedCommitCount;
+
+    /**
+     * Constructor for BranchAnalysis
+     * @param commitCount The number of commits to integrate
+     * @param countBounded True if counting stopped at a limit
+     * @param countMethod How the commits were counted
+     * @param headAuthor The author of the head commit
+     * @param mergeBase The SHA of the merge base, or null
+     * @param commits The collected commit summaries
+     * @param omittedCommitCount The number of commits left out of the summaries because of a size cap
+     */
+    public BranchAnalysis(int commitCount, boolean countBounded, CommitCounter.Method countMethod, String headAuthor, String mergeBase, List<CommitSummary> commits, int omittedCommitCount) {
+        this.commitCount = commitCount;
+        this.countBounded = countBounded;
+        this.countMethod = countMethod;
+        this.headAuthor = headAuthor;
+        this.mergeBase = mergeBase;
+        this.commits = new ArrayList<>(commits);
+        this.omittedCommitCount = omittedCommitCount;
+    }
+
+    /**
+     * @return the number of commits to integrate
+     */
+    public int getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * @return true when counting stopped at a limit, so there may be more commits than counted
+     */
+    public boolean isCountBounded() {
+        return countBounded;
+    }
+
+    /**
+     * @return whether there are zero, one or many commits to integrate
+     */
+    public BoundedCommitCount getBoundedCommitCount() {
+        return BoundedCommitCount.of(commitCount);
+    }
+
+    /**
+     * @return the commit count for the build log, like '2' or 'at least 2'
+     */
+    public String getCommitCountDescription() {
+        return countBounded ? "at least " + commitCount : Integer.toString(commitCount);
+    }
+
+    /**
+     * @return how the commits were counted
+     */
+    public CommitCounter.Method getCountMethod() {
+        return countMethod;
+    }
+
+    /**
+     * @return the author of the head commit of the development branch
+     */
+    public String getHeadAuthor() {
+        return headAuthor;
+    }
+
+    /**
+     * @return the SHA of the merge base, or null if there is none or it was not asked for
+     */
+    public String getMergeBase() {
+        return mergeBase;
+    }
+
+    /**
+     * @return the collected commit summaries, newest first
+     */
+    public List<CommitSummary> getCommits() {
+        return Collections.unmodifiableList(commits);
+    }
+
+    /**
+     * @return the number of commits left out of the collected summaries because of a size cap
+     */
+    public int getOmittedCommitCount() {
+        return omittedCommitCount;
+    }
+
+    /**
+     * Formats the collected commits the same way git formats a squash commit message.
+     * @return the formatted commits
+     */
+    public String formatCommits() {
+        StringBuilder sb = new StringBuilder(estimateFormattedLength());
+        appendCommits(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the collected commits to the given StringBuilder, formatted the same way git formats a squash commit message.
+     * @param sb The StringBuilder to append to
+     */
+    public void appendCommits(StringBuilder sb) {
+        for (CommitSummary commit : commits) {
+            CommitMessageFormatter.appendCommit(sb, commit.getSha(), commit.getAuthorName(), commit.getAuthorEmail(), commit.getCommitTime(), commit.getFullMessage());
+        }
+    }
+
+    /**
+     * Appends the collected commits to the given StringBuilder the way git shows them in SQUASH_MSG,
+     * dated with the author date in the time zone of the author.
+     * @param sb The StringBuilder to append to
+     */
+    public void appendSquashedCommits(StringBuilder sb) {
+        for (CommitSummary commit : commits) {
+            CommitMessageFormatter.appendCommit(sb, commit.getSha(), commit.getAuthorName(), commit.getAuthorEmail(), commit.getAuthorTime(), commit.getAuthorTimeZoneOffset(), commit.getFullMessage());
+        }
+    }
+
+    /**
+     * @return the estimated length of the formatted commits, used to size buffers
+     */
+    public int estimateFormattedLength() {
+        int capacity = 0;
+        for (CommitSummary commit : commits) {
+            capacity += CommitMessageFormatter.estimateLength(commit.getSha(), commit.getAuthorName(), commit.getAuthorEmail(), commit.getFullMessage());
+        }
+        return capacity;
+    }
+
+    /**
+     * The parts of a single commit used when building commit messages.
+     */
+    public static class CommitSummary implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String sha;
+        private final String authorName;
+        private final String authorEmail;
+        private final int commitTime;
+        private final long authorTime;
+        private final int authorTimeZoneOffset;
+        private final String fullMessage;
+
+        /**
+         * Constructor for CommitSummary
+         * @param sha The commit SHA
+         * @param authorName The name of the author
+         * @param authorEmail The email address of the author
+         * @param commitTime The commit time in seconds since the epoch
+         * @param authorTime The author time in seconds since the epoch
+         * @param authorTimeZoneOffset The time zone offset of the author in minutes
+         * @param fullMessage The full commit message
+         */
+        public CommitSummary(String sha, String authorName, String authorEmail, int commitTime, long authorTime, int authorTimeZoneOffset, String fullMessage) {
+            this.sha = sha;
+            this.authorName = authorName;
+            this.authorEmail = authorEmail;
+            this.commitTime = commitTime;
+            this.authorTime = authorTime;
+            this.authorTimeZoneOffset = authorTimeZoneOffset;
+            this.fullMessage = fullMessage;
+        }
+
+        public String getSha() {
+            return sha;
+        }
+
+        public String getAuthorName() {
+            return authorName;
+        }
+
+        public String getAuthorEmail() {
+            return authorEmail;
+        }
+
+        public int getCommitTime() {
+            return commitTime;
+        }
+
+        public long getAuthorTime() {
+            return authorTime;
+        }
+
+        public int getAuthorTimeZoneOffset() {
+            return authorTimeZoneOffset;
+        }
+
+        public String getFullMessage() {
+            return fullMessage;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+
+/**
+ * Callback that walks the commits between a given commit and a branch once and collects
+ * the commit count, the author of the given commit and, optionally, a summary of every commit and the merge base.
+ * Replaces separate calls to {@link GetCommitCountFromBranchCallback},
+ * {@link GetAllCommitsFromBranchCallback} and {@link FindCommitAuthorCallback}.
+ */
+public class BranchAnalysisCallback extends RepositoryListenerAwareCallback<BranchAnalysis> {
+
+    /**
+     * The commit Id of the starting point.
+     */
+    public final ObjectId startObjectId;
+
+    /**
+     * The integrationBranch name of the destination.
+     */
+    public final String targetBranchName;
+
+    /**
+     * Whether or not to collect a summary of every commit.
+     */
+    public final boolean collectCommits;
+
+    /**
+     * The count to stop counting at when commits are not collected, 0 for an exact count.
+     */
+    public final int countLimit;
+
+    /**
+     * The most commit summaries to collect, 0 for no limit.
+     * Commits beyond it are still counted.
+     */
+    public final int maxCommits;
+
+    /**
+     * The most bytes the collected commits may take up once formatted, 0 for no limit.
+     * Commits beyond it are still counted.
+     */
+    public final int maxMessageBytes;
+
+    /**
+     * Whether or not to find the merge base. Walks the history back to it, however long, so the count stays bounded
+     * only without it.
+     */
+    public final boolean findMergeBase;
+
+    /**
+     * Constructor for BranchAnalysisCallback
+     * @param startObjectId The Id of the starting commit
+     * @param targetBranchName The name of the destination integrationBranch
+     * @param collectCommits True to collect a summary of every commit, needed for commit messages
+     */
+    public BranchAnalysisCallback(final ObjectId startObjectId, final String targetBranchName, final boolean collectCommits) {
+        this(startObjectId, targetBranchName, collectCommits, 0);
+    }
+
+    /**
+     * Constructor for BranchAnalysisCallback
+     * @param startObjectId The Id of the starting commit
+     * @param targetBranchName The name of the destination integrationBranch
+     * @param collectCommits True to collect a summary of every commit, needed for commit messages
+     * @param countLimit The count to stop counting at, 0 for an exact count. Ignored when collecting commits.
+     */
+    public BranchAnalysisCallback(final ObjectId startObjectId, final String targetBranchName, final boolean collectCommits, final int countLimit) {
+        this(startObjectId, targetBranchName, collectCommits, countLimit, 0, 0);
+    }
+
+    /**
+     * Constructor for BranchAnalysisCallback
+     * @param startObjectId The Id of the starting commit
+     * @param targetBranchName The name of the destination integrationBranch
+     * @param collectCommits True to collect a summary of every commit, needed for commit messages
+     * @param countLimit The count to stop counting at, 0 for an exact count. Ignored when collecting commits.
+     * @param maxCommits The most commit summaries to collect, 0 for no limit
+     * @param maxMessageBytes The most bytes the collected commits may take up once formatted, 0 for no limit
+     */
+    public BranchAnalysisCallback(final ObjectId startObjectId, final String targetBranchName, final boolean collectCommits, final int countLimit, final int maxCommits, final int maxMessageBytes) {
+        this(startObjectId, targetBranchName, collectCommits, countLimit, maxCommits, maxMessageBytes, false);
+    }
+
+    /**
+     * Constructor for BranchAnalysisCallback
+     * @param startObjectId The Id of the starting commit
+     * @param targetBranchName The name of the destination integrationBranch
+     * @param collectCommits True to collect a summary of every commit, needed for commit messages
+     * @param countLimit The count to stop counting at, 0 for an exact count. Ignored when collecting commits.
+     * @param maxCommits The most commit summaries to collect, 0 for no limit
+     * @param maxMessageBytes The most bytes the collected commits may take up once formatted, 0 for no limit
+     * @param findMergeBase True to find the merge base
+     */
+    public BranchAnalysisCallback(final ObjectId startObjectId, final String targetBranchName, final boolean collectCommits, final int countLimit, final int maxCommits, final int maxMessageBytes, final boolean findMergeBase) {
+        this.startObjectId = startObjectId;
+        this.targetBranchName = targetBranchName;
+        this.collectCommits = collectCommits;
+        this.countLimit = collectCommits ? 0 : countLimit;
+        this.maxCommits = maxCommits;
+        this.maxMessageBytes = maxMessageBytes;
+        this.findMergeBase = findMergeBase;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BranchAnalysis invoke(Repository repository, VirtualChannel channel) throws IOException, InterruptedException {
+        RevWalk walker = new RevWalk(repository);
+        try {
+            RevCommit originCommit = walker.parseCommit(startObjectId);
+            ObjectId targetId = repository.resolve(targetBranchName);
+            RevCommit targetCommit = walker.parseCommit(targetId);
+            String headAuthor = originCommit.getAuthorIdent().toExternalString();
+
+            int commitCount;
+            CommitCounter.Method countMethod;
+            List<BranchAnalysis.CommitSummary> commits = new ArrayList<>();
+            if (collectCommits) {
+                // Every commit is visited anyway, so count them on the way.
+                // Once a cap is hit the remaining commits are only counted, their messages are never loaded.
+                walker.markStart(originCommit);
+                walker.markUninteresting(targetCommit);
+                walker.setRetainBody(false);
+                commitCount = 0;
+                boolean collecting = true;
+                int messageBytes = 0;
+                StringBuilder formatted = new StringBuilder();
+                for (RevCommit rev : walker) {
+                    commitCount++;
+                    if (!collecting) {
+                        continue;
+                    }
+                    if (maxCommits > 0 && commits.size() >= maxCommits) {
+                        collecting = false;
+                        continue;
+                    }
+                    walker.parseBody(rev);
+                    PersonIdent author = rev.getAuthorIdent();
+                    BranchAnalysis.CommitSummary summary = new BranchAnalysis.CommitSummary(rev.getName(), author.getName(), author.getEmailAddress(), rev.getCommitTime(), author.getWhen().getTime() / 1000, author.getTimeZoneOffset(), rev.getFullMessage());
+                    rev.disposeBody();
+                    if (maxMessageBytes > 0) {
+                        formatted.setLength(0);
+                        CommitMessageFormatter.appendCommit(formatted, summary.getSha(), summary.getAuthorName(), summary.getAuthorEmail(), summary.getAuthorTime(), summary.getAuthorTimeZoneOffset(), summary.getFullMessage());
+                        messageBytes += CommitMessageFormatter.utf8Length(formatted);
+                        if (messageBytes > maxMessageBytes) {
+                            collecting = false;
+                            continue;
+                        }
+                    }
+                    commits.add(summary);
+                }
+                countMethod = CommitCounter.Method.WALK;
+            } else {
+                CommitCounter.Result result = CommitCounter.count(walker, originCommit, targetCommit, countLimit);
+                commitCount = result.getCount();
+                countMethod = result.getMethod();
+            }
+
+            RevCommit mergeBase = null;
+            if (findMergeBase) {
+                // Reuse the already parsed commits to find the merge base.
+                walker.reset();
+                walker.setRevFilter(RevFilter.MERGE_BASE);
+                walker.markStart(originCommit);
+                walker.markStart(targetCommit);
+                mergeBase = walker.next();
+            }
+
+            return new BranchAnalysis(commitCount, countLimit != 0 && commitCount >= countLimit, countMethod, headAuthor, mergeBase == null ? null : mergeBase.getName(), commits, collectCommits ? commitCount - commits.size() : 0);
+        } finally {
+            walker.dispose();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import java.util.concurrent.TimeUnit;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * The integration metrics of one integration branch. Counts and histograms only, no samples are stored.
+ * See {@link IntegrationMetrics}.
+ */
+@ExportedBean(defaultVisibility = 2)
+public final class BranchMetrics implements BranchMetricsMXBean {
+
+    private static final int MINUTES_PER_HOUR = 60;
+
+    private final String key;
+    private long started;
+    private long pushed;
+    private long pushRejected;
+    private long nothingToDo;
+    private long conflicts;
+    private final StreamingHistogram latency = new StreamingHistogram();
+
+    /**
+     * Pushes per minute of the last hour, in a ring indexed by minute.
+     */
+    private final long[] pushesPerMinute = new long[MINUTES_PER_HOUR];
+    private final long[] minuteOf = new long[MINUTES_PER_HOUR];
+
+    BranchMetrics(String key) {
+        this.key = key;
+    }
+
+    synchronized void started() {
+        started++;
+    }
+
+    synchronized void nothingToDo() {
+        nothingToDo++;
+    }
+
+    synchronized void conflict() {
+        conflicts++;
+    }
+
+    synchronized void pushRejected() {
+        pushRejected++;
+    }
+
+    synchronized void pushed(long nowMillis) {
+        pushed++;
+        long minute = TimeUnit.MILLISECONDS.toMinutes(nowMillis);
+        int slot = (int) (minute % MINUTES_PER_HOUR);
+        if (minuteOf[slot] != minute) {
+            minuteOf[slot] = minute;
+            pushesPerMinute[slot] = 0;
+        }
+        pushesPerMinute[slot]++;
+    }
+
+    void latency(long millis) {
+        latency.record(millis);
+    }
+
+    /**
+     * @param nowMillis The current time
+     * @return how many integrations were pushed in the hour before the given time
+     */
+    synchronized long pushedInHourBefore(long nowMillis) {
+        long minute = TimeUnit.MILLISECONDS.toMinutes(nowMillis);
+        long total = 0;
+        for (int slot = 0; slot < MINUTES_PER_HOUR; slot++) {
+            if (minute - minuteOf[slot] < MINUTES_PER_HOUR) {
+                total += pushesPerMinute[slot];
+            }
+        }
+        return total;
+    }
+
+    @Exported
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Exported
+    @Override
+    public synchronized long getIntegrationsStarted() {
+        return started;
+    }
+
+    @Exported
+    @Override
+    public synchronized long getIntegrationsPushed() {
+        return pushed;
+    }
+
+    @Exported
+    @Override
+    public long getIntegrationsLastHour() {
+        return pushedInHourBefore(System.currentTimeMillis());
+    }
+
+    @Exported
+    @Override
+    public synchronized long getPushesRejected() {
+        return pushRejected;
+    }
+
+    @Exported
+    @Override
+    public synchronized double getPushRejectRate() {
+        return rate(pushRejected, pushed + pushRejected);
+    }
+
+    @Exported
+    @Override
+    public synchronized double getNothingToDoRate() {
+        return rate(nothingToDo, started);
+    }
+
+    @Exported
+    @Override
+    public synchronized double getConflictRate() {
+        return rate(conflicts, started);
+    }
+
+    @Exported
+    @Override
+    public long getLatencyMedianMillis() {
+        return latency.getQuantile(0.5);
+    }
+
+    @Exported
+    @Override
+    public long getLatency90thMillis() {
+        return latency.getQuantile(0.9);
+    }
+
+    @Exported
+    @Override
+    public long getLatency99thMillis() {
+        return latency.getQuantile(0.99);
+    }
+
+    @Exported
+    @Override
+    public long getLatencyMaxMillis() {
+        return latency.getMax();
+    }
+
+    private static double rate(long part, long whole) {
+        return whole == 0 ? 0 : (double) part / whole;
+    }
+}
@@ -0,0 +1,67 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+/**
+ * The integration metrics of one integration branch, as seen over JMX. See {@link IntegrationMetrics}.
+ */
+public interface BranchMetricsMXBean {
+
+    /**
+     * @return the job and integration branch, like job#master
+     */
+    String getKey();
+
+    /**
+     * @return how many builds started integrating
+     */
+    long getIntegrationsStarted();
+
+    /**
+     * @return how many integrations were pushed
+     */
+    long getIntegrationsPushed();
+
+    /**
+     * @return how many integrations were pushed in the last hour
+     */
+    long getIntegrationsLastHour();
+
+    /**
+     * @return how many pushes of integrations were rejected by the remote
+     */
+    long getPushesRejected();
+
+    /**
+     * @return the share of pushes rejected by the remote, between 0 and 1
+     */
+    double getPushRejectRate();
+
+    /**
+     * @return the share of started integrations that had nothing to integrate, between 0 and 1
+     */
+    double getNothingToDoRate();
+
+    /**
+     * @return the share of started integrations that failed to merge, between 0 and 1
+     */
+    double getConflictRate();
+
+    /**
+     * @return the median time from the commit on the development branch to the push, in milliseconds
+     */
+    long getLatencyMedianMillis();
+
+    /**
+     * @return the 90th percentile of the time from the commit on the development branch to the push, in milliseconds
+     */
+    long getLatency90thMillis();
+
+    /**
+     * @return the 99th percentile of the time from the commit on the development branch to the push, in milliseconds
+     */
+    long getLatency99thMillis();
+
+    /**
+     * @return the longest time from the commit on the development branch to the push, in milliseconds
+     */
+    long getLatencyMaxMillis();
+}
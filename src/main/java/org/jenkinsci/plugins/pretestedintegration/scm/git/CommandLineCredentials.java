@@ -0,0 +1,181 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import com.cloudbees.jenkins.plugins.sshcredentials.SSHUserPrivateKey;
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import hudson.util.Secret;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Gives command line git the credentials of the build, the way the GitClient does for its own commands:
+ * a GIT_ASKPASS script for username and password credentials, and a GIT_SSH wrapper passing the private key
+ * to ssh for SSH credentials. The secrets are written to a private temporary directory on the agent,
+ * which {@link #close} deletes. Meant to be used from repository callbacks, like {@link GitProcess}.
+ */
+final class CommandLineCredentials implements Closeable {
+
+    private static final boolean WINDOWS = File.pathSeparatorChar == ';';
+
+    private final File dir;
+    private final Map<String, String> environment = new HashMap<>();
+
+    private CommandLineCredentials(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @param credentials The credentials, may be null
+     * @param gitExe The git executable, used to find ssh on Windows
+     * @return the credentials written for command line git, with an empty environment if there are none
+     * @throws IOException When the files could not be written
+     */
+    static CommandLineCredentials write(StandardUsernameCredentials credentials, String gitExe) throws IOException {
+        if (credentials == null) {
+            return new CommandLineCredentials(null);
+        }
+        CommandLineCredentials written = new CommandLineCredentials(privateTempDir());
+        try {
+            if (credentials instanceof SSHUserPrivateKey) {
+                written.writeSsh((SSHUserPrivateKey) credentials, gitExe);
+            } else if (credentials instanceof StandardUsernamePasswordCredentials) {
+                written.writeAskpass((StandardUsernamePasswordCredentials) credentials);
+            } else {
+                throw new IOException("Unsupported credentials type " + credentials.getClass().getName());
+            }
+        } catch (IOException | RuntimeException ex) {
+            written.close();
+            throw ex;
+        }
+        return written;
+    }
+
+    /**
+     * @return the variables to add to the environment of git
+     */
+    Map<String, String> getEnvironment() {
+        return Collections.unmodifiableMap(environment);
+    }
+
+    private void writeAskpass(StandardUsernamePasswordCredentials credentials) throws IOException {
+        File username = secretFile("username", credentials.getUsername());
+        File password = secretFile("password", Secret.toString(credentials.getPassword()));
+        File askpass;
+        if (WINDOWS) {
+            askpass = script("askpass.bat",
+                    "@set arg=%~1\r\n"
+                    + "@if (%arg:~0,8%)==(Username) type \"" + username + "\"\r\n"
+                    + "@if (%arg:~0,8%)==(Password) type \"" + password + "\"\r\n");
+        } else {
+            askpass = script("askpass.sh",
+                    "#!/bin/sh\n"
+                    + "case \"$1\" in\n"
+                    + "[Uu]sername*) cat '" + username + "' ;;\n"
+                    + "*) cat '" + password + "' ;;\n"
+                    + "esac\n");
+        }
+        environment.put("GIT_ASKPASS", askpass.getAbsolutePath());
+        // Never fall back to prompting on a terminal the build does not have
+        environment.put("GIT_TERMINAL_PROMPT", "0");
+    }
+
+    private void writeSsh(SSHUserPrivateKey credentials, String gitExe) throws IOException {
+        List<String> keys = credentials.getPrivateKeys();
+        StringBuilder identities = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            File key = secretFile("key" + i, keys.get(i));
+            identities.append(" -i \"").append(key).append('"');
+        }
+        String passphrase = Secret.toString(credentials.getPassphrase());
+        if (!passphrase.isEmpty()) {
+            File passphraseFile = secretFile("passphrase", passphrase);
+            File askpass = WINDOWS
+                    ? script("passphrase.bat", "@type \"" + passphraseFile + "\"\r\n")
+                    : script("passphrase.sh", "#!/bin/sh\ncat '" + passphraseFile + "'\n");
+            environment.put("SSH_ASKPASS", askpass.getAbsolutePath());
+            environment.put("SSH_ASKPASS_REQUIRE", "force");
+            // ssh only asks SSH_ASKPASS when it thinks there is a display
+            environment.put("DISPLAY", ":123.456");
+        }
+        String options = identities + " -l \"" + credentials.getUsername() + "\" -o StrictHostKeyChecking=no";
+        File ssh = WINDOWS
+                ? script("ssh.bat", "@echo off\r\n\"" + windowsSsh(gitExe) + "\"" + options + " %*\r\n")
+                : script("ssh.sh", "#!/bin/sh\nexec ssh" + options + " \"$@\"\n");
+        environment.put("GIT_SSH", ssh.getAbsolutePath());
+        environment.put("GIT_SSH_VARIANT", "ssh");
+    }
+
+    /**
+     * Git for Windows ships ssh next to git, but does not put it on the PATH.
+     */
+    private static String windowsSsh(String gitExe) {
+        File gitDir = new File(gitExe).getAbsoluteFile().getParentFile();
+        if (gitDir != null && gitDir.getParentFile() != null) {
+            for (String candidate : new String[]{"usr/bin/ssh.exe", "bin/ssh.exe"}) {
+                File ssh = new File(gitDir.getParentFile(), candidate);
+                if (ssh.isFile()) {
+                    return ssh.getAbsolutePath();
+                }
+            }
+        }
+        return "ssh.exe";
+    }
+
+    private File secretFile(String name, String content) throws IOException {
+        File file = new File(dir, name);
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8.name());
+        restrict(file, false);
+        return file;
+    }
+
+    private File script(String name, String content) throws IOException {
+        File file = new File(dir, name);
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8.name());
+        restrict(file, true);
+        return file;
+    }
+
+    private static File privateTempDir() throws IOException {
+        File dir = Files.createTempDirectory("pretested-git-credentials").toFile();
+        restrict(dir, true);
+        return dir;
+    }
+
+    /**
+     * Makes the file readable by its owner only, where the file system has POSIX permissions.
+     */
+    private static void restrict(File file, boolean executable) throws IOException {
+        if (WINDOWS) {
+            return;
+        }
+        EnumSet<PosixFilePermission> permissions = EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE);
+        if (executable) {
+            permissions.add(PosixFilePermission.OWNER_EXECUTE);
+        }
+        try {
+            Files.setPosixFilePermissions(file.toPath(), permissions);
+        } catch (UnsupportedOperationException ex) {
+            // Not a POSIX file system
+        }
+    }
+
+    /**
+     * Deletes the files with the secrets.
+     */
+    @Override
+    public void close() {
+        if (dir != null) {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.eclipse.jgit.lib.BitmapIndex;
+import org.eclipse.jgit.lib.BitmapIndex.Bitmap;
+import org.eclipse.jgit.lib.BitmapIndex.BitmapBuilder;
+import org.eclipse.jgit.lib.BitmapObject;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Counts the commits reachable from one commit but not from another.
+ * Uses the reachability bitmaps of the pack when they cover the commits and falls back to walking the commits when they don't.
+ */
+public final class CommitCounter {
+
+    /**
+     * The ways a count can be made, fastest first.
+     */
+    public enum Method {
+        /**
+         * Both commits have bitmaps, the count is the number of commits in the difference of the two bitmaps.
+         */
+        BITMAP("pack bitmaps"),
+        /**
+         * Only the target has a bitmap, the walk stops as soon as it reaches a commit in it.
+         */
+        BITMAP_ASSISTED_WALK("bitmap assisted commit walk"),
+        /**
+         * No usable bitmaps, every commit in the range is walked.
+         */
+        WALK("commit walk");
+
+        private final String description;
+
+        Method(String description) {
+            this.description = description;
+        }
+
+        /**
+         * @return a human readable description, used in the build log
+         */
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * A commit count and the method used to find it.
+     */
+    public static class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int count;
+        private final Method method;
+
+        /**
+         * Constructor for Result
+         * @param count The number of commits
+         * @param method The method used to count them
+         */
+        public Result(int count, Method method) {
+            this.count = count;
+            this.method = method;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+    }
+
+    private CommitCounter() { }
+
+    /**
+     * Counts the commits reachable from start but not from target.
+     * The walk is left in a reset state, ready to be reused.
+     *
+     * @param walk The RevWalk to use, start and target must be parsed by it
+     * @param start The head of the range
+     * @param target The commit whose history is excluded from the range
+     * @return the count and the method used to find it
+     * @throws IOException when the repository cannot be read
+     */
+    public static Result count(RevWalk walk, RevCommit start, RevCommit target) throws IOException {
+        return count(walk, start, target, 0);
+    }
+
+    /**
+     * Counts the commits reachable from start but not from target, stopping as soon as the limit is reached.
+     * The walk is left in a reset state, ready to be reused.
+     *
+     * @param walk The RevWalk to use, start and target must be parsed by it
+     * @param start The head of the range
+     * @param target The commit whose history is excluded from the range
+     * @param limit The count to stop at, 0 for no limit
+     * @return the count, at most limit, and the method used to find it
+     * @throws IOException when the repository cannot be read
+     */
+    public static Result count(RevWalk walk, RevCommit start, RevCommit target, int limit) throws IOException {
+        BitmapIndex index = walk.getObjectReader().getBitmapIndex();
+        Bitmap targetBitmap = index == null ? null : index.getBitmap(target);
+        if (targetBitmap == null) {
+            return new Result(countByWalk(walk, start, target, limit), Method.WALK);
+        }
+
+        Bitmap startBitmap = index.getBitmap(start);
+        if (startBitmap != null) {
+            return new Result(countCommits(startBitmap.andNot(targetBitmap), limit), Method.BITMAP);
+        }
+
+        // The start is newer than the bitmaps, typically a freshly pushed ready branch.
+        // Walk back from it and stop at commits the target bitmap already covers,
+        // their history is reachable from the target as well.
+        BitmapBuilder reachableFromTarget = index.newBitmapBuilder().or(targetBitmap);
+        RevFlag counted = walk.newFlag("counted");
+        int count = 0;
+        try {
+            Deque<RevCommit> pending = new ArrayDeque<>();
+            pending.push(start);
+            while (!pending.isEmpty() && !reached(count, limit)) {
+                RevCommit commit = pending.pop();
+                if (commit.has(counted) || reachableFromTarget.contains(commit)) {
+                    continue;
+                }
+                commit.add(counted);
+                walk.parseHeaders(commit);
+                count++;
+                for (RevCommit parent : commit.getParents()) {
+                    pending.push(parent);
+                }
+            }
+        } finally {
+            walk.disposeFlag(counted);
+            walk.reset();
+        }
+        return new Result(count, Method.BITMAP_ASSISTED_WALK);
+    }
+
+    /**
+     * Counts the commits in the difference of two pack bitmaps.
+     * The objects come in pack order, where git may put annotated tags among the commits,
+     * so every object of the range is looked at.
+     */
+    private static int countCommits(Bitmap range, int limit) {
+        int count = 0;
+        for (BitmapObject object : range) {
+            if (object.getType() != Constants.OBJ_COMMIT) {
+                continue;
+            }
+            count++;
+            if (reached(count, limit)) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private static int countByWalk(RevWalk walk, RevCommit start, RevCommit target, int limit) throws IOException {
+        walk.markStart(start);
+        walk.markUninteresting(target);
+        int count = 0;
+        while (!reached(count, limit) && walk.next() != null) {
+            count++;
+        }
+        walk.reset();
+        return count;
+    }
+
+    private static boolean reached(int count, int limit) {
+        return limit > 0 && count >= limit;
+    }
+}
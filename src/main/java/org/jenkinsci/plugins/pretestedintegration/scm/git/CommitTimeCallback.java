@@ -0,0 +1,40 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Callback used to find when a Git commit was committed
+ */
+public class CommitTimeCallback extends RepositoryListenerAwareCallback<Long> {
+
+    /**
+     * The commit Id
+     */
+    public final ObjectId id;
+
+    /**
+     * Constructor for CommitTimeCallback
+     * @param id The Commit id of the commit of which to find the commit time.
+     */
+    public CommitTimeCallback(final ObjectId id) {
+        this.id = id;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return the commit time, in milliseconds since the epoch
+     */
+    @Override
+    public Long invoke(Repository repository, VirtualChannel channel) throws IOException, InterruptedException {
+        RevWalk walk = new RevWalk(repository);
+        try {
+            return walk.parseCommit(id).getCommitTime() * 1000L;
+        } finally {
+            walk.dispose();
+        }
+    }
+}
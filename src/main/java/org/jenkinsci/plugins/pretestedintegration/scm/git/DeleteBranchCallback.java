@@ -0,0 +1,92 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.BranchDeletionFailedException;
+
+/**
+ * Callback that deletes a development branch on the remote, but only if it still points to the commit that was
+ * integrated, with git push --force-with-lease. The GitClient has no way to push with a lease.
+ * Runs the git configured for the node, with the credentials of the remote.
+ */
+public class DeleteBranchCallback extends RepositoryListenerAwareCallback<Boolean> {
+
+    /**
+     * The git executable on the agent.
+     */
+    public final String gitExe;
+
+    /**
+     * The environment of the build, so git gets its PATH, proxies and configuration.
+     */
+    public final Map<String, String> environment;
+
+    /**
+     * The credentials of the remote, or null.
+     */
+    public final StandardUsernameCredentials credentials;
+
+    /**
+     * The remote, like origin.
+     */
+    public final String remote;
+
+    /**
+     * The branch to delete on the remote, like ready/feature.
+     */
+    public final String branch;
+
+    /**
+     * The commit the branch must still point to.
+     */
+    public final String expectedSha;
+
+    /**
+     * Constructor for DeleteBranchCallback
+     * @param gitExe The git executable on the agent
+     * @param environment The environment of the build
+     * @param credentials The credentials of the remote, may be null
+     * @param remote The remote
+     * @param branch The branch to delete on the remote
+     * @param expectedSha The commit the branch must still point to
+     */
+    public DeleteBranchCallback(final String gitExe, final Map<String, String> environment, final StandardUsernameCredentials credentials,
+                                final String remote, final String branch, final String expectedSha) {
+        this.gitExe = gitExe;
+        this.environment = new HashMap<>(environment);
+        // The credentials are sent to the agent, so take what they hold on the controller now
+        this.credentials = credentials == null ? null : CredentialsProvider.snapshot(StandardUsernameCredentials.class, credentials);
+        this.remote = remote;
+        this.branch = branch;
+        this.expectedSha = expectedSha;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return true if deleted, false if the branch got new commits and was kept
+     * @throws BranchDeletionFailedException When the remote rejected the deletion for another reason
+     */
+    @Override
+    public Boolean invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+        String ref = Constants.R_HEADS + branch;
+        GitProcess.Result push;
+        try (CommandLineCredentials commandLineCredentials = CommandLineCredentials.write(credentials, gitExe)) {
+            Map<String, String> env = new HashMap<>(environment);
+            env.putAll(commandLineCredentials.getEnvironment());
+            push = GitProcess.run(gitExe, repo.getDirectory(), env, null, "push", "--porcelain", "--force-with-lease=" + ref + ":" + expectedSha, remote, ":" + ref);
+        }
+        if (push.exitCode == 0) {
+            return true;
+        }
+        if (push.stdout.contains("(stale info)")) {
+            return false;
+        }
+        throw new BranchDeletionFailedException(String.format("Failed to delete branch %s with the following error:%n%s%s", branch, push.stdout, push.stderr));
+    }
+}
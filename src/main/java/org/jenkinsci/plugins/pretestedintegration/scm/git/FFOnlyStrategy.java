@@ -40,22 +40,40 @@ public class FFOnlyStrategy extends GitIntegrationStrategy {
     private void doTheIntegration(Run build, TaskListener listener, GitBridge gitbridge, ObjectId commitId,
             GitClient client, String expandedIntegrationBranch, Branch triggerBranch) throws IntegrationFailedException,
             NothingToDoException, UnsupportedConfigurationException, IntegrationUnknownFailureException {
-        // Get the commit count
-        int commitCount;
+        // Find out whether a fast-forward is possible before trying one
+        AncestryCheckCallback.Ancestry ancestry;
+        long start = System.nanoTime();
         try {
-            commitCount = PretestedIntegrationGitUtils.countCommits(commitId, client, expandedIntegrationBranch);
-            String text = "Branch commit count: " + commitCount;
+            ancestry = client.withRepository(new AncestryCheckCallback(commitId, expandedIntegrationBranch));
+            String text = "Ancestry of development branch: " + ancestry;
             LOGGER.log(Level.INFO, GitMessages.LOG_PREFIX + text);
             listener.getLogger().println(GitMessages.LOG_PREFIX + text);
         } catch (IOException | InterruptedException ex) {
-            throw new IntegrationFailedException("Failed to count commits.", ex);
+            throw new IntegrationFailedException("Failed to check ancestry.", ex);
+        } finally {
+            // Takes the place of counting commits in the other strategies
+            IntegrationTimingAction.record(build, IntegrationTimingAction.COUNT_COMMITS, start);
         }
-        if (commitCount == 0) {
+        if (ancestry == AncestryCheckCallback.Ancestry.ALREADY_INTEGRATED) {
             throw new NothingToDoException(
                     "Commit count is 0. Already integrated/part of integration branch: " + expandedIntegrationBranch);
         }
+        if (ancestry == AncestryCheckCallback.Ancestry.DIVERGED) {
+            // No need to spawn git merge --ff-only, it is bound to fail
+            listener.getLogger().println(GitMessages.LOG_PREFIX + "FF merge not possible, the development branch is not based on the integration branch head.");
+            throw new IntegrationFailedException("FastForward --ff-only failed");
+        }
 
-        if (tryFastForward(commitId, listener.getLogger(), client)) {
+        boolean fastForwarded;
+        start = System.nanoTime();
+        try {
+            fastForwarded = requiresIntegrationBranchCheckout()
+                    ? tryFastForward(commitId, listener.getLogger(), client)
+                    : tryFastForwardInCore(commitId, listener.getLogger(), client, expandedIntegrationBranch);
+        } finally {
+            IntegrationTimingAction.record(build, IntegrationTimingAction.MERGE, start);
+        }
+        if (fastForwarded) {
             return;
         } else {
             throw new IntegrationFailedException("FastForward --ff-only failed");
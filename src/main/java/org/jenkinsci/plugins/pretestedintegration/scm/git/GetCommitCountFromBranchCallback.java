@@ -2,7 +2,8 @@ package org.jenkinsci.plugins.pretestedintegration.scm.git;
 
 import hudson.remoting.VirtualChannel;
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -13,6 +14,8 @@ import org.eclipse.jgit.revwalk.RevWalk;
  */
 public class GetCommitCountFromBranchCallback extends RepositoryListenerAwareCallback<Integer> {
 
+    private static final Logger LOGGER = Logger.getLogger(GetCommitCountFromBranchCallback.class.getName());
+
     /**
      * The commit Id of the starting point.
      */
@@ -23,14 +26,30 @@ public class GetCommitCountFromBranchCallback extends RepositoryListenerAwareCal
      */
     public final String targetBranchName;
 
+    /**
+     * The count to stop counting at, 0 for an exact count.
+     */
+    public final int limit;
+
     /**
      * Constructor for GetCommitCountFromBranchCallback
      * @param startObjectId The Id of the starting commit
      * @param targetBranchName The name of the destination integrationBranch
      */
     public GetCommitCountFromBranchCallback(final ObjectId startObjectId, final String targetBranchName) {
+        this(startObjectId, targetBranchName, 0);
+    }
+
+    /**
+     * Constructor for a bounded GetCommitCountFromBranchCallback
+     * @param startObjectId The Id of the starting commit
+     * @param targetBranchName The name of the destination integrationBranch
+     * @param limit The count to stop counting at, 0 for an exact count
+     */
+    public GetCommitCountFromBranchCallback(final ObjectId startObjectId, final String targetBranchName, final int limit) {
         this.startObjectId = startObjectId;
         this.targetBranchName = targetBranchName;
+        this.limit = limit;
     }
 
     /**
@@ -43,17 +62,10 @@ public class GetCommitCountFromBranchCallback extends RepositoryListenerAwareCal
         ObjectId targetId = repository.resolve(targetBranchName);
         RevCommit targetCommit = walker.parseCommit(targetId);
 
-        walker.markStart(originCommit);
-        walker.markUninteresting(targetCommit);
-
-        int commitCount = 0;
-        Iterator<RevCommit> iterator = walker.iterator();
-        while (iterator.hasNext()) {
-            iterator.next();
-            commitCount++;
-        }
+        CommitCounter.Result result = CommitCounter.count(walker, originCommit, targetCommit, limit);
         walker.dispose();
+        LOGGER.log(Level.FINE, String.format("Counted %d commits using %s", result.getCount(), result.getMethod().getDescription()));
 
-        return commitCount;
+        return result.getCount();
     }
 }
@@ -1,5 +1,6 @@
 package org.jenkinsci.plugins.pretestedintegration.scm.git;
 
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import hudson.AbortException;
 import hudson.EnvVars;
 import hudson.Extension;
@@ -10,6 +11,9 @@ import hudson.model.TaskListener;
 import hudson.plugins.git.Branch;
 import hudson.plugins.git.GitException;
 import org.apache.commons.lang.StringUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.URIish;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.pretestedintegration.AbstractSCMBridge;
 import org.jenkinsci.plugins.pretestedintegration.IntegrationStrategy;
@@ -20,8 +24,14 @@ import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -31,6 +41,7 @@ import java.util.regex.Pattern;
  */
 public class GitBridge extends AbstractSCMBridge {
     private static final Logger LOGGER = Logger.getLogger(GitBridge.class.getName());
+    private static final Pattern STALE_TIP_REJECTION = Pattern.compile(".*\\((non-fast-forward|fetch first)\\).*", Pattern.DOTALL);
 
     /**
      * The name of the integration repository.
@@ -66,15 +77,101 @@ public class GitBridge extends AbstractSCMBridge {
     }
 
     public static void pushToIntegrationBranchGit(Run<?, ?> run, TaskListener listener, GitClient client, String expandedRepo, String expandedBranch) throws PushFailedException {
+        pushToIntegrationBranchGit(run, listener, client, expandedRepo, expandedBranch, PushRetryPolicy.NO_RETRIES);
+    }
+
+    public static void pushToIntegrationBranchGit(Run<?, ?> run, TaskListener listener, GitClient client, String expandedRepo, String expandedBranch, PushRetryPolicy retryPolicy) throws PushFailedException {
+        pushToIntegrationBranchGit(run, listener, client, expandedRepo, expandedBranch, retryPolicy, 0);
+    }
+
+    /**
+     * Pushes HEAD to the integration branch.
+     * If the push is rejected because the integration branch has moved on since the build started,
+     * the tested commit can be re-applied on the new tip and pushed again, see {@link ReapplyCommitCallback}.
+     *
+     * @param run            The Run
+     * @param listener       The TaskListener
+     * @param client         The GitClient
+     * @param expandedRepo   The remote, like origin
+     * @param expandedBranch The integration branch
+     * @param retryPolicy    The retry policy for failed pushes
+     * @param rebaseAttempts How often to re-apply the tested commit after a rejection, 0 to fail right away
+     * @throws PushFailedException When the push failed
+     */
+    public static void pushToIntegrationBranchGit(Run<?, ?> run, TaskListener listener, GitClient client, String expandedRepo, String expandedBranch, PushRetryPolicy retryPolicy, int rebaseAttempts) throws PushFailedException {
+        String source = "HEAD";
+        int rebase = 0;
+        while (true) {
+            try {
+                pushToBranch(run, listener, client, source, expandedBranch, expandedRepo, retryPolicy);
+                return;
+            } catch (GitException gex) {
+                if (rebase >= rebaseAttempts || !isStaleTipRejection(gex.getMessage())) {
+                    throw gex;
+                }
+                rebase++;
+                String logMessage = String.format("Integration branch %s moved while building, re-applying the tested commit on the new tip (attempt %d of %d)", expandedBranch, rebase, rebaseAttempts);
+                LOGGER.log(Level.INFO, logMessage);
+                listener.getLogger().println(GitMessages.LOG_PREFIX + logMessage);
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, "Failed to push changes to integration branch. Exception:", ex);
+                listener.getLogger().println(GitMessages.LOG_PREFIX + String.format("Failed to push changes to integration branch. Exception %s", ex));
+                throw new PushFailedException(String.format("Failed to push changes to integration branch, message was:%n%s", ex));
+            }
+            long start = System.nanoTime();
+            try {
+                source = reapplyOnNewTip(listener, client, source, expandedRepo, expandedBranch).getName();
+            } finally {
+                IntegrationTimingAction.record(run, IntegrationTimingAction.REAPPLY, start);
+            }
+        }
+    }
+
+    private static ObjectId reapplyOnNewTip(TaskListener listener, GitClient client, String tested, String expandedRepo, String expandedBranch) throws PushFailedException {
+        String remoteBranch = expandedRepo + "/" + expandedBranch;
         try {
-            pushToBranch(listener, client, expandedBranch, expandedRepo, 0);
-        } catch (IOException ex) {
-            LOGGER.log(Level.SEVERE, "Failed to push changes to integration branch. Exception:", ex);
-            listener.getLogger().println(GitMessages.LOG_PREFIX + String.format("Failed to push changes to integration branch. Exception %s", ex));
-            throw new PushFailedException(String.format("Failed to push changes to integration branch, message was:%n%s", ex));
+            client.fetch_().from(remoteUri(client, expandedRepo),
+                    Collections.singletonList(new RefSpec("+refs/heads/" + expandedBranch + ":refs/remotes/" + remoteBranch))).execute();
+            ObjectId reapplied = client.withRepository(new ReapplyCommitCallback(tested, remoteBranch));
+            String logMessage = String.format("Re-applied the tested commit on %s as %s", remoteBranch, reapplied.getName());
+            LOGGER.log(Level.INFO, logMessage);
+            listener.getLogger().println(GitMessages.LOG_PREFIX + logMessage);
+            return reapplied;
+        } catch (IntegrationFailedException ex) {
+            listener.getLogger().println(GitMessages.LOG_PREFIX + "Could not re-apply the tested commit. " + ex.getMessage());
+            throw new PushFailedException(String.format("Integration branch %s moved while building, and the tested commit could not be re-applied:%n%s", expandedBranch, ex.getMessage()));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new PushFailedException(String.format("Interrupted while re-applying the tested commit on %s", remoteBranch));
+        } catch (IOException | URISyntaxException | GitException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to re-apply the tested commit. Exception:", ex);
+            listener.getLogger().println(GitMessages.LOG_PREFIX + String.format("Failed to re-apply the tested commit. Exception %s", ex));
+            throw new PushFailedException(String.format("Failed to re-apply the tested commit on %s, message was:%n%s", remoteBranch, ex));
         }
     }
 
+    /**
+     * The start of the message of an atomic push rejected because a development branch to delete moved,
+     * see {@link AtomicPushCallback}.
+     */
+    static final String STALE_BRANCH_REJECTION = "Nothing was pushed, a development branch got new commits since the build started";
+
+    /**
+     * @param message The message of a push failure
+     * @return true if an atomic push was rejected because a development branch got new commits, and nothing was pushed
+     */
+    public static boolean isStaleBranchRejection(String message) {
+        return message != null && message.startsWith(STALE_BRANCH_REJECTION);
+    }
+
+    /**
+     * @param message The message of a push failure
+     * @return true if the push was rejected because the remote branch has commits the pushed commit does not contain
+     */
+    public static boolean isStaleTipRejection(String message) {
+        return message != null && STALE_TIP_REJECTION.matcher(message).matches();
+    }
+
     public static void pushToBranch(TaskListener listener, GitClient client, String branchToPush, String expandedRepo) throws PushFailedException {
         try {
             LOGGER.log(Level.INFO, "Pushing changes to: " + branchToPush);
@@ -94,33 +191,84 @@ public class GitBridge extends AbstractSCMBridge {
     }
 
     public static void pushToBranch(TaskListener listener, GitClient client, String targetRemoteBranch, String expandedRepo, int retries) throws PushFailedException {
-        try {
-            LOGGER.log(Level.INFO, "Pushing changes from HEAD to remote branch: " + targetRemoteBranch);
-            listener.getLogger().println(GitMessages.LOG_PREFIX + "Pushing changes to branch:");
-            client.push(expandedRepo, "HEAD:refs/heads/" + targetRemoteBranch.replace(expandedRepo + "/", ""));
-            LOGGER.log(Level.INFO, "Done pushing changes");
-            listener.getLogger().println(GitMessages.LOG_PREFIX + "Done pushing changes");
-        } catch (InterruptedException ex) {
-            LOGGER.log(Level.SEVERE, "Failed to push changes to: " + targetRemoteBranch + ".\nException:", ex);
-            listener.getLogger().println(GitMessages.LOG_PREFIX + String.format("Failed to push changes to: " + targetRemoteBranch + ".\nException: %s", ex));
-            throw new PushFailedException(String.format("Failed to push changes to branch, message was:%n%s", ex));
-        } catch (GitException gex) {
-            final Pattern nonFastForward = Pattern.compile(".*[rejected].*\\(non-fast-forward\\).*", Pattern.DOTALL);
-            //Something is wrong on the remote and it's not a fast forward issue...try again
-            if (gex.getMessage() != null && !nonFastForward.matcher(gex.getMessage()).matches() && retries > 0) {
-                LOGGER.log(Level.WARNING, LOG_PREFIX + "Failed to push...retrying in 5 seconds");
-                listener.getLogger().println(LOG_PREFIX + "Failed to push...retrying in 5 seconds");
+        pushToBranch(listener, client, targetRemoteBranch, expandedRepo, PushRetryPolicy.DEFAULT.withMaxRetries(retries));
+    }
+
+    /**
+     * Pushes HEAD to a remote branch, retrying failed pushes as the policy allows.
+     * Non-fast-forward rejections are not retried, retrying cannot fix them.
+     *
+     * @param listener           The TaskListener
+     * @param client             The GitClient
+     * @param targetRemoteBranch The branch to push to
+     * @param expandedRepo       The remote, like origin
+     * @param retryPolicy        The retry policy
+     * @throws PushFailedException When interrupted
+     */
+    public static void pushToBranch(TaskListener listener, GitClient client, String targetRemoteBranch, String expandedRepo, PushRetryPolicy retryPolicy) throws PushFailedException {
+        pushToBranch(null, listener, client, "HEAD", targetRemoteBranch, expandedRepo, retryPolicy);
+    }
+
+    private static void pushToBranch(Run<?, ?> run, TaskListener listener, GitClient client, String source, String targetRemoteBranch, String expandedRepo, PushRetryPolicy retryPolicy) throws PushFailedException {
+        final long start = System.nanoTime();
+        int attempt = 1;
+        while (true) {
+            final long attemptStart = System.nanoTime();
+            try {
+                LOGGER.log(Level.INFO, "Pushing changes from " + source + " to remote branch: " + targetRemoteBranch);
+                listener.getLogger().println(GitMessages.LOG_PREFIX + "Pushing changes to branch:");
                 try {
-                    Thread.sleep(5000); //Wait 5 seconds
-                } catch (InterruptedException e) { /* NOOP */ }
-                GitBridge.pushToBranch(listener, client, targetRemoteBranch, expandedRepo, --retries);
-            } else {
-                throw gex;
+                    client.push(expandedRepo, source + ":refs/heads/" + targetRemoteBranch.replace(expandedRepo + "/", ""));
+                } finally {
+                    IntegrationTimingAction.record(run, IntegrationTimingAction.PUSH, attemptStart);
+                }
+                String logMessage = String.format("Done pushing changes in %d ms (attempt %d)", millisSince(attemptStart), attempt);
+                LOGGER.log(Level.INFO, logMessage);
+                listener.getLogger().println(GitMessages.LOG_PREFIX + logMessage);
+                return;
+            } catch (InterruptedException ex) {
+                LOGGER.log(Level.SEVERE, "Failed to push changes to: " + targetRemoteBranch + ".\nException:", ex);
+                listener.getLogger().println(GitMessages.LOG_PREFIX + String.format("Failed to push changes to: " + targetRemoteBranch + ".\nException: %s", ex));
+                Thread.currentThread().interrupt();
+                throw new PushFailedException(String.format("Failed to push changes to branch, message was:%n%s", ex));
+            } catch (GitException gex) {
+                //Something is wrong on the remote and it's not a fast forward issue...try again
+                if (gex.getMessage() == null || isStaleTipRejection(gex.getMessage())) {
+                    throw gex;
+                }
+                long delay = retryPolicy.delayBeforeRetry(attempt, ThreadLocalRandom.current());
+                if (!retryPolicy.allowsRetry(attempt, millisSince(start), delay)) {
+                    String logMessage = String.format("Push attempt %d failed after %d ms, giving up after %d ms (%s)",
+                            attempt, millisSince(attemptStart), millisSince(start), retryPolicy);
+                    LOGGER.log(Level.WARNING, LOG_PREFIX + logMessage);
+                    listener.getLogger().println(LOG_PREFIX + logMessage);
+                    throw gex;
+                }
+                String logMessage = String.format("Push attempt %d failed after %d ms, retrying in %d ms (%s)",
+                        attempt, millisSince(attemptStart), delay, retryPolicy);
+                LOGGER.log(Level.WARNING, LOG_PREFIX + logMessage);
+                listener.getLogger().println(LOG_PREFIX + logMessage);
+                long waitStart = System.nanoTime();
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    listener.getLogger().println(LOG_PREFIX + "Interrupted while waiting to retry the push");
+                    throw new PushFailedException(String.format("Interrupted while waiting to retry the push to %s, last failure was:%n%s", targetRemoteBranch, gex.getMessage()));
+                } finally {
+                    IntegrationTimingAction.record(run, IntegrationTimingAction.PUSH_RETRY_WAIT, waitStart);
+                }
+                attempt++;
             }
         }
     }
 
+    private static long millisSince(long nanoTime) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanoTime);
+    }
+
     public static void deleteBranch(Run<?, ?> run, TaskListener listener, GitClient client, String branchToBeDeleted, String expandedRepo) throws BranchDeletionFailedException, IOException {
+        long start = System.nanoTime();
         try {
             LOGGER.log(Level.INFO, "Deleting branch:");
             listener.getLogger().println(GitMessages.LOG_PREFIX+ "Deleting branch:");
@@ -132,6 +280,196 @@ public class GitBridge extends AbstractSCMBridge {
             LOGGER.log(Level.SEVERE, "Failed to delete branch. Exception:", ex);
             listener.getLogger().println(GitMessages.LOG_PREFIX+ "Failed to delete development branch. Exception:" + ex.getMessage());
             throw new BranchDeletionFailedException(String.format("Failed to delete branch %s with the following error:%n%s", branchToBeDeleted, ex.getMessage()));
+        } finally {
+            IntegrationTimingAction.record(run, IntegrationTimingAction.DELETE_BRANCH, start);
+        }
+    }
+
+    /**
+     * Deletes a development branch on the remote if it still points to the commit that was integrated.
+     * A branch that got new commits during the build is kept, so they get integrated by a later build.
+     * Used for batches and atomic pushes, it runs the git of the node rather than the git client.
+     *
+     * @param run               The build
+     * @param listener          The TaskListener
+     * @param client            The GitClient
+     * @param gitExe            The git executable of the node
+     * @param environment       The environment of the build
+     * @param credentials       The credentials of the remote, may be null
+     * @param branchToBeDeleted The development branch, like origin/ready/feature
+     * @param expectedSha       The commit that was integrated
+     * @param expandedRepo      The remote, like origin
+     * @return true if deleted, false if the branch got new commits and was kept
+     * @throws BranchDeletionFailedException When the deletion failed
+     * @throws IOException When git could not be started
+     */
+    public static boolean deleteBranch(Run<?, ?> run, TaskListener listener, GitClient client, String gitExe, Map<String, String> environment, StandardUsernameCredentials credentials,
+                                       String branchToBeDeleted, String expectedSha, String expandedRepo) throws BranchDeletionFailedException, IOException {
+        long start = System.nanoTime();
+        String branchName = branchToBeDeleted.replaceFirst(Pattern.quote(expandedRepo + "/"), "");
+        try {
+            LOGGER.log(Level.INFO, "Deleting branch " + branchName + " at " + expectedSha);
+            listener.getLogger().println(GitMessages.LOG_PREFIX + "Deleting development branch " + branchToBeDeleted + ":");
+            boolean deleted = client.withRepository(new DeleteBranchCallback(gitExe, environment, credentials, expandedRepo, branchName, expectedSha));
+            if (deleted) {
+                LOGGER.log(Level.INFO, "Done deleting branch");
+                listener.getLogger().println(GitMessages.LOG_PREFIX + "Done deleting development branch");
+            } else {
+                LOGGER.log(Level.INFO, "Kept branch " + branchName + ", it moved from " + expectedSha);
+                listener.getLogger().println(GitMessages.LOG_PREFIX + "Not deleting " + branchToBeDeleted + ", it got new commits since the build started");
+            }
+            return deleted;
+        } catch (InterruptedException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to delete branch. Exception:", ex);
+            listener.getLogger().println(GitMessages.LOG_PREFIX + "Failed to delete development branch. Exception:" + ex.getMessage());
+            Thread.currentThread().interrupt();
+            throw new BranchDeletionFailedException(String.format("Failed to delete branch %s with the following error:%n%s", branchToBeDeleted, ex.getMessage()));
+        } finally {
+            IntegrationTimingAction.record(run, IntegrationTimingAction.DELETE_BRANCH, start);
+        }
+    }
+
+    /**
+     * Deletes the remote-tracking refs of development branches deleted on the remote. Failures are only logged,
+     * the next git fetch --prune removes them as well.
+     *
+     * @param listener        The TaskListener
+     * @param client          The GitClient
+     * @param deletedBranches The deleted development branches, like origin/ready/feature
+     */
+    public static void pruneTrackingBranches(TaskListener listener, GitClient client, List<String> deletedBranches) {
+        try {
+            List<String> pruned = client.withRepository(new PruneTrackingRefsCallback(deletedBranches));
+            LOGGER.log(Level.FINE, "Pruned " + pruned);
+            if (!pruned.isEmpty()) {
+                listener.getLogger().println(GitMessages.LOG_PREFIX + "Pruned " + pruned.size() + " stale remote-tracking branch(es) from the workspace");
+            }
+        } catch (IOException | InterruptedException | GitException ex) {
+            LOGGER.log(Level.WARNING, "Failed to prune remote-tracking branches " + deletedBranches, ex);
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Pushes HEAD to the integration branch and deletes the development branches in one atomic push.
+     * Saves a round-trip, and the development branches are never left behind after a successful integration.
+     * A development branch is only deleted if it still points to the commit that was integrated.
+     *
+     * @param listener            The TaskListener
+     * @param client              The GitClient
+     * @param gitExe              The git executable of the node
+     * @param environment         The environment of the build
+     * @param credentials         The credentials of the remote, may be null
+     * @param expandedRepo        The remote, like origin
+     * @param expandedBranch      The integration branch
+     * @param branchesToBeDeleted The development branches, like origin/ready/feature, each with the SHA that was integrated
+     * @return true if pushed, false if atomic pushes are not supported and nothing was pushed
+     * @throws PushFailedException When the push failed
+     */
+    public static boolean pushAndDeleteBranchesAtomically(TaskListener listener, GitClient client, String gitExe, Map<String, String> environment, StandardUsernameCredentials credentials,
+                                                          String expandedRepo, String expandedBranch, Map<String, String> branchesToBeDeleted) throws PushFailedException {
+        Map<String, String> branchNames = new LinkedHashMap<>();
+        for (Map.Entry<String, String> branch : branchesToBeDeleted.entrySet()) {
+            branchNames.put(branch.getKey().replaceFirst(Pattern.quote(expandedRepo + "/"), ""), branch.getValue());
+        }
+        try {
+            LOGGER.log(Level.INFO, "Pushing changes to " + expandedBranch + " and deleting " + branchNames.keySet() + " atomically");
+            listener.getLogger().println(GitMessages.LOG_PREFIX + "Pushing changes to integration branch and deleting development branch:");
+            boolean pushed = client.withRepository(new AtomicPushCallback(gitExe, environment, credentials, expandedRepo, expandedBranch, branchNames));
+            if (pushed) {
+                LOGGER.log(Level.INFO, "Done pushing changes");
+                listener.getLogger().println(GitMessages.LOG_PREFIX + "Done pushing changes and deleting development branch");
+            } else {
+                LOGGER.log(Level.WARNING, "Atomic push not supported by " + gitExe + " or " + expandedRepo + ", pushing and deleting separately");
+                listener.getLogger().println(GitMessages.LOG_PREFIX + "WARNING: Atomic push is enabled, but not supported by git on this node (2.4 or newer is needed) or by the remote. "
+                        + "Pushing and deleting separately");
+            }
+            return pushed;
+        } catch (PushFailedException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to push changes to integration branch. Exception:", ex);
+            listener.getLogger().println(GitMessages.LOG_PREFIX + ex.getMessage());
+            throw ex;
+        } catch (IOException | InterruptedException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to push changes to integration branch. Exception:", ex);
+            listener.getLogger().println(GitMessages.LOG_PREFIX + String.format("Failed to push changes to integration branch. Exception %s", ex));
+            throw new PushFailedException(String.format("Failed to push changes to integration branch, message was:%n%s", ex));
+        }
+    }
+
+    /**
+     * Pushes a commit to a ref outside refs/heads, like the result of a speculative integration.
+     *
+     * @param listener     The TaskListener
+     * @param client       The GitClient
+     * @param expandedRepo The remote, like origin
+     * @param commit       The commit to push
+     * @param ref          The full name of the remote ref
+     * @throws PushFailedException When the push failed
+     */
+    public static void pushRef(TaskListener listener, GitClient client, String expandedRepo, String commit, String ref) throws PushFailedException {
+        try {
+            LOGGER.log(Level.INFO, "Pushing " + commit + " to " + ref);
+            client.push(expandedRepo, "+" + commit + ":" + ref);
+            listener.getLogger().println(GitMessages.LOG_PREFIX + "Pushed " + commit + " to " + ref);
+        } catch (GitException | InterruptedException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to push " + ref + ". Exception:", ex);
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new PushFailedException(String.format("Failed to push %s, message was:%n%s", ref, ex.getMessage()));
+        }
+    }
+
+    /**
+     * Fetches a ref outside refs/heads into the same ref of the local repository.
+     *
+     * @param client       The GitClient
+     * @param expandedRepo The remote, like origin
+     * @param ref          The full name of the remote ref
+     * @throws IOException When the fetch failed
+     * @throws InterruptedException When interrupted
+     */
+    public static void fetchRef(GitClient client, String expandedRepo, String ref) throws IOException, InterruptedException {
+        try {
+            client.fetch_().from(remoteUri(client, expandedRepo), Collections.singletonList(new RefSpec("+" + ref + ":" + ref))).execute();
+        } catch (URISyntaxException | GitException ex) {
+            throw new IOException("Failed to fetch " + ref + " from " + expandedRepo, ex);
+        }
+    }
+
+    /**
+     * The Git plugin gives the GitClient the credentials of each remote by its URL,
+     * so fetches go to the URL of the remote rather than to its name.
+     *
+     * @param client       The GitClient
+     * @param expandedRepo The remote, like origin
+     * @return the URL of the remote, or the given name if the remote has no URL configured
+     */
+    private static URIish remoteUri(GitClient client, String expandedRepo) throws URISyntaxException, InterruptedException {
+        String url = client.getRemoteUrl(expandedRepo);
+        return new URIish(url == null ? expandedRepo : url);
+    }
+
+    /**
+     * Deletes a ref outside refs/heads on the remote. Failures are only logged, the ref is left behind.
+     *
+     * @param listener     The TaskListener
+     * @param client       The GitClient
+     * @param expandedRepo The remote, like origin
+     * @param ref          The full name of the remote ref
+     */
+    public static void deleteRef(TaskListener listener, GitClient client, String expandedRepo, String ref) {
+        try {
+            client.push(expandedRepo, ":" + ref);
+            listener.getLogger().println(GitMessages.LOG_PREFIX + "Deleted " + ref);
+        } catch (GitException | InterruptedException ex) {
+            LOGGER.log(Level.WARNING, "Failed to delete " + ref, ex);
+            listener.getLogger().println(GitMessages.LOG_PREFIX + "Failed to delete " + ref + ": " + ex.getMessage());
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
@@ -1,7 +1,13 @@
 package org.jenkinsci.plugins.pretestedintegration.scm.git;
 
+import hudson.EnvVars;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
 import hudson.plugins.git.Branch;
 import hudson.plugins.git.GitException;
+import hudson.plugins.git.GitSCM;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.logging.Level;
@@ -17,6 +23,7 @@ import org.jenkinsci.plugins.pretestedintegration.IntegrationStrategy;
 import org.jenkinsci.plugins.pretestedintegration.exceptions.IntegrationFailedException;
 import org.jenkinsci.plugins.pretestedintegration.exceptions.IntegrationUnknownFailureException;
 import org.jenkinsci.plugins.pretestedintegration.exceptions.NothingToDoException;
+import org.kohsuke.stapler.DataBoundSetter;
 
 /**
  * Abstract IntegrationStrategy containing common logic for Git integration
@@ -26,6 +33,35 @@ public abstract class GitIntegrationStrategy extends IntegrationStrategy impleme
 
     private static final Logger LOGGER = Logger.getLogger(GitIntegrationStrategy.class.getName());
 
+    /**
+     * How the integration commit is produced.
+     * Null in configurations saved before the setting existed, meaning {@link MergeEngine#WORKSPACE}.
+     */
+    private MergeEngine mergeEngine;
+
+    /**
+     * @return how the integration commit is produced
+     */
+    public MergeEngine getMergeEngine() {
+        return mergeEngine == null ? MergeEngine.WORKSPACE : mergeEngine;
+    }
+
+    @DataBoundSetter
+    public void setMergeEngine(MergeEngine mergeEngine) {
+        this.mergeEngine = mergeEngine;
+    }
+
+    /**
+     * Whether the integration branch must be checked out in the workspace before integrating.
+     * When false, the strategy integrates into the local integration branch ref only,
+     * and the Git plugin checks out the result afterwards.
+     *
+     * @return true if the integration branch must be checked out first
+     */
+    public boolean requiresIntegrationBranchCheckout() {
+        return getMergeEngine() == MergeEngine.WORKSPACE;
+    }
+
     /**
      * Creates a PersonIdent object from a full Git identity string.
      * 
@@ -131,6 +167,123 @@ public abstract class GitIntegrationStrategy extends IntegrationStrategy impleme
         }
     }
 
+    /**
+     * Attempts to fast-forward the integration branch to the commit, without touching the workspace.
+     *
+     * @param commitId          The commit
+     * @param logger            The logger for console logging
+     * @param client            The GitClient
+     * @param integrationBranch The local integration branch
+     * @return true if the FF merge was a success, false if the integrationBranch
+     *         isn't suitable for a FF merge.
+     * @throws IntegrationFailedException When the repository could not be read or updated
+     */
+    protected boolean tryFastForwardInCore(ObjectId commitId, PrintStream logger, GitClient client, String integrationBranch) throws IntegrationFailedException {
+        LOGGER.log(Level.INFO, GitMessages.LOG_PREFIX + "Entering tryFastForwardInCore");
+        try {
+            ObjectId result = client.withRepository(new InCoreMergeCallback(commitId, integrationBranch, InCoreMergeCallback.Mode.FAST_FORWARD, null, null, null));
+            if (result == null) {
+                logger.println(GitMessages.LOG_PREFIX + "FF merge failed.");
+                return false;
+            }
+            logger.println(GitMessages.LOG_PREFIX + "FF merge successful.");
+            return true;
+        } catch (IOException | InterruptedException ex) {
+            LOGGER.log(Level.SEVERE, GitMessages.LOG_PREFIX + "Exception while fast-forwarding", ex);
+            throw new IntegrationFailedException(ex);
+        } finally {
+            LOGGER.log(Level.INFO, GitMessages.LOG_PREFIX + " Exiting tryFastForwardInCore.");
+        }
+    }
+
+    /**
+     * Creates the integration commit without touching the workspace and moves the local integration branch to it.
+     * Uses git merge-tree and commit-tree with the {@link MergeEngine#PLUMBING} engine, and merges in memory otherwise
+     * or when the git version on the agent does not support the plumbing commands.
+     *
+     * @param scm               The GitSCM, used to find the git executable
+     * @param build             The build, its environment is passed on to command line git
+     * @param listener          The TaskListener
+     * @param client            The GitClient
+     * @param commitId          The commit to integrate
+     * @param integrationBranch The local integration branch
+     * @param mode              The kind of commit to create
+     * @param message           The commit message, not used when cherry-picking
+     * @param author            The author identity string, not used when cherry-picking
+     * @return the new head of the integration branch
+     * @throws IntegrationFailedException         When the merge conflicts
+     * @throws NothingToDoException               When the merge does not change the integration branch
+     * @throws IntegrationUnknownFailureException An unforseen failure
+     */
+    protected ObjectId integrateWithoutCheckout(GitSCM scm, Run<?, ?> build, TaskListener listener, GitClient client, ObjectId commitId, String integrationBranch, InCoreMergeCallback.Mode mode, String message, String author)
+            throws IntegrationFailedException, NothingToDoException, IntegrationUnknownFailureException {
+        PrintStream logger = listener.getLogger();
+        PersonIdent ident = author == null ? null : getPersonIdent(author);
+        String authorName = ident == null ? null : ident.getName();
+        String authorEmail = ident == null ? null : ident.getEmailAddress();
+        String modeName = mode.name().toLowerCase().replace('_', ' ');
+        try {
+            ObjectId result = null;
+            if (getMergeEngine() == MergeEngine.PLUMBING) {
+                String logMessage = String.format(GitMessages.LOG_PREFIX + "Starting %s of %s into %s with git merge-tree", modeName, commitId.getName(), integrationBranch);
+                LOGGER.log(Level.INFO, logMessage);
+                logger.println(logMessage);
+                result = client.withRepository(new PlumbingMergeCallback(gitExecutable(scm, listener), build.getEnvironment(listener), commitId, integrationBranch, mode, message, authorName, authorEmail));
+                if (result == null) {
+                    logMessage = GitMessages.LOG_PREFIX + "The git version on this node does not support this merge with git merge-tree, merging in memory instead";
+                    LOGGER.log(Level.INFO, logMessage);
+                    logger.println(logMessage);
+                }
+            }
+            if (result == null) {
+                String logMessage = String.format(GitMessages.LOG_PREFIX + "Starting in-memory %s of %s into %s", modeName, commitId.getName(), integrationBranch);
+                LOGGER.log(Level.INFO, logMessage);
+                logger.println(logMessage);
+                result = client.withRepository(new InCoreMergeCallback(commitId, integrationBranch, mode, message, authorName, authorEmail));
+            }
+            String logMessage = String.format(GitMessages.LOG_PREFIX + "Merge done, integration branch %s is now at %s", integrationBranch, result.getName());
+            LOGGER.log(Level.INFO, logMessage);
+            logger.println(logMessage);
+            return result;
+        } catch (IntegrationFailedException | NothingToDoException ex) {
+            logger.println(GitMessages.LOG_PREFIX + ex.getMessage());
+            throw ex;
+        } catch (IOException | InterruptedException ex) {
+            String logMessage = String.format(GitMessages.LOG_PREFIX + "Exception while merging without checkout. Logging exception msg: %s", ex.getMessage());
+            LOGGER.log(Level.SEVERE, logMessage, ex);
+            logger.println(logMessage);
+            throw new IntegrationUnknownFailureException(ex);
+        }
+    }
+
+    /**
+     * Finds the git executable configured for the node the build runs on.
+     *
+     * @param scm      The GitSCM
+     * @param listener The TaskListener
+     * @return the git executable, 'git' if none is configured
+     */
+    protected static String gitExecutable(GitSCM scm, TaskListener listener) {
+        Computer computer = Computer.currentComputer();
+        Node node = computer == null ? null : computer.getNode();
+        String gitExe = scm == null || node == null ? null : scm.getGitExe(node, listener);
+        return gitExe == null ? "git" : gitExe;
+    }
+
+    /**
+     * The environment of the node the build runs on, for command line git run where the environment of the build
+     * is not at hand, like while the Git plugin fetches.
+     *
+     * @param listener The TaskListener
+     * @return the environment of the node, empty if there is no node
+     * @throws IOException When the environment could not be read
+     * @throws InterruptedException When interrupted while reading it
+     */
+    protected static EnvVars nodeEnvironment(TaskListener listener) throws IOException, InterruptedException {
+        Computer computer = Computer.currentComputer();
+        return computer == null ? new EnvVars() : computer.buildEnvironment(listener);
+    }
+
     /**
      * Checks whether or not we can find the given remote integrationBranch.
      * 
@@ -141,18 +294,11 @@ public abstract class GitIntegrationStrategy extends IntegrationStrategy impleme
      */
     protected boolean containsRemoteBranch(GitClient client, Branch branch) throws IntegrationFailedException {
         try {
-            LOGGER.fine("Resolving and getting Git client from workspace:");
-            LOGGER.fine("Remote branches:");
-            for (Branch remoteBranch : client.getRemoteBranches()) {
-                LOGGER.fine(String.format("Found remote branch %s", remoteBranch.getName()));
-                if (remoteBranch.getName().equals(branch.getName())) {
-                    return true;
-                }
-            }
-        } catch (GitException | InterruptedException ex) {
+            LOGGER.fine(String.format("Looking up remote branch %s", branch.getName()));
+            return client.withRepository(new RemoteBranchExistsCallback(branch.getName()));
+        } catch (GitException | IOException | InterruptedException ex) {
             LOGGER.log(Level.SEVERE, "GitClient error", ex);
             throw new IntegrationFailedException("GitClient error, unspecified", ex);
         }
-        return false;
     }
 }
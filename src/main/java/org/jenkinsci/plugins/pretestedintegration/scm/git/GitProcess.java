@@ -0,0 +1,94 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Runs a single command line git command, for the few plumbing commands the GitClient does not offer.
+ * Meant to be used from repository callbacks, so it runs on the agent next to the repository.
+ */
+final class GitProcess {
+
+    /**
+     * The exit code git uses for usage errors, like options unknown to an older git version.
+     */
+    static final int USAGE_ERROR = 129;
+
+    /**
+     * The outcome of a git command.
+     */
+    static final class Result {
+        final int exitCode;
+        final String stdout;
+        final String stderr;
+
+        Result(int exitCode, String stdout, String stderr) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        /**
+         * @return the lines written to standard output, without the empty last line
+         */
+        List<String> lines() {
+            List<String> lines = new ArrayList<>(Arrays.asList(stdout.split("\n")));
+            if (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+                lines.remove(lines.size() - 1);
+            }
+            return lines;
+        }
+    }
+
+    private GitProcess() { }
+
+    /**
+     * Runs git and waits for it to finish. The process is killed if the thread is interrupted.
+     *
+     * @param gitExe The git executable, the one configured for the node
+     * @param directory The directory to run in
+     * @param environment The environment of the build and any extra variables, added to the environment of the agent
+     * @param stdin The text to write to standard input, or null
+     * @param args The git arguments
+     * @return the outcome of the command
+     * @throws IOException When git could not be started
+     * @throws InterruptedException When interrupted while waiting for git
+     */
+    static Result run(String gitExe, File directory, Map<String, String> environment, String stdin, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(args.length + 1);
+        command.add(gitExe);
+        command.addAll(Arrays.asList(args));
+        File stderrFile = File.createTempFile("pretested-git", ".err");
+        try {
+            ProcessBuilder builder = new ProcessBuilder(command)
+                    .directory(directory)
+                    .redirectError(stderrFile);
+            builder.environment().putAll(environment);
+            Process process = builder.start();
+            try {
+                try (OutputStream in = process.getOutputStream()) {
+                    if (stdin != null) {
+                        in.write(stdin.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                String stdout = IOUtils.toString(process.getInputStream(), StandardCharsets.UTF_8.name());
+                int exitCode = process.waitFor();
+                return new Result(exitCode, stdout, FileUtils.readFileToString(stderrFile, StandardCharsets.UTF_8.name()));
+            } finally {
+                process.destroy();
+            }
+        } finally {
+            if (!stderrFile.delete()) {
+                stderrFile.deleteOnExit();
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ResolveMerger;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.IntegrationFailedException;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.NothingToDoException;
+
+/**
+ * Callback that integrates a commit into a local branch without touching the index or the worktree.
+ * The merge is done in memory and the resulting commit is written straight to the object database,
+ * after which the branch is moved to it.
+ */
+public class InCoreMergeCallback extends RepositoryListenerAwareCallback<ObjectId> {
+
+    /**
+     * The kind of commit to create.
+     */
+    public enum Mode {
+        /**
+         * Moves the branch to the commit, if the branch is an ancestor of it.
+         */
+        FAST_FORWARD,
+        /**
+         * Creates a single parent commit with the merged tree, like git merge --squash.
+         */
+        SQUASH,
+        /**
+         * Creates a merge commit with the branch and the commit as parents, like git merge --no-ff.
+         */
+        MERGE,
+        /**
+         * Applies the changes of the commit on top of the branch, keeping its author and message, like git rebase.
+         */
+        CHERRY_PICK
+    }
+
+    /**
+     * The commit to integrate.
+     */
+    public final ObjectId commitId;
+
+    /**
+     * The local integration branch name.
+     */
+    public final String branch;
+
+    /**
+     * The kind of commit to create.
+     */
+    public final Mode mode;
+
+    /**
+     * The commit message. Not used when fast-forwarding or cherry-picking.
+     */
+    public final String message;
+
+    /**
+     * The author name. Not used when fast-forwarding or cherry-picking.
+     */
+    public final String authorName;
+
+    /**
+     * The author email address. Not used when fast-forwarding or cherry-picking.
+     */
+    public final String authorEmail;
+
+    /**
+     * Constructor for InCoreMergeCallback
+     * @param commitId The commit to integrate
+     * @param branch The local integration branch name
+     * @param mode The kind of commit to create
+     * @param message The commit message
+     * @param authorName The author name
+     * @param authorEmail The author email address
+     */
+    public InCoreMergeCallback(final ObjectId commitId, final String branch, final Mode mode, final String message, final String authorName, final String authorEmail) {
+        this.commitId = commitId;
+        this.branch = branch;
+        this.mode = mode;
+        this.message = message;
+        this.authorName = authorName;
+        this.authorEmail = authorEmail;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return the new head of the branch, or null if a fast-forward was requested but not possible
+     */
+    @Override
+    public ObjectId invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+        Ref branchRef = repo.exactRef(Constants.R_HEADS + branch);
+        if (branchRef == null) {
+            throw new IntegrationFailedException("Integration branch " + branch + " not found");
+        }
+        RevWalk walk = new RevWalk(repo);
+        try {
+            RevCommit tip = walk.parseCommit(branchRef.getObjectId());
+            RevCommit commit = walk.parseCommit(commitId);
+
+            ObjectId result;
+            if (mode == Mode.FAST_FORWARD) {
+                if (!walk.isMergedInto(tip, commit)) {
+                    return null;
+                }
+                result = commit;
+            } else {
+                result = createCommit(repo, walk, tip, commit);
+            }
+
+            RefUpdate update = repo.updateRef(branchRef.getName());
+            update.setExpectedOldObjectId(tip);
+            update.setNewObjectId(result);
+            update.setRefLogMessage("pretested integration: " + mode.name().toLowerCase().replace('_', ' '), false);
+            RefUpdate.Result updateResult = update.update(walk);
+            switch (updateResult) {
+                case NEW:
+                case FAST_FORWARD:
+                case FORCED:
+                case NO_CHANGE:
+                    return result;
+                default:
+                    throw new IntegrationFailedException("Failed to update integration branch " + branch + ": " + updateResult);
+            }
+        } finally {
+            walk.dispose();
+        }
+    }
+
+    private ObjectId createCommit(Repository repo, RevWalk walk, RevCommit tip, RevCommit commit) throws IOException {
+        ResolveMerger merger = (ResolveMerger) MergeStrategy.RECURSIVE.newMerger(repo, true);
+        if (mode == Mode.CHERRY_PICK && commit.getParentCount() > 0) {
+            merger.setBase(walk.parseCommit(commit.getParent(0)).getTree());
+        }
+        if (!merger.merge(tip, commit)) {
+            throw new IntegrationFailedException(conflictMessage(conflictingPaths(merger)));
+        }
+        ObjectId tree = merger.getResultTreeId();
+        if (mode != Mode.MERGE && tree.equals(tip.getTree())) {
+            throw new NothingToDoException("The merge did not change the integration branch, there was nothing to merge");
+        }
+
+        CommitBuilder builder = new CommitBuilder();
+        builder.setTreeId(tree);
+        builder.setCommitter(new PersonIdent(repo));
+        if (mode == Mode.CHERRY_PICK) {
+            builder.setParentId(tip);
+            builder.setAuthor(commit.getAuthorIdent());
+            builder.setMessage(commit.getFullMessage());
+        } else {
+            if (mode == Mode.MERGE) {
+                builder.setParentIds(tip, commit);
+            } else {
+                builder.setParentId(tip);
+            }
+            builder.setAuthor(new PersonIdent(authorName, authorEmail));
+            builder.setMessage(cleanupMessage(message));
+        }
+
+        try (ObjectInserter inserter = repo.newObjectInserter()) {
+            ObjectId id = inserter.insert(builder);
+            inserter.flush();
+            return id;
+        }
+    }
+
+    /**
+     * Cleans up a commit message the way git commit does with --cleanup=whitespace,
+     * so messages match the ones committed through the workspace.
+     * Strips trailing whitespace from every line, drops leading and trailing blank lines
+     * and collapses consecutive blank lines.
+     *
+     * @param message The message to clean up
+     * @return the cleaned up message, ending in a newline
+     */
+    static String cleanupMessage(String message) {
+        StringBuilder sb = new StringBuilder(message.length() + 1);
+        int pendingBlankLines = 0;
+        int start = 0;
+        while (start <= message.length()) {
+            int end = message.indexOf('\n', start);
+            if (end == -1) {
+                end = message.length();
+            }
+            int trimmed = end;
+            while (trimmed > start && Character.isWhitespace(message.charAt(trimmed - 1))) {
+                trimmed--;
+            }
+            if (trimmed == start) {
+                pendingBlankLines++;
+            } else {
+                if (sb.length() > 0 && pendingBlankLines > 0) {
+                    sb.append('\n');
+                }
+                pendingBlankLines = 0;
+                sb.append(message, start, trimmed).append('\n');
+            }
+            start = end + 1;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param merger A merger whose merge failed
+     * @return the paths that could not be merged
+     */
+    static List<String> conflictingPaths(ResolveMerger merger) {
+        List<String> paths = new ArrayList<>(merger.getUnmergedPaths());
+        Map<String, ?> failing = merger.getFailingPaths();
+        if (failing != null) {
+            paths.addAll(failing.keySet());
+        }
+        return paths;
+    }
+
+    /**
+     * @param paths The conflicting paths
+     * @return a message listing the conflicting paths, one per line
+     */
+    static String conflictMessage(List<String> paths) {
+        StringBuilder sb = new StringBuilder("Merge conflict in:");
+        for (String path : paths) {
+            sb.append(System.lineSeparator()).append("    ").append(path);
+        }
+        return sb.toString();
+    }
+}
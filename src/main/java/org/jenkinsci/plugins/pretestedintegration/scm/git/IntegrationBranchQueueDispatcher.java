@@ -0,0 +1,335 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.Extension;
+import hudson.matrix.MatrixConfiguration;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueListener;
+import hudson.model.queue.QueueTaskDispatcher;
+import hudson.plugins.git.GitSCM;
+import hudson.scm.SCM;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.model.Jenkins;
+import jenkins.triggers.SCMTriggerItem;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Holds back builds that would integrate into an integration branch that already has the configured number of
+ * builds running. Builds integrating into the same branch at the same time race each other at push time,
+ * and all but the first are rejected after spending a full test run.
+ * Waiting builds are let through in the order they were queued.
+ * <p>
+ * The running and queued builds of each integration branch are counted once for all the items of a queue
+ * maintenance, rather than by going through every executor and queued item for each item.
+ */
+@Extension
+public class IntegrationBranchQueueDispatcher extends QueueTaskDispatcher {
+
+    /**
+     * How long the load computed for one queue maintenance may be reused, also when no listener saw a change.
+     * Covers builds leaving their executor, which no listener announces.
+     */
+    private static final long LOAD_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Changed whenever the queue or the running builds change, see {@link LoadInvalidatingQueueListener}
+     * and {@link LoadInvalidatingRunListener}.
+     */
+    private static final AtomicLong generation = new AtomicLong();
+
+    private static volatile Load load;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CauseOfBlockage canRun(Queue.Item item) {
+        Load current = currentLoad();
+        Limit limit = current.limits.containsKey(item.getId()) ? current.limits.get(item.getId()) : limitOf(item.task);
+        if (limit == null) {
+            return null;
+        }
+        int running = current.running(limit.key);
+        int waitingAhead = current.waitingAhead(limit.key, item);
+        if (mayStart(running, waitingAhead, limit.maxConcurrent)) {
+            return null;
+        }
+        return new WaitingForIntegrationBranch(limit.key.branch, running, waitingAhead);
+    }
+
+    /**
+     * @return the load of the integration branches, computed once per queue maintenance rather than per queued item
+     */
+    private static Load currentLoad() {
+        Load current = load;
+        long now = System.nanoTime();
+        if (current == null || current.generation != generation.get() || now - current.computedAt > LOAD_MAX_AGE_NANOS) {
+            current = Load.compute(generation.get(), now);
+            load = current;
+        }
+        return current;
+    }
+
+    /**
+     * Marks the cached load as out of date.
+     */
+    static void invalidateLoad() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * A build may start if the running builds and the builds queued before it leave a free slot.
+     *
+     * @param running       Builds running against the integration branch
+     * @param waitingAhead  Builds queued before this one, for the same integration branch
+     * @param maxConcurrent The number of builds allowed at a time
+     * @return true if the build may start
+     */
+    public static boolean mayStart(int running, int waitingAhead, int maxConcurrent) {
+        return running + waitingAhead < maxConcurrent;
+    }
+
+    /**
+     * Orders queued items the way they are let through, the longest waiting first.
+     */
+    private static final Comparator<Queue.Item> QUEUE_ORDER = new Comparator<Queue.Item>() {
+        @Override
+        public int compare(Queue.Item a, Queue.Item b) {
+            if (a.getInQueueSince() != b.getInQueueSince()) {
+                return a.getInQueueSince() < b.getInQueueSince() ? -1 : 1;
+            }
+            return Long.compare(a.getId(), b.getId());
+        }
+    };
+
+    /**
+     * The running and queued builds per integration branch, at one point in time.
+     */
+    private static final class Load {
+        final long generation;
+        final long computedAt;
+        final Map<IntegrationKey, Integer> running = new HashMap<>();
+        /** The queued items that can start, the longest waiting first */
+        final Map<IntegrationKey, List<Queue.Item>> queued = new HashMap<>();
+        /** The limit of every queued item, null for items that are not limited */
+        final Map<Long, Limit> limits = new HashMap<>();
+
+        private Load(long generation, long computedAt) {
+            this.generation = generation;
+            this.computedAt = computedAt;
+        }
+
+        static Load compute(long generation, long computedAt) {
+            Load load = new Load(generation, computedAt);
+            for (Computer computer : Jenkins.getActiveInstance().getComputers()) {
+                load.countRunning(computer.getExecutors());
+                load.countRunning(computer.getOneOffExecutors());
+            }
+            for (Queue.Item item : Queue.getInstance().getItems()) {
+                Limit limit = limitOf(item.task);
+                load.limits.put(item.getId(), limit);
+                // Items still in their quiet period cannot start anyway
+                if (limit != null && (item instanceof Queue.BuildableItem || item instanceof Queue.BlockedItem)) {
+                    List<Queue.Item> items = load.queued.get(limit.key);
+                    if (items == null) {
+                        items = new ArrayList<>();
+                        load.queued.put(limit.key, items);
+                    }
+                    items.add(item);
+                }
+            }
+            for (List<Queue.Item> items : load.queued.values()) {
+                Collections.sort(items, QUEUE_ORDER);
+            }
+            return load;
+        }
+
+        private void countRunning(List<? extends Executor> executors) {
+            for (Executor executor : executors) {
+                Queue.Executable executable = executor.getCurrentExecutable();
+                if (executable instanceof Run) {
+                    Limit limit = limitOf(((Run<?, ?>) executable).getParent());
+                    if (limit != null) {
+                        Integer count = running.get(limit.key);
+                        running.put(limit.key, count == null ? 1 : count + 1);
+                    }
+                }
+            }
+        }
+
+        int running(IntegrationKey key) {
+            Integer count = running.get(key);
+            return count == null ? 0 : count;
+        }
+
+        /**
+         * @return the items for the same integration branch queued before the given one
+         */
+        int waitingAhead(IntegrationKey key, Queue.Item item) {
+            List<Queue.Item> items = queued.get(key);
+            if (items == null) {
+                return 0;
+            }
+            int index = Collections.binarySearch(items, item, QUEUE_ORDER);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    /**
+     * Invalidates the cached load when items enter, move through or leave the queue.
+     */
+    @Extension
+    public static final class LoadInvalidatingQueueListener extends QueueListener {
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            invalidateLoad();
+        }
+
+        @Override
+        public void onLeaveWaiting(Queue.WaitingItem wi) {
+            invalidateLoad();
+        }
+
+        @Override
+        public void onEnterBlocked(Queue.BlockedItem bi) {
+            invalidateLoad();
+        }
+
+        @Override
+        public void onLeaveBlocked(Queue.BlockedItem bi) {
+            invalidateLoad();
+        }
+
+        @Override
+        public void onEnterBuildable(Queue.BuildableItem bi) {
+            invalidateLoad();
+        }
+
+        @Override
+        public void onLeaveBuildable(Queue.BuildableItem bi) {
+            invalidateLoad();
+        }
+
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            invalidateLoad();
+        }
+    }
+
+    /**
+     * Invalidates the cached load when builds start and finish.
+     */
+    @Extension
+    public static final class LoadInvalidatingRunListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onStarted(Run<?, ?> run, TaskListener listener) {
+            invalidateLoad();
+        }
+
+        @Override
+        public void onFinalized(Run<?, ?> run) {
+            invalidateLoad();
+        }
+    }
+
+    /**
+     * @return the integration branch the task integrates into and its limit, or null if the task is not limited
+     */
+    private static Limit limitOf(Object task) {
+        // Matrix configurations run inside the build of their parent, which already holds the slot
+        if (task instanceof MatrixConfiguration || !(task instanceof Job)) {
+            return null;
+        }
+        SCMTriggerItem scmItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(task);
+        if (scmItem == null) {
+            return null;
+        }
+        for (SCM scm : scmItem.getSCMs()) {
+            if (!(scm instanceof GitSCM)) {
+                continue;
+            }
+            GitSCM gitSCM = (GitSCM) scm;
+            PretestedIntegrationAsGitPluginExt extension = gitSCM.getExtensions().get(PretestedIntegrationAsGitPluginExt.class);
+            if (extension == null || extension.getMaxConcurrentIntegrations() == 0) {
+                continue;
+            }
+            String url = PretestedIntegrationGitUtils.remoteUrl(gitSCM, extension.repoName);
+            String branch = StringUtils.isBlank(extension.getIntegrationBranch()) ? "master" : extension.getIntegrationBranch();
+            return new Limit(new IntegrationKey(url, branch), extension.getMaxConcurrentIntegrations());
+        }
+        return null;
+    }
+
+    /**
+     * A repository URL and integration branch.
+     */
+    static final class IntegrationKey {
+        final String url;
+        final String branch;
+
+        IntegrationKey(String url, String branch) {
+            this.url = StringUtils.defaultString(url);
+            this.branch = branch;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof IntegrationKey)) {
+                return false;
+            }
+            IntegrationKey other = (IntegrationKey) o;
+            return url.equals(other.url) && branch.equals(other.branch);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * url.hashCode() + branch.hashCode();
+        }
+    }
+
+    private static final class Limit {
+        final IntegrationKey key;
+        final int maxConcurrent;
+
+        Limit(IntegrationKey key, int maxConcurrent) {
+            this.key = key;
+            this.maxConcurrent = maxConcurrent;
+        }
+    }
+
+    /**
+     * Shown in the queue while a build waits for its integration branch.
+     */
+    public static final class WaitingForIntegrationBranch extends CauseOfBlockage {
+        private final String branch;
+        private final int running;
+        private final int waitingAhead;
+
+        WaitingForIntegrationBranch(String branch, int running, int waitingAhead) {
+            this.branch = branch;
+            this.running = running;
+            this.waitingAhead = waitingAhead;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getShortDescription() {
+            return String.format("Waiting to integrate into %s: %d build(s) integrating, %d queued before this one", branch, running, waitingAhead);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * An append-only journal of integration events, one JSON object per line, see {@link IntegrationEventListener}.
+ * <p>
+ * Builds only queue their event; a single writer thread appends whatever is queued in one write, so builds never
+ * wait for the disk. When the file would grow past its maximum size it is rotated to <code>.1</code>, the
+ * earlier <code>.1</code> to <code>.2</code> and so on, and the oldest is deleted. If the queue is full, because
+ * the disk cannot keep up, events are dropped and logged rather than slowing the builds down.
+ * <p>
+ * The journal of the controller is <code>$JENKINS_HOME/pretested-integration/integration-events.jsonl</code>.
+ * Its size and number of files are set with the system properties
+ * <code>org.jenkinsci.plugins.pretestedintegration.scm.git.IntegrationEventJournal.maxBytes</code> (10 MB) and
+ * <code>.maxFiles</code> (5, counting the current one).
+ */
+public final class IntegrationEventJournal {
+
+    private static final Logger LOGGER = Logger.getLogger(IntegrationEventJournal.class.getName());
+
+    /**
+     * The file name of the journal of the controller.
+     */
+    public static final String FILE_NAME = "integration-events.jsonl";
+
+    private static final long MAX_BYTES = Long.getLong(IntegrationEventJournal.class.getName() + ".maxBytes", 10L * 1024 * 1024);
+    private static final int MAX_FILES = Integer.getInteger(IntegrationEventJournal.class.getName() + ".maxFiles", 5);
+
+    /**
+     * The most events waiting to be written.
+     */
+    private static final int QUEUE_CAPACITY = 10000;
+
+    /**
+     * The most events written at once.
+     */
+    private static final int MAX_BATCH = 500;
+
+    private static IntegrationEventJournal instance;
+
+    private final File file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+    /**
+     * Events queued and events written or dropped, to let {@link #flush} wait for the writer.
+     */
+    private long queued;
+    private long done;
+    private long dropped;
+
+    /**
+     * @param file The journal file, its directory is created when needed
+     * @param maxBytes The size past which the file is rotated
+     * @param maxFiles How many files to keep, counting the current one
+     */
+    public IntegrationEventJournal(File file, long maxBytes, int maxFiles) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        Thread writer = new Thread(this::writeLoop, "Pretested integration event journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return the journal of the controller
+     */
+    public static synchronized IntegrationEventJournal get() {
+        if (instance == null) {
+            File dir = new File(Jenkins.getActiveInstance().getRootDir(), "pretested-integration");
+            instance = new IntegrationEventJournal(new File(dir, FILE_NAME), MAX_BYTES, MAX_FILES);
+        }
+        return instance;
+    }
+
+    /**
+     * Queues an event for writing. Does not wait for the disk.
+     *
+     * @param json The event, a JSON object without line breaks
+     */
+    public void append(String json) {
+        synchronized (this) {
+            queued++;
+        }
+        if (!queue.offer(json)) {
+            long total;
+            synchronized (this) {
+                done++;
+                total = ++dropped;
+                notifyAll();
+            }
+            LOGGER.log(total == 1 ? Level.WARNING : Level.FINE, GitMessages.LOG_PREFIX + "Integration event journal is falling behind, dropped " + total + " events so far");
+        }
+    }
+
+    /**
+     * Waits until the events queued so far are written.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void flush() throws InterruptedException {
+        long target = queued;
+        while (done < target) {
+            wait();
+        }
+    }
+
+    /**
+     * @return the journal file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return how many events were dropped because the writer fell behind
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            try {
+                write(batch);
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, GitMessages.LOG_PREFIX + "Failed to write " + batch.size() + " events to " + file, ex);
+            }
+            synchronized (this) {
+                done += batch.size();
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<String> batch) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String json : batch) {
+            sb.append(json).append('\n');
+        }
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        if (file.length() > 0 && file.length() + bytes.length > maxBytes) {
+            rotate();
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(bytes);
+        }
+    }
+
+    private void rotate() throws IOException {
+        File oldest = rotated(maxFiles - 1);
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("Could not delete " + oldest);
+        }
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            File from = rotated(i);
+            if (from.exists() && !from.renameTo(rotated(i + 1))) {
+                throw new IOException("Could not rename " + from + " to " + rotated(i + 1));
+            }
+        }
+    }
+
+    /**
+     * @param generation 0 for the current file, 1 for the one before it, and so on
+     */
+    private File rotated(int generation) {
+        return generation == 0 ? file : new File(file.getPath() + "." + generation);
+    }
+}
@@ -0,0 +1,112 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.Extension;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * Writes one event per completed integration build to the {@link IntegrationEventJournal}, so integrations can be
+ * analyzed without reading build records and console logs. An event looks like, on one line:
+ * <pre>
+ * {"startTime":1500000000000,"job":"folder/job","run":42,"result":"SUCCESS","outcome":"PUSHED",
+ *  "strategy":"Squashed commit","triggeredBranch":"origin/ready/feature","triggeredCommit":"0a1b...",
+ *  "integrationBranch":"master","integratedCommit":"2c3d...","commits":3,"durationMillis":61000,
+ *  "phases":{"Fetch":1200,"Count commits":40,"Merge":300,"Push":900}}
+ * </pre>
+ * <code>commitsAtLeast</code> is added when counting stopped at a limit, and <code>batch</code> lists the branches of
+ * a batch. Fields that are not known, like the integrated commit of a failed merge, are left out.
+ */
+@Extension
+public class IntegrationEventListener extends RunListener<Run<?, ?>> {
+
+    private static final Logger LOGGER = Logger.getLogger(IntegrationEventListener.class.getName());
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCompleted(Run<?, ?> run, TaskListener listener) {
+        PretestTriggerCommitAction trigger = run.getAction(PretestTriggerCommitAction.class);
+        if (trigger == null) {
+            return;
+        }
+        try {
+            IntegrationEventJournal.get().append(toJson(run, trigger).toString());
+        } catch (RuntimeException ex) {
+            // Never fail a build over its event
+            LOGGER.log(Level.WARNING, GitMessages.LOG_PREFIX + "Failed to journal the integration of " + run.getFullDisplayName(), ex);
+        }
+    }
+
+    /**
+     * @param run The completed build
+     * @param trigger The branch the build integrated
+     * @return the event of the build
+     */
+    static JSONObject toJson(Run<?, ?> run, PretestTriggerCommitAction trigger) {
+        Result result = run.getResult();
+        IntegrationOutcomeAction outcome = run.getAction(IntegrationOutcomeAction.class);
+        JSONObject json = new JSONObject();
+        json.put("startTime", run.getStartTimeInMillis());
+        json.put("job", run.getParent().getFullName());
+        json.put("run", run.getNumber());
+        putIfKnown(json, "result", result == null ? null : result.toString());
+        json.put("outcome", outcomeOf(result, outcome).name());
+        putIfKnown(json, "strategy", outcome == null ? null : outcome.getStrategy());
+        if (trigger.triggerBranch != null) {
+            json.put("triggeredBranch", trigger.triggerBranch.getName());
+            json.put("triggeredCommit", trigger.triggerBranch.getSHA1String());
+        }
+        putIfKnown(json, "integrationBranch", trigger.integrationBranch);
+        if (outcome != null) {
+            putIfKnown(json, "integratedCommit", outcome.getIntegratedCommit());
+            putIfKnown(json, "commits", outcome.getCommitCount());
+            if (outcome.isCommitCountBounded()) {
+                json.put("commitsAtLeast", true);
+            }
+        }
+        BatchIntegrationAction batch = run.getAction(BatchIntegrationAction.class);
+        if (batch != null) {
+            json.put("batch", JSONArray.fromObject(batch.getBranches()));
+        }
+        json.put("durationMillis", run.getDuration());
+        IntegrationTimingAction timings = run.getAction(IntegrationTimingAction.class);
+        if (timings != null) {
+            JSONObject phases = new JSONObject();
+            for (IntegrationTimingAction.Phase phase : timings.getPhases()) {
+                phases.put(phase.getName(), phase.getMillis());
+            }
+            json.put("phases", phases);
+        }
+        return json;
+    }
+
+    /**
+     * The outcome recorded by the integration, or what the result of the build tells when it did not get as far
+     * as recording one.
+     */
+    private static IntegrationOutcomeAction.Outcome outcomeOf(Result result, IntegrationOutcomeAction action) {
+        if (action != null && action.getOutcome() != null) {
+            return action.getOutcome();
+        }
+        if (result == Result.ABORTED) {
+            return IntegrationOutcomeAction.Outcome.ABORTED;
+        }
+        if (result == null || result.isBetterOrEqualTo(Result.SUCCESS)) {
+            return IntegrationOutcomeAction.Outcome.NOT_PUSHED;
+        }
+        return IntegrationOutcomeAction.Outcome.BUILD_FAILED;
+    }
+
+    private static void putIfKnown(JSONObject json, String key, Object value) {
+        if (value != null) {
+            json.put(key, value);
+        }
+    }
+}
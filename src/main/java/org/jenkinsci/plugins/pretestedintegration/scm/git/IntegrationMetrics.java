@@ -0,0 +1,218 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Aggregates the integrations of the controller per job and integration branch: how many are started and pushed,
+ * how often pushes are rejected, how often there is nothing to do or the merge fails,
+ * and the time from the commit on the development branch to the push.
+ * Each branch is registered as an MXBean under {@link #JMX_DOMAIN}, and all of them are served as JSON by
+ * {@link IntegrationMetricsRootAction}.
+ * The metrics live in the memory of the controller and start over on restart.
+ * The metrics of a deleted job are dropped, and a renamed or moved job starts over under its new name.
+ */
+public final class IntegrationMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(IntegrationMetrics.class.getName());
+
+    /**
+     * The JMX domain of the branch metrics.
+     */
+    public static final String JMX_DOMAIN = "org.jenkinsci.plugins.pretestedintegration";
+
+    private static final IntegrationMetrics INSTANCE = new IntegrationMetrics(true);
+
+    private final Map<String, BranchMetrics> branches = new TreeMap<>();
+    private final boolean registerMBeans;
+
+    /**
+     * @param registerMBeans Whether to register the metrics of each branch over JMX
+     */
+    public IntegrationMetrics(boolean registerMBeans) {
+        this.registerMBeans = registerMBeans;
+    }
+
+    /**
+     * @return the metrics of this controller
+     */
+    public static IntegrationMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param job The full name of the job
+     * @param integrationBranch The expanded integration branch
+     * @return the key of the metrics of the job and integration branch
+     */
+    public static String key(String job, String integrationBranch) {
+        return job + "#" + integrationBranch;
+    }
+
+    /**
+     * @param key The job and integration branch, see {@link #key}
+     * @return the full name of the job
+     */
+    public static String jobOf(String key) {
+        // Jenkins does not allow # in job names, branches may have it
+        int separator = key.indexOf('#');
+        return separator < 0 ? key : key.substring(0, separator);
+    }
+
+    /**
+     * Records that a build started integrating.
+     *
+     * @param key The job and integration branch, see {@link #key}
+     */
+    public void started(String key) {
+        branch(key).started();
+    }
+
+    /**
+     * Records that there was nothing to integrate.
+     *
+     * @param key The job and integration branch, see {@link #key}
+     */
+    public void nothingToDo(String key) {
+        branch(key).nothingToDo();
+    }
+
+    /**
+     * Records that the integration failed to merge.
+     *
+     * @param key The job and integration branch, see {@link #key}
+     */
+    public void conflict(String key) {
+        branch(key).conflict();
+    }
+
+    /**
+     * Records that the push of an integration failed.
+     *
+     * @param key The job and integration branch, see {@link #key}
+     */
+    public void pushRejected(String key) {
+        branch(key).pushRejected();
+    }
+
+    /**
+     * Records that an integration was pushed.
+     *
+     * @param key The job and integration branch, see {@link #key}
+     * @param commitTimes The commit times of the integrated development branches, in milliseconds
+     */
+    public void pushed(String key, List<Long> commitTimes) {
+        BranchMetrics metrics = branch(key);
+        long now = System.currentTimeMillis();
+        metrics.pushed(now);
+        for (long commitTime : commitTimes) {
+            metrics.latency(now - commitTime);
+        }
+    }
+
+    /**
+     * @return the metrics of every branch, sorted by key
+     */
+    public synchronized List<BranchMetrics> getBranches() {
+        return new ArrayList<>(branches.values());
+    }
+
+    /**
+     * @param key The job and integration branch, see {@link #key}
+     * @return the metrics of the branch, or null if nothing was recorded for it
+     */
+    public synchronized BranchMetrics find(String key) {
+        return branches.get(key);
+    }
+
+    /**
+     * Drops the metrics of a job, or of every job in a folder, and unregisters them over JMX.
+     *
+     * @param job The full name of the job or folder
+     * @return how many branches were dropped
+     */
+    public synchronized int remove(String job) {
+        int removed = 0;
+        for (Iterator<BranchMetrics> it = branches.values().iterator(); it.hasNext(); ) {
+            BranchMetrics metrics = it.next();
+            String owner = jobOf(metrics.getKey());
+            if (owner.equals(job) || owner.startsWith(job + "/")) {
+                it.remove();
+                removed++;
+                if (registerMBeans) {
+                    unregister(metrics);
+                }
+            }
+        }
+        return removed;
+    }
+
+    private synchronized BranchMetrics branch(String key) {
+        BranchMetrics metrics = branches.get(key);
+        if (metrics == null) {
+            metrics = new BranchMetrics(key);
+            branches.put(key, metrics);
+            if (registerMBeans) {
+                register(metrics);
+            }
+        }
+        return metrics;
+    }
+
+    private static ObjectName objectName(BranchMetrics metrics) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=IntegrationMetrics,branch=" + ObjectName.quote(metrics.getKey()));
+    }
+
+    private static void register(BranchMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName(metrics));
+        } catch (JMException ex) {
+            // The metrics are still served as JSON
+            LOGGER.log(Level.WARNING, GitMessages.LOG_PREFIX + "Could not register the integration metrics of " + metrics.getKey() + " over JMX", ex);
+        }
+    }
+
+    private static void unregister(BranchMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(metrics));
+        } catch (JMException ex) {
+            // Not registered, as registering failed
+            LOGGER.log(Level.FINE, GitMessages.LOG_PREFIX + "Could not unregister the integration metrics of " + metrics.getKey() + " over JMX", ex);
+        }
+    }
+
+    /**
+     * Drops the metrics of deleted jobs, and of renamed or moved jobs under their old name,
+     * so they are not served or kept registered over JMX.
+     */
+    @Extension
+    public static final class JobListener extends ItemListener {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(Item item) {
+            get().remove(item.getFullName());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            get().remove(oldFullName);
+        }
+    }
+}
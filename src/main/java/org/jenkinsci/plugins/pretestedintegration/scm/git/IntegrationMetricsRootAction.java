@@ -0,0 +1,113 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.Extension;
+import hudson.model.Api;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.RootAction;
+import hudson.plugins.git.GitSCM;
+import hudson.scm.SCM;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.model.Jenkins;
+import jenkins.triggers.SCMTriggerItem;
+import org.acegisecurity.AccessDeniedException;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Serves the integration metrics of the controller, see {@link IntegrationMetrics}, at
+ * <code>/pretested-integration-metrics/api/json</code>. Not shown in the side panel.
+ * Only the jobs the user can read are included.
+ */
+@Extension
+@ExportedBean
+public class IntegrationMetricsRootAction implements RootAction {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getDisplayName() {
+        return "Pretested Integration Metrics";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getUrlName() {
+        return "pretested-integration-metrics";
+    }
+
+    /**
+     * @return the remote API serving the metrics
+     */
+    public Api getApi() {
+        Jenkins.getActiveInstance().checkPermission(Jenkins.READ);
+        return new Api(this);
+    }
+
+    /**
+     * @return the metrics of every job the user can read, per integration branch
+     */
+    @Exported(inline = true)
+    public List<BranchMetrics> getBranches() {
+        List<BranchMetrics> readable = new ArrayList<>();
+        for (BranchMetrics branch : IntegrationMetrics.get().getBranches()) {
+            if (canRead(IntegrationMetrics.jobOf(branch.getKey()))) {
+                readable.add(branch);
+            }
+        }
+        return readable;
+    }
+
+    /**
+     * @return how many builds of jobs the user can read using the Pretested Integration extension are waiting in the queue
+     */
+    @Exported
+    public int getQueuedIntegrations() {
+        int queued = 0;
+        for (Queue.Item item : Queue.getInstance().getItems()) {
+            if (usesPretestedIntegration(item.task) && ((Item) item.task).hasPermission(Item.READ)) {
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    private static boolean canRead(String job) {
+        try {
+            Item item = Jenkins.getActiveInstance().getItemByFullName(job);
+            return item != null && item.hasPermission(Item.READ);
+        } catch (AccessDeniedException ex) {
+            // Thrown when the user may discover the job, but not read it
+            return false;
+        }
+    }
+
+    private static boolean usesPretestedIntegration(Object task) {
+        if (!(task instanceof Job)) {
+            return false;
+        }
+        SCMTriggerItem scmItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(task);
+        if (scmItem == null) {
+            return false;
+        }
+        for (SCM scm : scmItem.getSCMs()) {
+            if (scm instanceof GitSCM && ((GitSCM) scm).getExtensions().get(PretestedIntegrationAsGitPluginExt.class) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,156 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+
+/**
+ * How the integration of a build ended, with the facts about it that are only known while it runs.
+ * Written to the event journal when the build completes, see {@link IntegrationEventListener}.
+ */
+public class IntegrationOutcomeAction extends InvisibleAction {
+
+    /**
+     * How an integration ended.
+     */
+    public enum Outcome {
+        /** Integrated, tested and pushed */
+        PUSHED,
+        /** Integrated and tested, but the push failed */
+        PUSH_FAILED,
+        /** The development branch was already on the integration branch */
+        NOTHING_TO_DO,
+        /** The development branch could not be merged */
+        MERGE_FAILED,
+        /** The build failed after the integration */
+        BUILD_FAILED,
+        /** Not pushed since the build it was speculatively integrated on failed, the branch is built again */
+        RESCHEDULED,
+        /** Integrated, but the build had no publisher to push */
+        NOT_PUSHED,
+        /** The build was aborted */
+        ABORTED,
+        /** Unexpected error or configuration problem */
+        ERROR
+    }
+
+    private Outcome outcome;
+    private String strategy;
+    private Integer commitCount;
+    private boolean commitCountBounded;
+    private String integratedCommit;
+
+    /**
+     * @param run The build, may be null
+     * @return the outcome of the build, added to it if needed, or null if there is no build
+     */
+    public static IntegrationOutcomeAction of(Run<?, ?> run) {
+        if (run == null) {
+            return null;
+        }
+        synchronized (IntegrationOutcomeAction.class) {
+            IntegrationOutcomeAction action = run.getAction(IntegrationOutcomeAction.class);
+            if (action == null) {
+                action = new IntegrationOutcomeAction();
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    /**
+     * @param run The build, nothing is recorded if null
+     * @param outcome How the integration ended
+     */
+    public static void outcome(Run<?, ?> run, Outcome outcome) {
+        IntegrationOutcomeAction action = of(run);
+        if (action != null) {
+            action.setOutcome(outcome);
+        }
+    }
+
+    /**
+     * Records the outcome unless an earlier step already did, like a failed merge before the build fails.
+     *
+     * @param run The build, nothing is recorded if null
+     * @param outcome How the integration ended
+     */
+    public static void outcomeIfUnset(Run<?, ?> run, Outcome outcome) {
+        IntegrationOutcomeAction action = of(run);
+        if (action != null) {
+            synchronized (action) {
+                if (action.outcome == null) {
+                    action.outcome = outcome;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the commits of an integrated development branch, a batch adds up its branches.
+     *
+     * @param run The build, nothing is recorded if null
+     * @param analysis The analysis of the development branch
+     */
+    public static void commits(Run<?, ?> run, BranchAnalysis analysis) {
+        IntegrationOutcomeAction action = of(run);
+        if (action != null) {
+            synchronized (action) {
+                action.commitCount = (action.commitCount == null ? 0 : action.commitCount) + analysis.getCommitCount();
+                action.commitCountBounded |= analysis.isCountBounded();
+            }
+        }
+    }
+
+    /**
+     * @param run The build, nothing is recorded if null
+     * @param sha The commit the integration produced, the one that is tested
+     */
+    public static void integratedCommit(Run<?, ?> run, String sha) {
+        IntegrationOutcomeAction action = of(run);
+        if (action != null) {
+            synchronized (action) {
+                action.integratedCommit = sha;
+            }
+        }
+    }
+
+    public synchronized Outcome getOutcome() {
+        return outcome;
+    }
+
+    public synchronized void setOutcome(Outcome outcome) {
+        this.outcome = outcome;
+    }
+
+    /**
+     * @return the name of the integration strategy, or null if the integration did not start
+     */
+    public synchronized String getStrategy() {
+        return strategy;
+    }
+
+    public synchronized void setStrategy(String strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @return the commits integrated, or null if they were not counted
+     */
+    public synchronized Integer getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * @return true when counting stopped at a limit, so there may be more commits than counted
+     */
+    public synchronized boolean isCommitCountBounded() {
+        return commitCountBounded;
+    }
+
+    /**
+     * @return the SHA of the commit the integration produced, or null if it did not get that far
+     */
+    public synchronized String getIntegratedCommit() {
+        return integratedCommit;
+    }
+}
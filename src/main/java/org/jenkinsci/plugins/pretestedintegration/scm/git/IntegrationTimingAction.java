@@ -0,0 +1,205 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Records how long each phase of an integration took, from the fetch to the deletion of the development branch.
+ * Phases that run more than once, like the merges of a batch or the attempts of a push, add up.
+ * Saved with the build and available through its remote API.
+ */
+@ExportedBean
+public class IntegrationTimingAction extends InvisibleAction {
+
+    public static final String FETCH = "Fetch";
+    public static final String CHECKOUT_INTEGRATION_BRANCH = "Checkout integration branch";
+    public static final String WAIT_FOR_SPECULATION = "Wait for speculative base";
+    public static final String COUNT_COMMITS = "Count commits";
+    public static final String MERGE = "Merge";
+    public static final String COMMIT = "Commit";
+    public static final String CHECKOUT = "Checkout";
+    public static final String WAIT_FOR_PROMOTION = "Wait for earlier builds to push";
+    public static final String PUSH = "Push";
+    public static final String PUSH_RETRY_WAIT = "Push retry wait";
+    public static final String REAPPLY = "Re-apply on new tip";
+    public static final String DELETE_BRANCH = "Delete development branch";
+
+    /**
+     * The time spent in one phase.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Phase {
+        private final String name;
+        private long millis;
+        private int count;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the time spent in the phase, in milliseconds
+         */
+        @Exported
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return how often the phase ran
+         */
+        @Exported
+        public int getCount() {
+            return count;
+        }
+    }
+
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * The phases started but not stopped yet, see {@link #start}. Only known while the build runs.
+     */
+    private transient Map<String, Long> started;
+
+    /**
+     * @param run The build, may be null
+     * @return the timings of the build, added to it if needed, or null if there is no build
+     */
+    public static IntegrationTimingAction of(Run<?, ?> run) {
+        if (run == null) {
+            return null;
+        }
+        synchronized (IntegrationTimingAction.class) {
+            IntegrationTimingAction action = run.getAction(IntegrationTimingAction.class);
+            if (action == null) {
+                action = new IntegrationTimingAction();
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    /**
+     * Records the time since a {@link System#nanoTime()} taken when the phase started.
+     *
+     * @param run The build, nothing is recorded if null
+     * @param phase The phase
+     * @param startNanos The {@link System#nanoTime()} when the phase started
+     */
+    public static void record(Run<?, ?> run, String phase, long startNanos) {
+        IntegrationTimingAction action = of(run);
+        if (action != null) {
+            action.add(phase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+
+    /**
+     * Starts a phase that ends in another method, see {@link #stop}.
+     *
+     * @param run The build, nothing is recorded if null
+     * @param phase The phase
+     */
+    public static void start(Run<?, ?> run, String phase) {
+        IntegrationTimingAction action = of(run);
+        if (action != null) {
+            synchronized (action) {
+                if (action.started == null) {
+                    action.started = new HashMap<>();
+                }
+                action.started.put(phase, System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * Ends a phase started with {@link #start}. Does nothing if the phase was not started.
+     *
+     * @param run The build, nothing is recorded if null
+     * @param phase The phase
+     */
+    public static void stop(Run<?, ?> run, String phase) {
+        IntegrationTimingAction action = run == null ? null : run.getAction(IntegrationTimingAction.class);
+        if (action == null) {
+            return;
+        }
+        Long startNanos;
+        synchronized (action) {
+            startNanos = action.started == null ? null : action.started.remove(phase);
+        }
+        if (startNanos != null) {
+            record(run, phase, startNanos);
+        }
+    }
+
+    /**
+     * Adds time to a phase.
+     *
+     * @param phase The phase
+     * @param millis The time spent, in milliseconds
+     */
+    public synchronized void add(String phase, long millis) {
+        Phase entry = null;
+        for (Phase p : phases) {
+            if (p.name.equals(phase)) {
+                entry = p;
+                break;
+            }
+        }
+        if (entry == null) {
+            entry = new Phase(phase);
+            phases.add(entry);
+        }
+        entry.millis += millis;
+        entry.count++;
+    }
+
+    /**
+     * @return the phases in the order they first ran
+     */
+    @Exported
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<>(phases);
+    }
+
+    /**
+     * @return the time spent in all phases, in milliseconds
+     */
+    @Exported
+    public synchronized long getTotalMillis() {
+        long total = 0;
+        for (Phase p : phases) {
+            total += p.millis;
+        }
+        return total;
+    }
+
+    /**
+     * @return the lines of a table of the phases for the console, without the log prefix
+     */
+    public synchronized List<String> formatTable() {
+        int width = "Total".length();
+        for (Phase p : phases) {
+            width = Math.max(width, p.name.length());
+        }
+        String row = "%-" + width + "s  %5s  %10s";
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(row, "Phase", "Runs", "Time (ms)"));
+        for (Phase p : phases) {
+            lines.add(String.format(row, p.name, p.count, p.millis));
+        }
+        lines.add(String.format(row, "Total", "", getTotalMillis()));
+        return lines;
+    }
+}
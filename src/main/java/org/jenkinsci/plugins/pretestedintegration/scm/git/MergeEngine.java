@@ -0,0 +1,35 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+/**
+ * The ways an integration strategy can produce the integration commit.
+ */
+public enum MergeEngine {
+    /**
+     * Checks out the integration branch and merges with git in the workspace.
+     */
+    WORKSPACE("Merge in the workspace"),
+    /**
+     * Merges in memory and writes the commit straight to the object database.
+     * The workspace is only updated once, when the Git plugin checks out the result.
+     */
+    IN_CORE("Merge in memory, without checking out the integration branch"),
+    /**
+     * Merges with the git plumbing commands merge-tree and commit-tree, which write straight to the object database.
+     * Falls back to {@link #IN_CORE} when the git version on the agent is too old.
+     * The workspace is only updated once, when the Git plugin checks out the result.
+     */
+    PLUMBING("Merge with git merge-tree and commit-tree, without checking out the integration branch");
+
+    private final String description;
+
+    MergeEngine(String description) {
+        this.description = description;
+    }
+
+    /**
+     * @return a human readable description, used in the UI
+     */
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,204 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.IntegrationFailedException;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.NothingToDoException;
+
+/**
+ * Callback that integrates a commit into a local branch with the git plumbing commands
+ * merge-tree --write-tree, commit-tree and update-ref.
+ * Like {@link InCoreMergeCallback}, neither the index nor the worktree is touched,
+ * but the merge is done by command line git, with its rename detection and merge strategies.
+ * Needs git 2.38 or newer, cherry-picks need git 2.40 or newer.
+ */
+public class PlumbingMergeCallback extends RepositoryListenerAwareCallback<ObjectId> {
+
+    /**
+     * The git executable on the agent.
+     */
+    public final String gitExe;
+
+    /**
+     * The environment of the build, so git gets its PATH, proxies and configuration.
+     */
+    public final Map<String, String> environment;
+
+    /**
+     * The commit to integrate.
+     */
+    public final ObjectId commitId;
+
+    /**
+     * The local integration branch name.
+     */
+    public final String branch;
+
+    /**
+     * The kind of commit to create. Fast-forwards are not supported.
+     */
+    public final InCoreMergeCallback.Mode mode;
+
+    /**
+     * The commit message. Not used when cherry-picking.
+     */
+    public final String message;
+
+    /**
+     * The author name. Not used when cherry-picking.
+     */
+    public final String authorName;
+
+    /**
+     * The author email address. Not used when cherry-picking.
+     */
+    public final String authorEmail;
+
+    /**
+     * Constructor for PlumbingMergeCallback
+     * @param gitExe The git executable on the agent
+     * @param commitId The commit to integrate
+     * @param branch The local integration branch name
+     * @param mode The kind of commit to create
+     * @param message The commit message
+     * @param authorName The author name
+     * @param authorEmail The author email address
+     */
+    public PlumbingMergeCallback(final String gitExe, final ObjectId commitId, final String branch, final InCoreMergeCallback.Mode mode, final String message, final String authorName, final String authorEmail) {
+        this(gitExe, Collections.<String, String>emptyMap(), commitId, branch, mode, message, authorName, authorEmail);
+    }
+
+    /**
+     * Constructor for PlumbingMergeCallback
+     * @param gitExe The git executable on the agent
+     * @param environment The environment of the build
+     * @param commitId The commit to integrate
+     * @param branch The local integration branch name
+     * @param mode The kind of commit to create
+     * @param message The commit message
+     * @param authorName The author name
+     * @param authorEmail The author email address
+     */
+    public PlumbingMergeCallback(final String gitExe, final Map<String, String> environment, final ObjectId commitId, final String branch, final InCoreMergeCallback.Mode mode, final String message, final String authorName, final String authorEmail) {
+        if (mode == InCoreMergeCallback.Mode.FAST_FORWARD) {
+            throw new IllegalArgumentException("Fast-forwards need no merge");
+        }
+        this.gitExe = gitExe;
+        this.environment = new HashMap<>(environment);
+        this.commitId = commitId;
+        this.branch = branch;
+        this.mode = mode;
+        this.message = message;
+        this.authorName = authorName;
+        this.authorEmail = authorEmail;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return the new head of the branch, or null if the git version does not support the needed commands
+     */
+    @Override
+    public ObjectId invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+        Ref branchRef = repo.exactRef(Constants.R_HEADS + branch);
+        if (branchRef == null) {
+            throw new IntegrationFailedException("Integration branch " + branch + " not found");
+        }
+        RevWalk walk = new RevWalk(repo);
+        try {
+            RevCommit tip = walk.parseCommit(branchRef.getObjectId());
+            RevCommit commit = walk.parseCommit(commitId);
+
+            GitProcess.Result merge;
+            if (mode == InCoreMergeCallback.Mode.CHERRY_PICK && commit.getParentCount() > 0) {
+                merge = git(repo, null, null, "merge-tree", "--write-tree", "--name-only", "--no-messages",
+                        "--merge-base=" + commit.getParent(0).getName(), tip.getName(), commit.getName());
+            } else {
+                merge = git(repo, null, null, "merge-tree", "--write-tree", "--name-only", "--no-messages", tip.getName(), commit.getName());
+            }
+            if (merge.exitCode == GitProcess.USAGE_ERROR) {
+                return null;
+            }
+            List<String> lines = merge.lines();
+            if (merge.exitCode == 1 && !lines.isEmpty()) {
+                // The first line is the tree with conflict markers, the conflicting paths follow
+                List<String> paths = new ArrayList<>();
+                for (String path : lines.subList(1, lines.size())) {
+                    if (!path.isEmpty()) {
+                        paths.add(path);
+                    }
+                }
+                throw new IntegrationFailedException(InCoreMergeCallback.conflictMessage(paths));
+            }
+            if (merge.exitCode != 0 || lines.isEmpty()) {
+                throw new IOException("git merge-tree failed: " + merge.stderr);
+            }
+            ObjectId tree = ObjectId.fromString(lines.get(0).trim());
+            if (mode != InCoreMergeCallback.Mode.MERGE && tree.equals(tip.getTree())) {
+                throw new NothingToDoException("The merge did not change the integration branch, there was nothing to merge");
+            }
+
+            // Same committer as the in-memory merge, so a missing git identity on the agent does not fail the commit
+            PersonIdent committer = new PersonIdent(repo);
+            Map<String, String> identity = new HashMap<>();
+            identity.put("GIT_COMMITTER_NAME", committer.getName());
+            identity.put("GIT_COMMITTER_EMAIL", committer.getEmailAddress());
+            String commitMessage;
+            if (mode == InCoreMergeCallback.Mode.CHERRY_PICK) {
+                PersonIdent author = commit.getAuthorIdent();
+                identity.put("GIT_AUTHOR_NAME", author.getName());
+                identity.put("GIT_AUTHOR_EMAIL", author.getEmailAddress());
+                identity.put("GIT_AUTHOR_DATE", gitDate(author));
+                commitMessage = commit.getFullMessage();
+            } else {
+                identity.put("GIT_AUTHOR_NAME", authorName);
+                identity.put("GIT_AUTHOR_EMAIL", authorEmail);
+                commitMessage = InCoreMergeCallback.cleanupMessage(message);
+            }
+            GitProcess.Result commitTree = mode == InCoreMergeCallback.Mode.MERGE
+                    ? git(repo, identity, commitMessage, "commit-tree", tree.getName(), "-p", tip.getName(), "-p", commit.getName())
+                    : git(repo, identity, commitMessage, "commit-tree", tree.getName(), "-p", tip.getName());
+            if (commitTree.exitCode != 0) {
+                throw new IOException("git commit-tree failed: " + commitTree.stderr);
+            }
+            ObjectId result = ObjectId.fromString(commitTree.stdout.trim());
+
+            String reflogMessage = "pretested integration: " + mode.name().toLowerCase().replace('_', ' ');
+            GitProcess.Result updateRef = git(repo, null, null, "update-ref", "-m", reflogMessage, branchRef.getName(), result.getName(), tip.getName());
+            if (updateRef.exitCode != 0) {
+                throw new IntegrationFailedException("Failed to update integration branch " + branch + ": " + updateRef.stderr);
+            }
+            return result;
+        } finally {
+            walk.dispose();
+        }
+    }
+
+    private GitProcess.Result git(Repository repo, Map<String, String> extraEnvironment, String stdin, String... args) throws IOException, InterruptedException {
+        Map<String, String> env = new HashMap<>(environment);
+        if (extraEnvironment != null) {
+            env.putAll(extraEnvironment);
+        }
+        return GitProcess.run(gitExe, repo.getDirectory(), env, stdin, args);
+    }
+
+    /**
+     * @return the date of the identity in git's internal format, like '1442321765 +0200'
+     */
+    private static String gitDate(PersonIdent ident) {
+        int offset = ident.getTimeZoneOffset();
+        int absolute = Math.abs(offset);
+        return String.format("%d %c%02d%02d", ident.getWhen().getTime() / 1000, offset < 0 ? '-' : '+', absolute / 60, absolute % 60);
+    }
+}
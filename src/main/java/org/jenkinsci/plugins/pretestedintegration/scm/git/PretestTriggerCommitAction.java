@@ -18,13 +18,28 @@ public class PretestTriggerCommitAction extends InvisibleAction {
     public final String integrationBranch;
     public final String integrationRepo;
     public final String ucCredentialsId;
+    /**
+     * The git executable configured for the node the build checked out on, null for builds from older versions.
+     */
+    public final String gitExe;
 
     public PretestTriggerCommitAction( final Branch triggerBranch, final String integrationBranch, final String integrationRepo, final String ucCredentialsId ) {
+        this(triggerBranch, integrationBranch, integrationRepo, ucCredentialsId, null);
+    }
+
+    public PretestTriggerCommitAction( final Branch triggerBranch, final String integrationBranch, final String integrationRepo, final String ucCredentialsId, final String gitExe ) {
         this.triggerBranch = triggerBranch;
         this.integrationBranch = integrationBranch;
         this.integrationRepo = integrationRepo;
         this.ucCredentialsId = ucCredentialsId;
+        this.gitExe = gitExe;
+    }
 
+    /**
+     * @return the git executable to push with
+     */
+    public String getGitExe() {
+        return gitExe == null ? "git" : gitExe;
     }
 
     public PretestTriggerCommitAction( final Branch triggerBranch ) {
@@ -32,6 +47,6 @@ public class PretestTriggerCommitAction extends InvisibleAction {
         this.integrationBranch = null;
         this.integrationRepo = null;
         this.ucCredentialsId = null;
-
+        this.gitExe = null;
     }
 }
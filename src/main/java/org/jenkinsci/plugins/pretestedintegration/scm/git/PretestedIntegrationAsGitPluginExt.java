@@ -1,10 +1,16 @@
 package org.jenkinsci.plugins.pretestedintegration.scm.git;
 
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.AbortException;
 import hudson.EnvVars;
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Plugin;
+import hudson.model.Computer;
+import hudson.model.Node;
 import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
@@ -16,8 +22,15 @@ import hudson.plugins.git.util.Build;
 import hudson.plugins.git.util.GitUtils;
 import jenkins.model.Jenkins;
 import org.apache.commons.lang.StringUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.URIish;
 import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.gitclient.Git;
 import org.jenkinsci.plugins.gitclient.GitClient;
+import org.jenkinsci.plugins.gitclient.FetchCommand;
 import org.jenkinsci.plugins.gitclient.MergeCommand;
 import org.jenkinsci.plugins.pretestedintegration.IntegrationStrategy;
 import org.jenkinsci.plugins.pretestedintegration.IntegrationStrategyDescriptor;
@@ -26,11 +39,14 @@ import org.jenkinsci.plugins.pretestedintegration.exceptions.IntegrationFailedEx
 import org.jenkinsci.plugins.pretestedintegration.exceptions.NothingToDoException;
 import org.jenkinsci.plugins.pretestedintegration.exceptions.UnsupportedConfigurationException;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,6 +62,36 @@ public class PretestedIntegrationAsGitPluginExt extends GitSCMExtension {
     public String repoName;
     public IntegrationStrategy gitIntegrationStrategy;
 
+    /**
+     * Whether to merge in memory before checking out the integration branch, to fail fast on conflicts.
+     */
+    private boolean conflictPreflight = false;
+
+    /**
+     * How many builds may integrate into the same integration branch at a time, 0 for no limit.
+     */
+    private int maxConcurrentIntegrations = 0;
+
+    /**
+     * Whether to integrate on top of the untested results of builds still running, see {@link SpeculativeChains}.
+     */
+    private boolean speculative = false;
+
+    /**
+     * Hours between two compactions and prunes of the refs of a workspace, 0 to never run them.
+     */
+    private int workspaceMaintenanceHours = 0;
+
+    /**
+     * Only fetch the integration branch and the development branches starting with this prefix, blank to fetch as configured.
+     */
+    private String fetchPrefix;
+
+    /**
+     * Whether new workspaces borrow objects from a store shared by the workspaces on the agent, see {@link SharedObjectStore}.
+     */
+    private boolean sharedObjectStore = false;
+
     public PretestedIntegrationAsGitPluginExt() { }
 
     /**
@@ -72,6 +118,60 @@ public class PretestedIntegrationAsGitPluginExt extends GitSCMExtension {
         return this.integrationBranch;
     }
 
+    public boolean isConflictPreflight() {
+        return conflictPreflight;
+    }
+
+    @DataBoundSetter
+    public void setConflictPreflight(boolean conflictPreflight) {
+        this.conflictPreflight = conflictPreflight;
+    }
+
+
+    public int getMaxConcurrentIntegrations() {
+        return maxConcurrentIntegrations;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrentIntegrations(int maxConcurrentIntegrations) {
+        this.maxConcurrentIntegrations = Math.max(0, maxConcurrentIntegrations);
+    }
+
+    public boolean isSpeculative() {
+        return speculative;
+    }
+
+    @DataBoundSetter
+    public void setSpeculative(boolean speculative) {
+        this.speculative = speculative;
+    }
+
+    public int getWorkspaceMaintenanceHours() {
+        return workspaceMaintenanceHours;
+    }
+
+    @DataBoundSetter
+    public void setWorkspaceMaintenanceHours(int workspaceMaintenanceHours) {
+        this.workspaceMaintenanceHours = Math.max(0, workspaceMaintenanceHours);
+    }
+
+    public String getFetchPrefix() {
+        return fetchPrefix;
+    }
+
+    @DataBoundSetter
+    public void setFetchPrefix(String fetchPrefix) {
+        this.fetchPrefix = StringUtils.trimToNull(fetchPrefix);
+    }
+
+    public boolean isSharedObjectStore() {
+        return sharedObjectStore;
+    }
+
+    @DataBoundSetter
+    public void setSharedObjectStore(boolean sharedObjectStore) {
+        this.sharedObjectStore = sharedObjectStore;
+    }
 
     public GitBridge getGitBridge() {
         return new GitBridge(gitIntegrationStrategy, integrationBranch, repoName);
@@ -95,6 +195,7 @@ public class PretestedIntegrationAsGitPluginExt extends GitSCMExtension {
             TaskListener listener,
             Revision marked,
             Revision triggeredRevision) throws IOException, InterruptedException {
+        IntegrationTimingAction.stop(run, IntegrationTimingAction.FETCH);
         listener.getLogger().println(String.format("%s Pretested Integration Plugin v%s", LOG_PREFIX, getVersion()));
 
         GitBridge gitBridge = getGitBridge();
@@ -118,6 +219,7 @@ public class PretestedIntegrationAsGitPluginExt extends GitSCMExtension {
         Branch triggeredBranch = null;
         if ( triggeredRevision.getBranches().isEmpty() ) {
             run.setResult(Result.NOT_BUILT);
+            IntegrationOutcomeAction.outcome(run, IntegrationOutcomeAction.Outcome.ERROR);
             String logMessage = String.format("%s - No branch on revision which we cannot handle - leaving workspace: %s  and set result to NOT_BUILT", LOG_PREFIX, expandedIntegrationBranch);
             listener.getLogger().println(logMessage);
         } else {
@@ -128,19 +230,83 @@ public class PretestedIntegrationAsGitPluginExt extends GitSCMExtension {
 
         if(!run.getActions(PretestTriggerCommitAction.class).isEmpty() ) {
             run.setResult(Result.FAILURE);
+            IntegrationOutcomeAction.outcome(run, IntegrationOutcomeAction.Outcome.ERROR);
             String logMessage = String.format("%s ERROR Likely misconfigered. Currently it is not supported to integrate twice in a build. It is likely because of Pipeline preSCM step or multiSCM. Please see https://github.com/Praqma/pretested-integration-plugin/issues/133 for details about Pipeline preSCM support. If it is neither scenarios, please report it", LOG_PREFIX );
             listener.getLogger().println(logMessage);
         }
 
+        // Set when the integration happened on the branch ref only, the Git plugin checks it out afterwards
+        ObjectId integratedCommit = null;
+        // The workspace only needs resetting after a failure if something was checked out
+        boolean integrationBranchCheckedOut = false;
+        // Set when integrating on top of the untested result of an earlier build
+        SpeculativeChains.Entry speculation = null;
+        String startPoint = expandedRepo + "/" + expandedIntegrationBranch;
+        String metricsKey = IntegrationMetrics.key(run.getParent().getFullName(), expandedIntegrationBranch);
         if (run.getResult() == null || run.getResult() == Result.SUCCESS ) {
+            IntegrationMetrics.get().started(metricsKey);
             try {
                 gitBridge.evalBranchConfigurations(triggeredBranch, expandedIntegrationBranch, expandedRepo);
-                listener.getLogger().println(String.format(LOG_PREFIX + "Checking out integration branch %s:", expandedIntegrationBranch));
-                git.checkout().branch(expandedIntegrationBranch).ref(expandedRepo + "/" + expandedIntegrationBranch).deleteBranchIfExist(true).execute();
-                String logMessage = String.format("%s : HEAD sha1 after checkout of integration branch: %s", LOG_PREFIX, git.revParse("HEAD").getName());
-                listener.getLogger().println(logMessage);
-                ((GitIntegrationStrategy) gitBridge.integrationStrategy).integrate(scm, run, git, listener, marked, triggeredBranch, gitBridge);
+                GitIntegrationStrategy strategy = (GitIntegrationStrategy) gitBridge.integrationStrategy;
+                IntegrationOutcomeAction.of(run).setStrategy(strategy.getDescriptor().getDisplayName());
+                if (isSpeculative() && strategy instanceof FFOnlyStrategy) {
+                    listener.getLogger().println(LOG_PREFIX + "Speculative integration is not used with the fast-forward only strategy");
+                } else if (isSpeculative()) {
+                    speculation = SpeculativeChains.get().join(SpeculativeChains.chainKey(run.getParent().getFullName(), expandedIntegrationBranch), run.getExternalizableId(), triggeredBranch.getName());
+                    long start = System.nanoTime();
+                    SpeculativeChains.Entry base;
+                    try {
+                        base = SpeculativeChains.get().awaitBase(speculation);
+                    } finally {
+                        IntegrationTimingAction.record(run, IntegrationTimingAction.WAIT_FOR_SPECULATION, start);
+                    }
+                    if (base != null) {
+                        GitBridge.fetchRef(git, expandedRepo, base.getRef());
+                        startPoint = base.getRef();
+                        listener.getLogger().println(String.format(LOG_PREFIX + "Integrating speculatively on top of %s (%s)", base.getTriggerBranch(), base.getCommit()));
+                    }
+                }
+                if (strategy.requiresIntegrationBranchCheckout()) {
+                    if (isConflictPreflight() && !(strategy instanceof FFOnlyStrategy)) {
+                        checkForConflicts(git, listener, triggeredBranch, startPoint);
+                    }
+                    integrationBranchCheckedOut = true;
+                    listener.getLogger().println(String.format(LOG_PREFIX + "Checking out integration branch %s:", expandedIntegrationBranch));
+                    long start = System.nanoTime();
+                    try {
+                        git.checkout().branch(expandedIntegrationBranch).ref(startPoint).deleteBranchIfExist(true).execute();
+                    } finally {
+                        IntegrationTimingAction.record(run, IntegrationTimingAction.CHECKOUT_INTEGRATION_BRANCH, start);
+                    }
+                    String logMessage = String.format("%s : HEAD sha1 after checkout of integration branch: %s", LOG_PREFIX, git.revParse("HEAD").getName());
+                    listener.getLogger().println(logMessage);
+                } else {
+                    long start = System.nanoTime();
+                    ObjectId integrationHead;
+                    try {
+                        integrationHead = git.withRepository(new ResetBranchCallback(expandedIntegrationBranch, startPoint));
+                    } finally {
+                        IntegrationTimingAction.record(run, IntegrationTimingAction.CHECKOUT_INTEGRATION_BRANCH, start);
+                    }
+                    String logMessage = String.format("%s : Integrating without checkout, integration branch %s is at %s", LOG_PREFIX, expandedIntegrationBranch, integrationHead.getName());
+                    listener.getLogger().println(logMessage);
+                }
+                strategy.integrate(scm, run, git, listener, marked, triggeredBranch, gitBridge);
+                if (!strategy.requiresIntegrationBranchCheckout()) {
+                    integratedCommit = git.revParse(Constants.R_HEADS + expandedIntegrationBranch);
+                }
+                String testedCommit = (integratedCommit != null ? integratedCommit : git.revParse(HEAD)).getName();
+                IntegrationOutcomeAction.integratedCommit(run, testedCommit);
+                if (speculation != null) {
+                    // Publish the result, so the builds started after this one can integrate on top of it
+                    String ref = SpeculativeIntegrationAction.refFor(run.getParent().getFullName(), expandedIntegrationBranch, run.getNumber());
+                    GitBridge.pushRef(listener, git, expandedRepo, testedCommit, ref);
+                    SpeculativeChains.get().speculate(speculation, ref, testedCommit);
+                    run.addAction(new SpeculativeIntegrationAction(speculation));
+                }
             } catch (NothingToDoException e) {
+                IntegrationMetrics.get().nothingToDo(metricsKey);
+                IntegrationOutcomeAction.outcome(run, IntegrationOutcomeAction.Outcome.NOTHING_TO_DO);
                 run.setResult(Result.NOT_BUILT);
                 String logMessage = String.format("%s - setUp() - NothingToDoException - %s", LOG_PREFIX, e.getMessage());
                 listener.getLogger().println(logMessage);
@@ -152,27 +318,42 @@ public class PretestedIntegrationAsGitPluginExt extends GitSCMExtension {
                 // Leave the workspace as we were triggered, so postbuild step can report the correct branch
                 git.checkout().ref(triggeredBranch.getName()).execute();
             } catch (IntegrationFailedException | EstablishingWorkspaceFailedException | UnsupportedConfigurationException e) {
+                if (e instanceof IntegrationFailedException) {
+                    IntegrationMetrics.get().conflict(metricsKey);
+                }
+                IntegrationOutcomeAction.outcome(run, e instanceof IntegrationFailedException ? IntegrationOutcomeAction.Outcome.MERGE_FAILED : IntegrationOutcomeAction.Outcome.ERROR);
                 run.setResult(Result.FAILURE);
                 String logMessage = String.format("%s - setUp() - %s - %s", LOG_PREFIX, e.getClass().getSimpleName(), e.getMessage());
                 listener.getLogger().println(logMessage);
                 LOGGER.log(Level.SEVERE, logMessage, e);
-                git.checkout().branch(expandedIntegrationBranch).ref(expandedRepo + "/" + expandedIntegrationBranch).deleteBranchIfExist(true).execute();
+                if (integrationBranchCheckedOut) {
+                    git.checkout().branch(expandedIntegrationBranch).ref(expandedRepo + "/" + expandedIntegrationBranch).deleteBranchIfExist(true).execute();
+                }
             } catch (IOException | InterruptedException e) {
                 run.setResult(Result.FAILURE);
+                IntegrationOutcomeAction.outcome(run, IntegrationOutcomeAction.Outcome.ERROR);
                 String logMessage = String.format("%s - Unexpected error. %n%s", LOG_PREFIX, e.getMessage());
                 LOGGER.log(Level.SEVERE, logMessage, e);
                 listener.getLogger().println(logMessage);
                 e.printStackTrace(listener.getLogger());
-                git.checkout().branch(expandedIntegrationBranch).ref(expandedRepo + "/" + expandedIntegrationBranch).deleteBranchIfExist(true).execute();
+                if (integrationBranchCheckedOut) {
+                    git.checkout().branch(expandedIntegrationBranch).ref(expandedRepo + "/" + expandedIntegrationBranch).deleteBranchIfExist(true).execute();
+                }
             }
         }
 
-        run.addAction(new PretestTriggerCommitAction(triggeredBranch, expandedIntegrationBranch, expandedRepo, ucCredentialsId));
+        if (speculation != null && run.getResult() != null && run.getResult() != Result.SUCCESS) {
+            SpeculativeChains.get().fail(speculation);
+        }
+
+        run.addAction(new PretestTriggerCommitAction(triggeredBranch, expandedIntegrationBranch, expandedRepo, ucCredentialsId, GitIntegrationStrategy.gitExecutable(scm, listener)));
         if (run.getResult() == null || run.getResult() == Result.SUCCESS || run.getResult() == Result.NOT_BUILT) {
-            Revision mergeRevision = new GitUtils(listener, git).getRevisionForSHA1(git.revParse(HEAD));
+            Revision mergeRevision = new GitUtils(listener, git).getRevisionForSHA1(integratedCommit != null ? integratedCommit : git.revParse(HEAD));
             if ( triggeredBranch != null ) {
                 mergeRevision.getBranches().add(triggeredBranch);
             }
+            // The Git plugin checks out the returned revision, see onCheckoutCompleted
+            IntegrationTimingAction.start(run, IntegrationTimingAction.CHECKOUT);
             return mergeRevision;
         } else {
             // reset the workspace to the triggered revision
@@ -184,6 +365,251 @@ public class PretestedIntegrationAsGitPluginExt extends GitSCMExtension {
         }
     }
 
+    /**
+     * Merges the triggered branch into the integration branch in memory and fails if the merge conflicts.
+     * Runs before the integration branch is checked out, so conflicts are reported without paying for a checkout.
+     *
+     * @param git The GitClient
+     * @param listener The TaskListener
+     * @param triggeredBranch The triggered branch
+     * @param target The remote integration branch, like origin/master
+     * @throws IntegrationFailedException When the merge conflicts
+     * @throws IOException When the repository could not be read
+     * @throws InterruptedException When interrupted
+     */
+    private void checkForConflicts(GitClient git, TaskListener listener, Branch triggeredBranch, String target) throws IOException, InterruptedException {
+        listener.getLogger().println(String.format(LOG_PREFIX + "Checking %s for conflicts with %s:", triggeredBranch.getName(), target));
+        List<String> conflicts = git.withRepository(new TrialMergeCallback(triggeredBranch.getSHA1(), target));
+        if (!conflicts.isEmpty()) {
+            throw new IntegrationFailedException("Pre-flight check failed. " + InCoreMergeCallback.conflictMessage(conflicts));
+        }
+        listener.getLogger().println(LOG_PREFIX + "No conflicts found");
+    }
+
+    /**
+     * Narrows the fetch to the integration branch and the development branches, if configured,
+     * and maintains the refs of the workspace when due.
+     */
+    @Override
+    public void decorateFetchCommand(GitSCM scm, GitClient git, TaskListener listener, FetchCommand cmd) throws IOException, InterruptedException, GitException {
+        if (fetchPrefix != null) {
+            narrowFetch(scm, listener, cmd);
+        }
+        if (workspaceMaintenanceHours > 0) {
+            maintainWorkspace(scm, git, listener, cmd);
+        }
+    }
+
+    /**
+     * Replaces the refspecs of the fetch with the integration branch and the development branches starting with the prefix,
+     * so the fetch does not scale with the number of branches in the repository.
+     * Only done for a single remote with a single URL, as the fetch command does not tell which remote it fetches from,
+     * and only when the URL, integration branch and prefix use no environment variables.
+     */
+    private void narrowFetch(GitSCM scm, TaskListener listener, FetchCommand cmd) {
+        List<RemoteConfig> remotes = scm.getRepositories();
+        if (remotes.size() != 1 || remotes.get(0).getURIs().size() != 1) {
+            listener.getLogger().println(LOG_PREFIX + "Not narrowing the fetch, it only works with a single remote repository");
+            return;
+        }
+        String branch = StringUtils.isBlank(integrationBranch) ? "master" : integrationBranch;
+        if (branch.contains("$") || fetchPrefix.contains("$")) {
+            listener.getLogger().println(LOG_PREFIX + "Not narrowing the fetch, the integration branch or prefix uses environment variables");
+            return;
+        }
+        RemoteConfig remote = remotes.get(0);
+        URIish url = remote.getURIs().get(0);
+        // The fetch command was given the URL expanded with the build environment, which is not at hand here
+        if (url.toString().contains("$")) {
+            listener.getLogger().println(LOG_PREFIX + "Not narrowing the fetch, the repository URL uses environment variables");
+            return;
+        }
+        List<RefSpec> refSpecs = narrowRefSpecs(remote.getName(), branch, fetchPrefix);
+        listener.getLogger().println(LOG_PREFIX + "Fetching only " + refSpecs);
+        cmd.from(url, refSpecs);
+    }
+
+    /**
+     * @param remoteName The remote, like origin
+     * @param integrationBranch The integration branch, like master
+     * @param prefix The prefix of the development branches, like ready/
+     * @return the refspecs fetching only the integration branch and the development branches
+     */
+    public static List<RefSpec> narrowRefSpecs(String remoteName, String integrationBranch, String prefix) {
+        List<RefSpec> refSpecs = new ArrayList<>();
+        refSpecs.add(new RefSpec("+" + Constants.R_HEADS + integrationBranch + ":" + Constants.R_REMOTES + remoteName + "/" + integrationBranch));
+        refSpecs.add(new RefSpec("+" + Constants.R_HEADS + prefix + "*:" + Constants.R_REMOTES + remoteName + "/" + prefix + "*"));
+        return refSpecs;
+    }
+
+    /**
+     * Compacts the refs of the workspace and lets this fetch prune the remote-tracking branches deleted on the remote,
+     * when the workspace was last maintained longer ago than configured.
+     */
+    private void maintainWorkspace(GitSCM scm, GitClient git, TaskListener listener, FetchCommand cmd) throws InterruptedException {
+        boolean due;
+        try {
+            due = git.withRepository(new WorkspaceMaintenanceCallback(GitIntegrationStrategy.gitExecutable(scm, listener), GitIntegrationStrategy.nodeEnvironment(listener),
+                    TimeUnit.HOURS.toMillis(workspaceMaintenanceHours)));
+        } catch (IOException | GitException e) {
+            // Maintenance must never fail the build, the next build tries again
+            LOGGER.log(Level.WARNING, LOG_PREFIX + "Workspace maintenance failed", e);
+            listener.getLogger().println(LOG_PREFIX + "Workspace maintenance failed: " + e.getMessage());
+            return;
+        }
+        if (due) {
+            listener.getLogger().println(LOG_PREFIX + "Compacted workspace refs, pruning remote-tracking branches deleted on the remote");
+            cmd.prune();
+        }
+    }
+
+    /**
+     * Starts timing the fetch, see {@link IntegrationTimingAction}.
+     * Makes a new workspace borrow objects from the shared object store of the agent, if configured,
+     * so the first fetch only transfers what the store does not have.
+     * The store is refreshed first, and only used if it has the tip of the integration branch
+     * and the commit the build was asked for, if any.
+     */
+    @Override
+    public void beforeCheckout(GitSCM scm, Run<?, ?> build, GitClient git, TaskListener listener) throws IOException, InterruptedException, GitException {
+        // Ends when the revision to build is decorated, after the Git plugin fetched
+        IntegrationTimingAction.start(build, IntegrationTimingAction.FETCH);
+        if (!sharedObjectStore || git.hasGitRepo()) {
+            return;
+        }
+        EnvVars environment = build.getEnvironment(listener);
+        UserRemoteConfig remote = PretestedIntegrationGitUtils.remoteConfig(scm, repoName);
+        if (remote == null) {
+            return;
+        }
+        String url = environment.expand(remote.getUrl());
+        FilePath store = sharedObjectStoreFor(git, url);
+        if (store == null) {
+            return;
+        }
+        String remoteName = StringUtils.isBlank(repoName) ? "origin" : repoName;
+        String branch = environment.expand(StringUtils.isBlank(integrationBranch) ? "master" : integrationBranch);
+        String gitExe = GitIntegrationStrategy.gitExecutable(scm, listener);
+        try {
+            store.act(new SharedObjectStore.Create(gitExe, environment));
+            GitClient storeClient = Git.with(listener, environment).in(store).using(gitExe).getClient();
+            StandardUsernameCredentials credentials = remote.getCredentialsId() == null ? null
+                    : CredentialsProvider.findCredentialById(remote.getCredentialsId(), StandardUsernameCredentials.class, build, Collections.<DomainRequirement>emptyList());
+            if (credentials != null) {
+                storeClient.addDefaultCredentials(credentials);
+            }
+            refreshSharedObjectStore(store, gitExe, environment, credentials, listener, url, remoteName, branch);
+            if (!sharedObjectStoreHasCommits(storeClient, build, listener, url, branch)) {
+                return;
+            }
+            if (git.getWorkTree().act(new SharedObjectStore.Attach(gitExe, environment, store.getRemote(), remoteName, url))) {
+                listener.getLogger().println(LOG_PREFIX + "Created the workspace against the shared object store " + store.getRemote());
+            }
+        } catch (IOException | GitException e) {
+            // Without the store the workspace is cloned as usual
+            LOGGER.log(Level.WARNING, LOG_PREFIX + "Could not use the shared object store", e);
+            listener.getLogger().println(LOG_PREFIX + "Could not use the shared object store: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fetches into the store what changed on the remote since it was last refreshed or fed.
+     * A failed refresh is not fatal, the store may have what the build needs anyway.
+     */
+    private void refreshSharedObjectStore(FilePath store, String gitExe, EnvVars environment, StandardUsernameCredentials credentials,
+                                          TaskListener listener, String url, String remoteName, String branch) throws InterruptedException {
+        List<RefSpec> refSpecs = fetchPrefix == null || fetchPrefix.contains("$") || branch.contains("$")
+                ? Collections.singletonList(new RefSpec("+" + Constants.R_HEADS + "*:" + Constants.R_REMOTES + remoteName + "/*"))
+                : narrowRefSpecs(remoteName, branch, fetchPrefix);
+        List<String> specs = new ArrayList<>();
+        for (RefSpec refSpec : refSpecs) {
+            specs.add(refSpec.toString());
+        }
+        long start = System.currentTimeMillis();
+        try {
+            store.act(new SharedObjectStore.Refresh(gitExe, environment, credentials, url, specs));
+            listener.getLogger().println(String.format(LOG_PREFIX + "Refreshed the shared object store in %d ms", System.currentTimeMillis() - start));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, LOG_PREFIX + "Could not refresh the shared object store", e);
+            listener.getLogger().println(LOG_PREFIX + "Could not refresh the shared object store: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if the store has the tip of the integration branch on the remote, and the commit the build was asked for, if any
+     */
+    private static boolean sharedObjectStoreHasCommits(GitClient storeClient, Run<?, ?> build, TaskListener listener, String url, String branch) throws InterruptedException {
+        List<ObjectId> required = new ArrayList<>();
+        ObjectId tip = storeClient.getHeadRev(url, Constants.R_HEADS + branch);
+        if (tip != null) {
+            required.add(tip);
+        }
+        RevisionParameterAction revision = build.getAction(RevisionParameterAction.class);
+        if (revision != null && ObjectId.isId(revision.commit)) {
+            required.add(ObjectId.fromString(revision.commit));
+        }
+        for (ObjectId commit : required) {
+            if (!storeClient.isCommitInRepo(commit)) {
+                listener.getLogger().println(LOG_PREFIX + "The shared object store does not have " + commit.name() + ", not using it");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ends the timing of the checkout of the integrated revision.
+     * Hands what the workspace fetched back to the shared object store of the agent, if configured.
+     */
+    @Override
+    public void onCheckoutCompleted(GitSCM scm, Run<?, ?> build, GitClient git, TaskListener listener) throws IOException, InterruptedException, GitException {
+        IntegrationTimingAction.stop(build, IntegrationTimingAction.CHECKOUT);
+        if (!sharedObjectStore) {
+            return;
+        }
+        EnvVars environment = build.getEnvironment(listener);
+        FilePath store = sharedObjectStoreFor(git, environment.expand(PretestedIntegrationGitUtils.remoteUrl(scm, repoName)));
+        if (store == null) {
+            return;
+        }
+        String remoteName = StringUtils.isBlank(repoName) ? "origin" : repoName;
+        try {
+            git.withRepository(new SharedObjectStore.Feed(GitIntegrationStrategy.gitExecutable(scm, listener), environment, store.getRemote(),
+                    usedRefs(build, remoteName, environment.expand(StringUtils.isBlank(integrationBranch) ? "master" : integrationBranch))));
+        } catch (IOException | GitException e) {
+            // The store only gets behind, the next workspace fetches a little more
+            LOGGER.log(Level.WARNING, LOG_PREFIX + "Could not feed the shared object store", e);
+            listener.getLogger().println(LOG_PREFIX + "Could not feed the shared object store: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the remote-tracking refs of the integration branch and of the development branches the build integrated
+     */
+    private static List<String> usedRefs(Run<?, ?> build, String remoteName, String branch) {
+        List<String> refs = new ArrayList<>();
+        refs.add(Constants.R_REMOTES + remoteName + "/" + branch);
+        BatchIntegrationAction batch = build.getAction(BatchIntegrationAction.class);
+        PretestTriggerCommitAction trigger = build.getAction(PretestTriggerCommitAction.class);
+        if (batch != null) {
+            for (String batched : batch.getBranches()) {
+                refs.add(Constants.R_REMOTES + batched);
+            }
+        } else if (trigger != null && trigger.triggerBranch != null) {
+            refs.add(Constants.R_REMOTES + trigger.triggerBranch.getName());
+        }
+        return refs;
+    }
+
+    /**
+     * @return the shared object store on the agent of the workspace, or null if the agent is gone
+     */
+    private static FilePath sharedObjectStoreFor(GitClient git, String url) {
+        Computer computer = git.getWorkTree().toComputer();
+        Node node = computer == null ? null : computer.getNode();
+        return node == null ? null : SharedObjectStore.storeFor(node, url);
+    }
+
     @Override
     public void decorateMergeCommand(GitSCM scm, Run<?, ?> build, GitClient git, TaskListener listener, MergeCommand cmd) throws IOException, InterruptedException, GitException {
     }
@@ -2,7 +2,10 @@ package org.jenkinsci.plugins.pretestedintegration.scm.git;
 
 import hudson.model.Run;
 import hudson.plugins.git.Branch;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
 import hudson.plugins.git.util.BuildData;
+import org.apache.commons.lang.StringUtils;
 import org.eclipse.jgit.lib.ObjectId;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.pretestedintegration.exceptions.NothingToDoException;
@@ -10,6 +13,7 @@ import org.jenkinsci.plugins.pretestedintegration.exceptions.UnsupportedConfigur
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -37,6 +41,58 @@ public class PretestedIntegrationGitUtils {
         return commitCount;
     }
 
+    /**
+     * Counts the commits in the relevant BuildData, but only as far as needed to tell zero, one and many commits apart.
+     * Takes constant time no matter how many commits are on the development branch.
+     *
+     * @param commitId  The head commit of the development branch
+     * @param client    The GitClient
+     * @param expandedIntegrationBranch the development branch we want to count commits on
+     * @return whether there are zero, one or many commits
+     * @throws IOException          Unforseen IO issues
+     * @throws InterruptedException Unforseen other issues
+     */
+    public static BoundedCommitCount countCommitsBounded(ObjectId commitId, GitClient client, String expandedIntegrationBranch) throws IOException, InterruptedException {
+        GetCommitCountFromBranchCallback commitCountCallback = new GetCommitCountFromBranchCallback(commitId, expandedIntegrationBranch, BoundedCommitCount.LIMIT);
+        int commitCount = client.withRepository(commitCountCallback);
+        return BoundedCommitCount.of(commitCount);
+    }
+
+    /**
+     * Analyzes the commits on the development branch in a single walk.
+     *
+     * @param commitId  The head commit of the development branch
+     * @param client    The GitClient
+     * @param expandedIntegrationBranch the integration branch the commits will be integrated into
+     * @param collectCommits True to also collect a summary of every commit, needed for commit messages.
+     *                       When false, commits are only counted as far as needed to tell zero, one and many apart.
+     * @return the analysis of the development branch
+     * @throws IOException          Unforseen IO issues
+     * @throws InterruptedException Unforseen other issues
+     */
+    public static BranchAnalysis analyzeBranch(ObjectId commitId, GitClient client, String expandedIntegrationBranch, boolean collectCommits) throws IOException, InterruptedException {
+        return analyzeBranch(commitId, client, expandedIntegrationBranch, collectCommits, 0, 0);
+    }
+
+    /**
+     * Analyzes the commits on the development branch in a single walk, collecting at most a capped amount of commits.
+     * Commits beyond the caps are counted but left out of the analysis.
+     *
+     * @param commitId  The head commit of the development branch
+     * @param client    The GitClient
+     * @param expandedIntegrationBranch the integration branch the commits will be integrated into
+     * @param collectCommits True to also collect a summary of every commit, needed for commit messages.
+     *                       When false, commits are only counted as far as needed to tell zero, one and many apart.
+     * @param maxCommits The most commits to collect, 0 for no limit
+     * @param maxMessageBytes The most bytes the collected commits may take up once formatted, 0 for no limit
+     * @return the analysis of the development branch
+     * @throws IOException          Unforseen IO issues
+     * @throws InterruptedException Unforseen other issues
+     */
+    public static BranchAnalysis analyzeBranch(ObjectId commitId, GitClient client, String expandedIntegrationBranch, boolean collectCommits, int maxCommits, int maxMessageBytes) throws IOException, InterruptedException {
+        return client.withRepository(new BranchAnalysisCallback(commitId, expandedIntegrationBranch, collectCommits, BoundedCommitCount.LIMIT, maxCommits, maxMessageBytes));
+    }
+
     /**
      * Retrieves the BuildData for the given build relevant to the Integration Repository.
      * <ul>
@@ -141,4 +197,30 @@ public class PretestedIntegrationGitUtils {
         return builder.toString();
     }
 
+    /**
+     * @param scm The GitSCM
+     * @param repoName The integration repository name, blank for origin
+     * @return the URL of the integration repository, or of the first repository if none has the name
+     */
+    public static String remoteUrl(GitSCM scm, String repoName) {
+        UserRemoteConfig remote = remoteConfig(scm, repoName);
+        return remote == null ? (StringUtils.isBlank(repoName) ? "origin" : repoName) : remote.getUrl();
+    }
+
+    /**
+     * @param scm The GitSCM
+     * @param repoName The integration repository name, blank for origin
+     * @return the integration repository, the first repository if none has the name, or null if there are none
+     */
+    public static UserRemoteConfig remoteConfig(GitSCM scm, String repoName) {
+        String name = StringUtils.isBlank(repoName) ? "origin" : repoName;
+        List<UserRemoteConfig> remotes = new ArrayList<>(scm.getUserRemoteConfigs());
+        for (UserRemoteConfig remote : remotes) {
+            String remoteName = StringUtils.isBlank(remote.getName()) ? "origin" : remote.getName();
+            if (remoteName.equals(name)) {
+                return remote;
+            }
+        }
+        return remotes.isEmpty() ? null : remotes.get(0);
+    }
 }
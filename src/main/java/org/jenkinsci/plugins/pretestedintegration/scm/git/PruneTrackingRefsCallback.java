@@ -0,0 +1,51 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Callback that deletes the remote-tracking refs of branches deleted on the remote,
+ * so they do not pile up in long-lived workspaces until the next git fetch --prune.
+ */
+public class PruneTrackingRefsCallback extends RepositoryListenerAwareCallback<List<String>> {
+
+    /**
+     * The remote branch names, like origin/ready/feature.
+     */
+    public final List<String> remoteBranches;
+
+    /**
+     * Constructor for PruneTrackingRefsCallback
+     * @param remoteBranches The remote branch names, like origin/ready/feature
+     */
+    public PruneTrackingRefsCallback(final List<String> remoteBranches) {
+        this.remoteBranches = new ArrayList<>(remoteBranches);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return the refs that were deleted
+     */
+    @Override
+    public List<String> invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+        List<String> deleted = new ArrayList<>();
+        for (String remoteBranch : remoteBranches) {
+            String refName = remoteBranch.startsWith(Constants.R_REMOTES) ? remoteBranch : Constants.R_REMOTES + remoteBranch;
+            if (repo.exactRef(refName) == null) {
+                continue;
+            }
+            RefUpdate update = repo.updateRef(refName);
+            update.setForceUpdate(true);
+            RefUpdate.Result result = update.delete();
+            if (result == RefUpdate.Result.FORCED || result == RefUpdate.Result.NO_CHANGE) {
+                deleted.add(refName);
+            }
+        }
+        return deleted;
+    }
+}
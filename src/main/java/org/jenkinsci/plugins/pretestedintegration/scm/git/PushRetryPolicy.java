@@ -0,0 +1,125 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * How often, and how long apart, a failed push is retried.
+ * The delay before each retry is drawn at random between zero and an exponentially growing cap ("full jitter"),
+ * so executors pushing to the same busy remote spread out instead of retrying in lockstep.
+ * Retrying stops when the retries are used up, or when the next retry would end past the total time budget.
+ */
+public final class PushRetryPolicy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 2000;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 30000;
+    public static final long DEFAULT_BUDGET_MILLIS = 120000;
+
+    /**
+     * The policy used when nothing is configured.
+     */
+    public static final PushRetryPolicy DEFAULT = new PushRetryPolicy(DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_BUDGET_MILLIS);
+
+    /**
+     * A policy that never retries.
+     */
+    public static final PushRetryPolicy NO_RETRIES = new PushRetryPolicy(0, 0, 0, 0);
+
+    private final int maxRetries;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final long budgetMillis;
+
+    /**
+     * Constructor for PushRetryPolicy. Negative values are treated as zero.
+     *
+     * @param maxRetries         The number of retries after the first attempt
+     * @param initialDelayMillis The delay cap before the first retry, doubled for each following retry
+     * @param maxDelayMillis     The largest delay cap
+     * @param budgetMillis       The total time all attempts and delays may take, 0 for no limit
+     */
+    public PushRetryPolicy(int maxRetries, long initialDelayMillis, long maxDelayMillis, long budgetMillis) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.initialDelayMillis = Math.max(0, initialDelayMillis);
+        this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+        this.budgetMillis = Math.max(0, budgetMillis);
+    }
+
+    /**
+     * @return a copy of this policy with another number of retries
+     * @param retries The number of retries after the first attempt
+     */
+    public PushRetryPolicy withMaxRetries(int retries) {
+        return new PushRetryPolicy(retries, initialDelayMillis, maxDelayMillis, budgetMillis);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    /**
+     * @param retry The retry, starting at 1
+     * @return the upper bound of the delay before the given retry
+     */
+    long delayCap(int retry) {
+        if (initialDelayMillis == 0) {
+            return 0;
+        }
+        // Stop doubling once the cap is reached, so large retry counts cannot overflow
+        long cap = initialDelayMillis;
+        for (int i = 1; i < retry && cap < maxDelayMillis; i++) {
+            cap *= 2;
+        }
+        return Math.min(cap, maxDelayMillis);
+    }
+
+    /**
+     * @param retry  The retry, starting at 1
+     * @param random The source of the jitter
+     * @return a random delay between zero and the delay cap of the retry, both included
+     */
+    public long delayBeforeRetry(int retry, Random random) {
+        long cap = delayCap(retry);
+        if (cap == 0) {
+            return 0;
+        }
+        return (long) (random.nextDouble() * (cap + 1));
+    }
+
+    /**
+     * @param retry         The retry, starting at 1
+     * @param elapsedMillis The time spent on attempts and delays so far
+     * @param delayMillis   The delay before the retry
+     * @return true if the retry may be done
+     */
+    public boolean allowsRetry(int retry, long elapsedMillis, long delayMillis) {
+        if (retry > maxRetries) {
+            return false;
+        }
+        return budgetMillis == 0 || elapsedMillis + delayMillis < budgetMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("%d retries, backoff %d-%d ms, budget %s", maxRetries, initialDelayMillis, maxDelayMillis,
+                budgetMillis == 0 ? "unlimited" : budgetMillis + " ms");
+    }
+}
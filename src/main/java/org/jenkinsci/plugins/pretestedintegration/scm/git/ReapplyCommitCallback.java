@@ -0,0 +1,141 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ResolveMerger;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.IntegrationFailedException;
+
+/**
+ * Callback that re-applies a tested integration commit on top of an integration branch that has moved on since.
+ * The commit is merged in memory with its first parent as base, and only kept if the result is what was tested:
+ * either the tree is unchanged, or the new integration commits and the tested commit changed different paths.
+ * No ref, index or worktree is touched, the caller pushes the returned commit.
+ */
+public class ReapplyCommitCallback extends RepositoryListenerAwareCallback<ObjectId> {
+
+    /**
+     * The tested integration commit, like HEAD.
+     */
+    public final String testedRevision;
+
+    /**
+     * The new integration tip, like origin/master.
+     */
+    public final String newTip;
+
+    /**
+     * Constructor for ReapplyCommitCallback
+     * @param testedRevision The tested integration commit
+     * @param newTip The new integration tip
+     */
+    public ReapplyCommitCallback(final String testedRevision, final String newTip) {
+        this.testedRevision = testedRevision;
+        this.newTip = newTip;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return the re-applied commit, with the new tip as first parent
+     * @throws IntegrationFailedException When the commit cannot be re-applied without changing what was tested
+     */
+    @Override
+    public ObjectId invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+        ObjectId testedId = repo.resolve(testedRevision + "^{commit}");
+        ObjectId tipId = repo.resolve(newTip + "^{commit}");
+        if (testedId == null || tipId == null) {
+            throw new IntegrationFailedException("Could not resolve " + (testedId == null ? testedRevision : newTip));
+        }
+        RevWalk walk = new RevWalk(repo);
+        try {
+            RevCommit tested = walk.parseCommit(testedId);
+            RevCommit tip = walk.parseCommit(tipId);
+            if (tested.getParentCount() == 0) {
+                throw new IntegrationFailedException("The tested commit has no parent to re-apply it from");
+            }
+            RevCommit oldTip = walk.parseCommit(tested.getParent(0));
+            if (!walk.isMergedInto(oldTip, tip)) {
+                throw new IntegrationFailedException("The tested commit was not built on an earlier state of " + newTip);
+            }
+
+            ResolveMerger merger = (ResolveMerger) MergeStrategy.RECURSIVE.newMerger(repo, true);
+            merger.setBase(oldTip.getTree());
+            if (!merger.merge(tip, tested)) {
+                throw new IntegrationFailedException(InCoreMergeCallback.conflictMessage(InCoreMergeCallback.conflictingPaths(merger)));
+            }
+            ObjectId tree = merger.getResultTreeId();
+            if (!tree.equals(tested.getTree())) {
+                List<String> overlap = overlappingPaths(repo, oldTip.getTree(), tip.getTree(), tested.getTree());
+                if (!overlap.isEmpty()) {
+                    StringBuilder sb = new StringBuilder("The integration branch changed files the tested commit also changed:");
+                    for (String path : overlap) {
+                        sb.append(System.lineSeparator()).append("    ").append(path);
+                    }
+                    throw new IntegrationFailedException(sb.toString());
+                }
+            }
+
+            CommitBuilder builder = new CommitBuilder();
+            builder.setTreeId(tree);
+            List<ObjectId> parents = new ArrayList<>();
+            parents.add(tip);
+            for (int i = 1; i < tested.getParentCount(); i++) {
+                parents.add(tested.getParent(i));
+            }
+            builder.setParentIds(parents);
+            builder.setAuthor(tested.getAuthorIdent());
+            builder.setCommitter(new PersonIdent(repo));
+            builder.setEncoding(tested.getEncoding());
+            builder.setMessage(tested.getFullMessage());
+            try (ObjectInserter inserter = repo.newObjectInserter()) {
+                ObjectId id = inserter.insert(builder);
+                inserter.flush();
+                return id;
+            }
+        } finally {
+            walk.dispose();
+        }
+    }
+
+    /**
+     * @return the paths changed both from base to ours and from base to theirs
+     */
+    static List<String> overlappingPaths(Repository repo, RevTree base, RevTree ours, RevTree theirs) throws IOException {
+        Set<String> changedByOurs = changedPaths(repo, base, ours);
+        List<String> overlap = new ArrayList<>();
+        for (String path : changedPaths(repo, base, theirs)) {
+            if (changedByOurs.contains(path)) {
+                overlap.add(path);
+            }
+        }
+        return overlap;
+    }
+
+    private static Set<String> changedPaths(Repository repo, RevTree from, RevTree to) throws IOException {
+        Set<String> paths = new LinkedHashSet<>();
+        try (TreeWalk treeWalk = new TreeWalk(repo)) {
+            treeWalk.addTree(from);
+            treeWalk.addTree(to);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            while (treeWalk.next()) {
+                paths.add(treeWalk.getPathString());
+            }
+        }
+        return paths;
+    }
+}
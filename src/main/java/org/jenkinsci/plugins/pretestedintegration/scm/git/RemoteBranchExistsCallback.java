@@ -0,0 +1,36 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Callback to check whether a remote-tracking branch exists, by looking up its ref directly
+ * instead of listing every remote branch.
+ */
+public class RemoteBranchExistsCallback extends RepositoryListenerAwareCallback<Boolean> {
+
+    /**
+     * The remote branch name, like origin/ready/feature.
+     */
+    public final String remoteBranch;
+
+    /**
+     * Constructor for RemoteBranchExistsCallback
+     * @param remoteBranch The remote branch name, like origin/ready/feature
+     */
+    public RemoteBranchExistsCallback(final String remoteBranch) {
+        this.remoteBranch = remoteBranch;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return true if refs/remotes/&lt;remoteBranch&gt; exists
+     */
+    @Override
+    public Boolean invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+        String refName = remoteBranch.startsWith(Constants.R_REMOTES) ? remoteBranch : Constants.R_REMOTES + remoteBranch;
+        return repo.exactRef(refName) != null;
+    }
+}
@@ -0,0 +1,62 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.EstablishingWorkspaceFailedException;
+
+/**
+ * Callback that creates or moves a local branch to a given start point without touching the index or the worktree.
+ * The ref only equivalent of git checkout -B branch startPoint.
+ */
+public class ResetBranchCallback extends RepositoryListenerAwareCallback<ObjectId> {
+
+    /**
+     * The local branch name.
+     */
+    public final String branch;
+
+    /**
+     * The revision to move the branch to, like origin/master.
+     */
+    public final String startPoint;
+
+    /**
+     * Constructor for ResetBranchCallback
+     * @param branch The local branch name
+     * @param startPoint The revision to move the branch to
+     */
+    public ResetBranchCallback(final String branch, final String startPoint) {
+        this.branch = branch;
+        this.startPoint = startPoint;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return the commit the branch now points to
+     */
+    @Override
+    public ObjectId invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+        ObjectId target = repo.resolve(startPoint + "^{commit}");
+        if (target == null) {
+            throw new EstablishingWorkspaceFailedException(new IOException("Could not resolve " + startPoint));
+        }
+        RefUpdate update = repo.updateRef(Constants.R_HEADS + branch);
+        update.setNewObjectId(target);
+        update.setForceUpdate(true);
+        update.setRefLogMessage("pretested integration: reset to " + startPoint, false);
+        RefUpdate.Result result = update.update();
+        switch (result) {
+            case NEW:
+            case FAST_FORWARD:
+            case FORCED:
+            case NO_CHANGE:
+                return target;
+            default:
+                throw new EstablishingWorkspaceFailedException(new IOException("Failed to reset branch " + branch + " to " + startPoint + ": " + result));
+        }
+    }
+}
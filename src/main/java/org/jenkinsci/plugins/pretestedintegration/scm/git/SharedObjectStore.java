@@ -0,0 +1,316 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * One bare object store per agent and repository URL, shared by the integration workspaces on that agent.
+ * Before a new workspace is created, the store is refreshed with an incremental fetch from the remote,
+ * and only used if it then has the commits the build needs.
+ * The workspace is created as a thin repository borrowing objects from the store through objects/info/alternates,
+ * so it only fetches and stores the objects the store does not have yet.
+ * After each checkout the workspace hands the branches the build used back to the store,
+ * so the next workspace finds them there.
+ * <p>
+ * Creating, refreshing and feeding a store are serialized by a lock file next to it, as the builds on an agent
+ * run them concurrently. A refresh prunes the branches deleted on the remote from the store and lets git pack
+ * the store when it needs to. Objects are never pruned from the store, as the workspaces borrowing them would break.
+ */
+public final class SharedObjectStore {
+
+    /**
+     * The directory under the root of the agent holding the stores.
+     */
+    static final String STORES_DIR = "pretested-objects";
+
+    /**
+     * Holds the locks of the stores within the agent process, which can not lock the same file twice.
+     */
+    private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private SharedObjectStore() { }
+
+    /**
+     * @param node The agent
+     * @param url The URL of the repository
+     * @return the object store for the repository on the agent, or null if the agent is offline
+     */
+    public static FilePath storeFor(Node node, String url) {
+        FilePath root = node.getRootPath();
+        return root == null ? null : root.child(STORES_DIR).child(Util.getDigestOf(url) + ".git");
+    }
+
+    /**
+     * Creates the store if it does not exist yet.
+     */
+    public static final class Create extends MasterToSlaveFileCallable<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String gitExe;
+        private final Map<String, String> environment;
+
+        /**
+         * Constructor for Create
+         * @param gitExe The git executable on the agent
+         * @param environment The environment of the build
+         */
+        public Create(String gitExe, Map<String, String> environment) {
+            this.gitExe = gitExe;
+            this.environment = new HashMap<>(environment);
+        }
+
+        /**
+         * {@inheritDoc}
+         * @return true if the store was created, false if it already existed
+         */
+        @Override
+        public Boolean invoke(File store, VirtualChannel channel) throws IOException, InterruptedException {
+            return locked(store, () -> create(gitExe, environment, store));
+        }
+    }
+
+    /**
+     * Fetches into the store what changed on the remote since it was last refreshed or fed,
+     * prunes the branches deleted on the remote and packs the store when git finds it needs to.
+     * Creates the store if needed.
+     */
+    public static final class Refresh extends MasterToSlaveFileCallable<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String gitExe;
+        private final Map<String, String> environment;
+        private final StandardUsernameCredentials credentials;
+        private final String url;
+        private final List<String> refSpecs;
+
+        /**
+         * Constructor for Refresh
+         * @param gitExe The git executable on the agent
+         * @param environment The environment of the build
+         * @param credentials The credentials of the remote, may be null
+         * @param url The URL of the remote
+         * @param refSpecs The refspecs to fetch
+         */
+        public Refresh(String gitExe, Map<String, String> environment, StandardUsernameCredentials credentials, String url, List<String> refSpecs) {
+            this.gitExe = gitExe;
+            this.environment = new HashMap<>(environment);
+            // The credentials are sent to the agent, so take what they hold on the controller now
+            this.credentials = credentials == null ? null : CredentialsProvider.snapshot(StandardUsernameCredentials.class, credentials);
+            this.url = url;
+            this.refSpecs = new ArrayList<>(refSpecs);
+        }
+
+        /**
+         * {@inheritDoc}
+         * @return true when refreshed
+         */
+        @Override
+        public Boolean invoke(File store, VirtualChannel channel) throws IOException, InterruptedException {
+            return locked(store, () -> {
+                create(gitExe, environment, store);
+                List<String> args = new ArrayList<>();
+                // Only prunes refs the refspecs fetch into, the objects stay
+                Collections.addAll(args, "fetch", "--quiet", "--prune", url);
+                args.addAll(refSpecs);
+                GitProcess.Result fetch;
+                try (CommandLineCredentials commandLineCredentials = CommandLineCredentials.write(credentials, gitExe)) {
+                    Map<String, String> env = new HashMap<>(environment);
+                    env.putAll(commandLineCredentials.getEnvironment());
+                    fetch = GitProcess.run(gitExe, store, env, null, args.toArray(new String[args.size()]));
+                }
+                if (fetch.exitCode != 0) {
+                    throw new IOException("git fetch failed in " + store + ": " + fetch.stderr);
+                }
+                // Packs the objects of the many small fetches together, in the foreground so it holds the lock.
+                // With gc.pruneExpire=never the unreachable objects are packed too, not pruned.
+                GitProcess.Result gc = GitProcess.run(gitExe, store, environment, null, "-c", "gc.autoDetach=false", "gc", "--auto", "--quiet");
+                if (gc.exitCode != 0) {
+                    throw new IOException("git gc failed in " + store + ": " + gc.stderr);
+                }
+                return true;
+            });
+        }
+    }
+
+    /**
+     * Creates the store if needed, and makes the workspace a repository borrowing objects from it.
+     * Does nothing if the workspace already is a repository.
+     */
+    public static final class Attach extends MasterToSlaveFileCallable<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String gitExe;
+        private final Map<String, String> environment;
+        private final String storePath;
+        private final String remoteName;
+        private final String url;
+
+        /**
+         * Constructor for Attach
+         * @param gitExe The git executable on the agent
+         * @param environment The environment of the build
+         * @param storePath The path of the store on the agent
+         * @param remoteName The remote of the workspace, like origin
+         * @param url The URL of the remote
+         */
+        public Attach(String gitExe, Map<String, String> environment, String storePath, String remoteName, String url) {
+            this.gitExe = gitExe;
+            this.environment = new HashMap<>(environment);
+            this.storePath = storePath;
+            this.remoteName = remoteName;
+            this.url = url;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @return true if the workspace was created against the store, false if it already was a repository
+         */
+        @Override
+        public Boolean invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+            if (new File(workspace, Constants.DOT_GIT).exists()) {
+                return false;
+            }
+            File store = new File(storePath);
+            locked(store, () -> create(gitExe, environment, store));
+            if (!workspace.mkdirs() && !workspace.isDirectory()) {
+                throw new IOException("Could not create " + workspace);
+            }
+            run(gitExe, environment, workspace, "init", "--quiet");
+            // Configured the way a clone would have, the fetch that follows fills in the refs
+            run(gitExe, environment, workspace, "remote", "add", remoteName, url);
+            File alternates = new File(workspace, Constants.DOT_GIT + "/objects/info/alternates");
+            FileUtils.writeStringToFile(alternates, new File(store, "objects").getAbsolutePath() + "\n", StandardCharsets.UTF_8);
+            return true;
+        }
+    }
+
+    /**
+     * Hands the given refs of a workspace borrowing from the store back to the store,
+     * copying only the objects the store does not have. Refs the workspace does not have are left out.
+     */
+    public static final class Feed extends RepositoryListenerAwareCallback<Boolean> {
+
+        private final String gitExe;
+        private final Map<String, String> environment;
+        private final String storePath;
+        private final List<String> refs;
+
+        /**
+         * Constructor for Feed
+         * @param gitExe The git executable on the agent
+         * @param environment The environment of the build
+         * @param storePath The path of the store on the agent
+         * @param refs The refs the build used, like refs/remotes/origin/master
+         */
+        public Feed(String gitExe, Map<String, String> environment, String storePath, List<String> refs) {
+            this.gitExe = gitExe;
+            this.environment = new HashMap<>(environment);
+            this.storePath = storePath;
+            this.refs = new ArrayList<>(refs);
+        }
+
+        /**
+         * {@inheritDoc}
+         * @return true if the store was fed, false if the workspace does not borrow from the store or has none of the refs
+         */
+        @Override
+        public Boolean invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            File alternates = new File(repo.getDirectory(), "objects/info/alternates");
+            String storeObjects = new File(storePath, "objects").getAbsolutePath();
+            if (!alternates.isFile() || !FileUtils.readFileToString(alternates, StandardCharsets.UTF_8).contains(storeObjects)) {
+                return false;
+            }
+            List<String> args = new ArrayList<>();
+            Collections.addAll(args, "push", "--quiet", storePath);
+            for (String ref : refs) {
+                if (repo.exactRef(ref) != null) {
+                    args.add("+" + ref + ":" + ref);
+                }
+            }
+            if (args.size() == 3) {
+                return false;
+            }
+            File gitDir = repo.getDirectory();
+            return locked(new File(storePath), () -> {
+                GitProcess.Result push = GitProcess.run(gitExe, gitDir, environment, null, args.toArray(new String[args.size()]));
+                if (push.exitCode != 0) {
+                    throw new IOException("Failed to feed the shared object store: " + push.stderr);
+                }
+                return true;
+            });
+        }
+    }
+
+    /**
+     * Something done to a store while holding its lock.
+     */
+    private interface StoreAction<T> {
+        T run() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Runs the action holding the lock of the store, waiting for other builds on the agent to release it.
+     * Other processes on the agent are kept out by locking <code>&lt;store&gt;.lock</code>,
+     * the threads of the agent process by a lock per store.
+     */
+    private static <T> T locked(File store, StoreAction<T> action) throws IOException, InterruptedException {
+        File lockFile = new File(store.getAbsolutePath() + ".lock");
+        File parent = lockFile.getParentFile();
+        if (parent != null && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Could not create " + parent);
+        }
+        ReentrantLock lock = LOCKS.computeIfAbsent(lockFile.getAbsolutePath(), path -> new ReentrantLock());
+        lock.lockInterruptibly();
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock fileLock = channel.lock()) {
+            return action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean create(String gitExe, Map<String, String> environment, File store) throws IOException, InterruptedException {
+        if (new File(store, "objects").isDirectory()) {
+            return false;
+        }
+        if (!store.mkdirs() && !store.isDirectory()) {
+            throw new IOException("Could not create " + store);
+        }
+        run(gitExe, environment, store, "init", "--bare", "--quiet");
+        // Workspaces borrow objects the refs of the store may no longer point to
+        run(gitExe, environment, store, "config", "gc.pruneExpire", "never");
+        return true;
+    }
+
+    private static void run(String gitExe, Map<String, String> environment, File directory, String... args) throws IOException, InterruptedException {
+        GitProcess.Result result = GitProcess.run(gitExe, directory, environment, null, args);
+        if (result.exitCode != 0) {
+            throw new IOException("git " + args[0] + " failed in " + directory + ": " + result.stderr);
+        }
+    }
+}
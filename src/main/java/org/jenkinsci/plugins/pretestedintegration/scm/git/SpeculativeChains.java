@@ -0,0 +1,389 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of the builds speculatively integrating into the same integration branch at the same time.
+ * Each build is integrated on top of the speculative result of the build before it in the chain, and is pushed
+ * only after that build was pushed. When a build fails, the builds integrated on top of it are invalidated.
+ * The chains live in the memory of the controller and are lost on restart.
+ * <p>
+ * The waits are bounded, so a build that hangs cannot hold up the builds behind it for ever. When a build waits
+ * too long for the build before it, that build is failed, which invalidates the builds integrated on top of it.
+ * The limits are set with the system properties
+ * <code>org.jenkinsci.plugins.pretestedintegration.scm.git.SpeculativeChains.awaitBaseMinutes</code> (30) and
+ * <code>.awaitPromotionMinutes</code> (360).
+ */
+public final class SpeculativeChains {
+
+    private static final Logger LOGGER = Logger.getLogger(SpeculativeChains.class.getName());
+
+    private static final long AWAIT_BASE_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong(SpeculativeChains.class.getName() + ".awaitBaseMinutes", 30));
+    private static final long AWAIT_PROMOTION_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong(SpeculativeChains.class.getName() + ".awaitPromotionMinutes", 360));
+
+    /**
+     * The state of a build in a chain.
+     */
+    public enum State {
+        /** Waiting for its base, or integrating. No speculative commit yet. */
+        INTEGRATING,
+        /** Integrated, the speculative commit is being tested. */
+        SPECULATING,
+        /** Pushed to the integration branch. */
+        PROMOTED,
+        /** The build or its push failed. */
+        FAILED,
+        /** A build it was integrated on top of failed, so what it tested will never be pushed. */
+        INVALIDATED;
+
+        boolean isLive() {
+            return this == INTEGRATING || this == SPECULATING;
+        }
+    }
+
+    /**
+     * A build in a chain.
+     */
+    public static final class Entry {
+        private final String chainKey;
+        private final String runId;
+        private final String triggerBranch;
+        private State state = State.INTEGRATING;
+        private Entry base;
+        private String ref;
+        private String commit;
+
+        Entry(String chainKey, String runId, String triggerBranch) {
+            this.chainKey = chainKey;
+            this.runId = runId;
+            this.triggerBranch = triggerBranch;
+        }
+
+        public String getChainKey() {
+            return chainKey;
+        }
+
+        public String getRunId() {
+            return runId;
+        }
+
+        public String getTriggerBranch() {
+            return triggerBranch;
+        }
+
+        /**
+         * @return the entry this one was integrated on top of, or null if it was integrated on the integration branch
+         */
+        public Entry getBase() {
+            return base;
+        }
+
+        /**
+         * @return the remote ref holding the speculative commit, or null until integrated
+         */
+        public String getRef() {
+            return ref;
+        }
+
+        /**
+         * @return the speculative commit, or null until integrated
+         */
+        public String getCommit() {
+            return commit;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        boolean dependsOn(Entry other) {
+            for (Entry e = base; e != null; e = e.base) {
+                if (e == other) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final SpeculativeChains INSTANCE = new SpeculativeChains();
+
+    private final Map<String, List<Entry>> chains = new HashMap<>();
+
+    /**
+     * @return the chains of this controller
+     */
+    public static SpeculativeChains get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param job The full name of the job
+     * @param integrationBranch The expanded integration branch
+     * @return the key of the chain of builds of the job integrating into the branch
+     */
+    public static String chainKey(String job, String integrationBranch) {
+        return job + "#" + integrationBranch;
+    }
+
+    /**
+     * Adds a build to the end of its chain.
+     *
+     * @param chainKey The chain, see {@link #chainKey}
+     * @param runId The id of the build, see {@link hudson.model.Run#getExternalizableId()}
+     * @param triggerBranch The branch the build integrates
+     * @return the entry of the build
+     */
+    public synchronized Entry join(String chainKey, String runId, String triggerBranch) {
+        List<Entry> chain = chains.get(chainKey);
+        if (chain == null) {
+            chain = new ArrayList<>();
+            chains.put(chainKey, chain);
+        }
+        Entry entry = new Entry(chainKey, runId, triggerBranch);
+        chain.add(entry);
+        return entry;
+    }
+
+    /**
+     * Waits until the closest live build before the given one in its chain has a speculative commit,
+     * for at most the time set by the awaitBaseMinutes system property.
+     *
+     * @param entry The entry of the build about to integrate
+     * @return the entry to integrate on top of, or null to integrate on the integration branch
+     * @throws InterruptedException When interrupted while waiting
+     */
+    public Entry awaitBase(Entry entry) throws InterruptedException {
+        return awaitBase(entry, AWAIT_BASE_MILLIS);
+    }
+
+    /**
+     * Waits until the closest live build before the given one in its chain has a speculative commit.
+     * A build that does not get that far in time is failed, and the wait goes on with the build before it.
+     * The wait ends early when the given build is failed or invalidated meanwhile, it is not pushed then.
+     *
+     * @param entry The entry of the build about to integrate
+     * @param timeoutMillis How long to wait for each build before the given one
+     * @return the entry to integrate on top of, or null to integrate on the integration branch
+     * @throws InterruptedException When interrupted while waiting
+     */
+    public synchronized Entry awaitBase(Entry entry, long timeoutMillis) throws InterruptedException {
+        Entry waitingFor = null;
+        long deadline = 0;
+        while (true) {
+            if (entry.state != State.INTEGRATING) {
+                // Failed by the timeout of a build after it, and maybe pruned from its chain
+                entry.base = null;
+                return null;
+            }
+            Entry base = closestLiveBefore(entry);
+            if (base == null || base.state == State.SPECULATING) {
+                entry.base = base;
+                return base;
+            }
+            if (base != waitingFor) {
+                waitingFor = base;
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                LOGGER.log(Level.WARNING, GitMessages.LOG_PREFIX + "{0} did not integrate within {1} ms, failing it so {2} does not wait for it",
+                        new Object[]{base.runId, timeoutMillis, entry.runId});
+                fail(base);
+                continue;
+            }
+            wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+        }
+    }
+
+    /**
+     * Records the speculative commit of a build, so the builds after it can integrate on top of it.
+     *
+     * @param entry The entry of the build
+     * @param ref The remote ref holding the commit
+     * @param commit The speculative commit
+     */
+    public synchronized void speculate(Entry entry, String ref, String commit) {
+        if (entry.state == State.INTEGRATING) {
+            entry.ref = ref;
+            entry.commit = commit;
+            entry.state = State.SPECULATING;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Waits until the build the given one was integrated on top of is pushed, or fails,
+     * for at most the time set by the awaitPromotionMinutes system property.
+     *
+     * @param entry The entry of a successful build
+     * @return true if the build may push, false if it was invalidated
+     * @throws InterruptedException When interrupted while waiting
+     */
+    public boolean awaitPromotion(Entry entry) throws InterruptedException {
+        return awaitPromotion(entry, AWAIT_PROMOTION_MILLIS);
+    }
+
+    /**
+     * Waits until the build the given one was integrated on top of is pushed, or fails.
+     * If it is not pushed in time it is failed, which invalidates the given build and the others on top of it.
+     *
+     * @param entry The entry of a successful build
+     * @param timeoutMillis How long to wait
+     * @return true if the build may push, false if it was invalidated
+     * @throws InterruptedException When interrupted while waiting
+     */
+    public synchronized boolean awaitPromotion(Entry entry, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            if (entry.state == State.INVALIDATED || entry.state == State.FAILED) {
+                return false;
+            }
+            if (entry.base == null || entry.base.state == State.PROMOTED) {
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                LOGGER.log(Level.WARNING, GitMessages.LOG_PREFIX + "{0} was not pushed within {1} ms, failing it and the builds integrated on top of it",
+                        new Object[]{entry.base.runId, timeoutMillis});
+                fail(entry.base);
+                if (entry.state.isLive()) {
+                    entry.state = State.INVALIDATED;
+                    prune(entry.chainKey);
+                }
+                return false;
+            }
+            wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+        }
+    }
+
+    /**
+     * Marks a build as pushed.
+     *
+     * @param entry The entry of the build
+     */
+    public synchronized void promote(Entry entry) {
+        entry.state = State.PROMOTED;
+        prune(entry.chainKey);
+        notifyAll();
+    }
+
+    /**
+     * Marks a build as failed, and invalidates the builds integrated on top of it. Does nothing if the build was
+     * already pushed, failed or invalidated.
+     *
+     * @param entry The entry of the build
+     * @return the entries invalidated because of it
+     */
+    public synchronized List<Entry> fail(Entry entry) {
+        List<Entry> invalidated = new ArrayList<>();
+        if (entry.state.isLive()) {
+            entry.state = State.FAILED;
+            List<Entry> chain = chains.get(entry.chainKey);
+            if (chain != null) {
+                for (Entry other : chain) {
+                    if (other.state.isLive() && other.dependsOn(entry)) {
+                        other.state = State.INVALIDATED;
+                        invalidated.add(other);
+                    }
+                }
+            }
+            prune(entry.chainKey);
+        }
+        notifyAll();
+        return invalidated;
+    }
+
+    /**
+     * Fails the entries of a build that ended without pushing or failing on its own, like an aborted build,
+     * so the builds waiting for it do not wait forever.
+     *
+     * @param runId The id of the build
+     * @return the entries invalidated because of it
+     */
+    public synchronized List<Entry> abandon(String runId) {
+        List<Entry> invalidated = new ArrayList<>();
+        for (List<Entry> chain : new ArrayList<>(chains.values())) {
+            for (Entry entry : new ArrayList<>(chain)) {
+                if (entry.runId.equals(runId)) {
+                    invalidated.addAll(fail(entry));
+                }
+            }
+        }
+        return invalidated;
+    }
+
+    /**
+     * @param chainKey The chain, see {@link #chainKey}
+     * @param runId The id of the build
+     * @return the entry of the build, or null if it is not in the chain
+     */
+    public synchronized Entry find(String chainKey, String runId) {
+        List<Entry> chain = chains.get(chainKey);
+        if (chain != null) {
+            for (Entry entry : chain) {
+                if (entry.runId.equals(runId)) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param chainKey The chain, see {@link #chainKey}
+     * @return the entries of the chain, oldest first
+     */
+    public synchronized List<Entry> entries(String chainKey) {
+        List<Entry> chain = chains.get(chainKey);
+        return chain == null ? new ArrayList<Entry>() : new ArrayList<>(chain);
+    }
+
+    /**
+     * @return the closest live build before the given one in its chain, or null if there is none
+     * or the given build is no longer in the chain
+     */
+    private Entry closestLiveBefore(Entry entry) {
+        List<Entry> chain = chains.get(entry.chainKey);
+        if (chain == null) {
+            return null;
+        }
+        Entry closest = null;
+        for (Entry other : chain) {
+            if (other == entry) {
+                return closest;
+            }
+            if (other.state.isLive()) {
+                closest = other;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops the builds at the front of the chain that are done, and the chain once it is empty.
+     * Entries still referenced as base of a live build stay reachable through it.
+     */
+    private void prune(String chainKey) {
+        List<Entry> chain = chains.get(chainKey);
+        if (chain == null) {
+            return;
+        }
+        for (Iterator<Entry> it = chain.iterator(); it.hasNext(); ) {
+            if (it.next().state.isLive()) {
+                break;
+            }
+            it.remove();
+        }
+        if (chain.isEmpty()) {
+            chains.remove(chainKey);
+        }
+    }
+}
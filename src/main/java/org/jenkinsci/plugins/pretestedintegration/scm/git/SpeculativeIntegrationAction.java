@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.model.InvisibleAction;
+
+/**
+ * Records that a build integrated speculatively, on top of the untested result of an earlier build.
+ * The publisher uses it to push the builds of a chain in order, see {@link SpeculativeChains}.
+ */
+public class SpeculativeIntegrationAction extends InvisibleAction {
+
+    /**
+     * The remote ref holding the speculative commit, like refs/pretested/master/job/12.
+     */
+    public final String ref;
+
+    /**
+     * The speculative commit.
+     */
+    public final String commit;
+
+    /**
+     * The build integrated on top of, or null if integrated on the integration branch.
+     */
+    public final String baseRunId;
+
+    /**
+     * The entry in the chain. Only known while the controller runs.
+     */
+    private final transient SpeculativeChains.Entry entry;
+
+    /**
+     * Constructor for SpeculativeIntegrationAction
+     * @param entry The entry of the build in its chain
+     */
+    public SpeculativeIntegrationAction(SpeculativeChains.Entry entry) {
+        this.entry = entry;
+        this.ref = entry.getRef();
+        this.commit = entry.getCommit();
+        this.baseRunId = entry.getBase() == null ? null : entry.getBase().getRunId();
+    }
+
+    /**
+     * @return the entry of the build in its chain, or null after a restart. A build integrated on top of another
+     * one must not push without it, since it is no longer known whether the other one was pushed.
+     */
+    public SpeculativeChains.Entry getEntry() {
+        return entry;
+    }
+
+    /**
+     * @param job The full name of the job
+     * @param integrationBranch The expanded integration branch
+     * @param number The build number
+     * @return the remote ref to push the speculative commit of the build to
+     */
+    public static String refFor(String job, String integrationBranch, int number) {
+        return "refs/pretested/" + integrationBranch + "/" + job.replaceAll("[^A-Za-z0-9._/-]", "_") + "/" + number;
+    }
+}
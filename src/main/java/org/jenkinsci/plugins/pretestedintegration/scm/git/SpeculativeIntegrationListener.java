@@ -0,0 +1,30 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Takes builds out of their speculative chain when they end without the publisher pushing or failing them,
+ * like aborted builds or builds without the publisher. The builds integrated on top of them are invalidated.
+ */
+@Extension
+public class SpeculativeIntegrationListener extends RunListener<Run<?, ?>> {
+
+    private static final Logger LOGGER = Logger.getLogger(SpeculativeIntegrationListener.class.getName());
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCompleted(Run<?, ?> run, TaskListener listener) {
+        List<SpeculativeChains.Entry> invalidated = SpeculativeChains.get().abandon(run.getExternalizableId());
+        for (SpeculativeChains.Entry entry : invalidated) {
+            LOGGER.log(Level.INFO, GitMessages.LOG_PREFIX + run.getFullDisplayName() + " ended without pushing, invalidated " + entry.getRunId());
+        }
+    }
+}
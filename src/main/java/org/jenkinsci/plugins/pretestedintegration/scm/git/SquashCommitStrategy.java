@@ -45,22 +45,39 @@ public class SquashCommitStrategy extends GitIntegrationStrategy {
     public SquashCommitStrategy() {
     }
 
-    private void doTheIntegration(Run<?, ?> build, TaskListener listener, GitBridge gitbridge, ObjectId commitId, GitClient client, String expandedIntegrationBranch, Branch triggerBranch) throws InterruptedException,IOException,IntegrationFailedException, NothingToDoException, UnsupportedConfigurationException, IntegrationUnknownFailureException {
+    private void doTheIntegration(GitSCM scm, Run<?, ?> build, TaskListener listener, GitBridge gitbridge, ObjectId commitId, GitClient client, String expandedIntegrationBranch, Branch triggerBranch) throws InterruptedException,IOException,IntegrationFailedException, NothingToDoException, UnsupportedConfigurationException, IntegrationUnknownFailureException {
         {
-            int commitCount;
+            BranchAnalysis analysis;
+            long start = System.nanoTime();
             try {
-                commitCount = PretestedIntegrationGitUtils.countCommits(commitId, client, expandedIntegrationBranch);
-                String text = "Branch commit count: " + commitCount;
+                // Merging in memory builds the squash message itself, so it needs the commits
+                analysis = PretestedIntegrationGitUtils.analyzeBranch(commitId, client, expandedIntegrationBranch, !requiresIntegrationBranchCheckout());
+                IntegrationOutcomeAction.commits(build, analysis);
+                String text = String.format("Branch commit count: %s (counted using %s)", analysis.getCommitCountDescription(), analysis.getCountMethod().getDescription());
                 LOGGER.log(Level.INFO, GitMessages.LOG_PREFIX + text);
                 listener.getLogger().println(GitMessages.LOG_PREFIX + text);
             } catch (IOException | InterruptedException ex) {
                 throw new IntegrationFailedException("Failed to count commits.", ex);
+            } finally {
+                IntegrationTimingAction.record(build, IntegrationTimingAction.COUNT_COMMITS, start);
             }
-            if ( commitCount == 0 ){
+            BoundedCommitCount commitCount = analysis.getBoundedCommitCount();
+            if ( commitCount == BoundedCommitCount.ZERO ){
                 throw new NothingToDoException("Commit count is 0. Already integrated/part of integration branch: " + expandedIntegrationBranch);
-            } else if( commitCount == 1 ) {
-                if (tryFastForward(commitId, listener.getLogger(), client)) return;
-                if (tryRebase(commitId, client, listener.getLogger(), expandedIntegrationBranch)) return;
+            } else if( commitCount == BoundedCommitCount.ONE ) {
+                start = System.nanoTime();
+                try {
+                    if (requiresIntegrationBranchCheckout()) {
+                        if (tryFastForward(commitId, listener.getLogger(), client)) return;
+                        if (tryRebase(commitId, client, listener.getLogger(), expandedIntegrationBranch)) return;
+                    } else {
+                        if (tryFastForwardInCore(commitId, listener.getLogger(), client, expandedIntegrationBranch)) return;
+                        integrateWithoutCheckout(scm, build, listener, client, commitId, expandedIntegrationBranch, InCoreMergeCallback.Mode.CHERRY_PICK, null, null);
+                        return;
+                    }
+                } finally {
+                    IntegrationTimingAction.record(build, IntegrationTimingAction.MERGE, start);
+                }
             }
                 
             String expandedBranchName;
@@ -83,17 +100,34 @@ public class SquashCommitStrategy extends GitIntegrationStrategy {
                 throw new NothingToDoException(logMessage);
             }
 
-            String commitAuthor = null; //leaving un-assigned, want to fail later if not assigned;
-            try {
-                // Collect author
-                logMessage = GitMessages.LOG_PREFIX + "Collecting author of last commit on development branch";
-                LOGGER.log(Level.INFO, logMessage);
-                listener.getLogger().println(logMessage);
-                commitAuthor = client.withRepository(new FindCommitAuthorCallback(triggerBranch.getSHA1()));
-                logMessage = String.format(GitMessages.LOG_PREFIX + "Done collecting last commit author: %s", commitAuthor);
+            // Author of the last commit was collected by the branch analysis
+            String commitAuthor = analysis.getHeadAuthor();
+            logMessage = String.format(GitMessages.LOG_PREFIX + "Done collecting last commit author: %s", commitAuthor);
+            LOGGER.log(Level.INFO, logMessage);
+            listener.getLogger().println(logMessage);
+
+            if (!requiresIntegrationBranchCheckout()) {
+                // Same message as the one built from git's SQUASH_MSG below
+                StringBuilder message = new StringBuilder(analysis.estimateFormattedLength() + 128);
+                message.append(String.format("Squashed commit of branch '%s'%n%n", triggerBranch.getName()));
+                int commitsStart = message.length();
+                message.append(String.format("Squashed commit of the following:%n%n"));
+                analysis.appendSquashedCommits(message);
+                CommitMessageFormatter.replaceDoubleQuotes(message, commitsStart);
+                start = System.nanoTime();
+                try {
+                    integrateWithoutCheckout(scm, build, listener, client, commitId, expandedIntegrationBranch, InCoreMergeCallback.Mode.SQUASH, message.toString(), commitAuthor);
+                } finally {
+                    IntegrationTimingAction.record(build, IntegrationTimingAction.MERGE, start);
+                }
+                logMessage = GitMessages.LOG_PREFIX + "Commit was successful";
                 LOGGER.log(Level.INFO, logMessage);
                 listener.getLogger().println(logMessage);
+                return;
+            }
 
+            start = System.nanoTime();
+            try {
                 logMessage = GitMessages.LOG_PREFIX + "Starting squash merge - without commit:";
                 LOGGER.info(logMessage);
                 listener.getLogger().println(logMessage);
@@ -102,17 +136,20 @@ public class SquashCommitStrategy extends GitIntegrationStrategy {
                 logMessage = GitMessages.LOG_PREFIX + "Squash merge done";
                 LOGGER.info(logMessage);
                 listener.getLogger().println(logMessage);
-            } catch (IOException | InterruptedException | GitException ex) {
+            } catch (InterruptedException | GitException ex) {
                 logMessage = String.format(GitMessages.LOG_PREFIX + "Exception while merging. Logging exception msg: %s", ex.getMessage());
                 LOGGER.log(Level.SEVERE, logMessage, ex);
                 listener.getLogger().println(logMessage);
                 throw new IntegrationFailedException(ex);
+            } finally {
+                IntegrationTimingAction.record(build, IntegrationTimingAction.MERGE, start);
             }
 
             logMessage = GitMessages.LOG_PREFIX + "Merge was successful";
             LOGGER.log(Level.INFO, logMessage);
             listener.getLogger().println(logMessage);
 
+            start = System.nanoTime();
             try {
                 logMessage = GitMessages.LOG_PREFIX + "Starting to commit squash merge changes:";
                 LOGGER.info(logMessage);
@@ -139,6 +176,8 @@ public class SquashCommitStrategy extends GitIntegrationStrategy {
                 LOGGER.log(Level.SEVERE, logMessage, ex);
                 listener.getLogger().println(logMessage);
                 throw new IntegrationUnknownFailureException(ex);
+            } finally {
+                IntegrationTimingAction.record(build, IntegrationTimingAction.COMMIT, start);
             }
             logMessage = GitMessages.LOG_PREFIX + "Commit was successful";
             LOGGER.log(Level.INFO, logMessage);
@@ -172,7 +211,7 @@ public class SquashCommitStrategy extends GitIntegrationStrategy {
         // multiple revisons, when two branches point to the same commit?
         // (JENKINS-24909). Check integrationBranch spec before doing anything
         // It could be the last rather than the first that is the wanted
-        doTheIntegration((Run) build, listener, gitbridge, triggeredBranch.getSHA1(), client, expandedIntegrationBranch, triggeredBranch);
+        doTheIntegration(scm, (Run) build, listener, gitbridge, triggeredBranch.getSHA1(), client, expandedIntegrationBranch, triggeredBranch);
     }
 
     /**
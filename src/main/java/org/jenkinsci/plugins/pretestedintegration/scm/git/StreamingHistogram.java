@@ -0,0 +1,94 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+/**
+ * A histogram of durations that keeps counts per bucket instead of the recorded values, so its size does not grow
+ * with the number of values. Bucket bounds grow by 10% from 1 ms, so percentiles are accurate to within 10%.
+ * Values above the last bucket, about a year, go into the last bucket.
+ */
+public final class StreamingHistogram {
+
+    /**
+     * How much larger each bucket is than the one before it.
+     */
+    private static final double GROWTH = 1.1;
+
+    private static final int BUCKETS = 256;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * @param millis The value, negative values count as 0
+     */
+    public synchronized void record(long millis) {
+        long value = Math.max(0, millis);
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @return how many values were recorded
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean of the values, 0 if there are none
+     */
+    public synchronized long getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @return the smallest value, 0 if there are none
+     */
+    public synchronized long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * @return the largest value, 0 if there are none
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * @param quantile The quantile, like 0.99 for the 99th percentile
+     * @return the upper bound of the bucket holding the quantile, at most the largest value, 0 if there are none
+     */
+    public synchronized long getQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // The last bucket has no upper bound
+                return i == BUCKETS - 1 ? max : Math.max(min, Math.min(max, upperBoundOf(i)));
+            }
+        }
+        return max;
+    }
+
+    static int bucketOf(long value) {
+        if (value <= 1) {
+            return 0;
+        }
+        int bucket = (int) Math.ceil(Math.log(value) / Math.log(GROWTH));
+        return Math.min(BUCKETS - 1, bucket);
+    }
+
+    static long upperBoundOf(int bucket) {
+        return (long) Math.floor(Math.pow(GROWTH, bucket));
+    }
+}
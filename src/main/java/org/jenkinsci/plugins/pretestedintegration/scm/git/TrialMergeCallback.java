@@ -0,0 +1,63 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ResolveMerger;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Callback that merges a commit with a branch in memory, only to find out whether the merge conflicts.
+ * Neither the index, the worktree nor any ref is touched.
+ */
+public class TrialMergeCallback extends RepositoryListenerAwareCallback<List<String>> {
+
+    /**
+     * The commit to merge.
+     */
+    public final ObjectId commitId;
+
+    /**
+     * The revision to merge into, like origin/master.
+     */
+    public final String target;
+
+    /**
+     * Constructor for TrialMergeCallback
+     * @param commitId The commit to merge
+     * @param target The revision to merge into
+     */
+    public TrialMergeCallback(final ObjectId commitId, final String target) {
+        this.commitId = commitId;
+        this.target = target;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return the conflicting paths, empty if the merge is clean
+     */
+    @Override
+    public List<String> invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+        RevWalk walk = new RevWalk(repo);
+        try {
+            RevCommit targetCommit = walk.parseCommit(repo.resolve(target));
+            RevCommit commit = walk.parseCommit(commitId);
+            if (walk.isMergedInto(targetCommit, commit)) {
+                // Fast-forward, nothing can conflict
+                return new ArrayList<>();
+            }
+            ResolveMerger merger = (ResolveMerger) MergeStrategy.RECURSIVE.newMerger(repo, true);
+            if (merger.merge(targetCommit, commit)) {
+                return new ArrayList<>();
+            }
+            return InCoreMergeCallback.conflictingPaths(merger);
+        } finally {
+            walk.dispose();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.jenkinsci.plugins.pretestedintegration.scm.git;
+
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Callback that compacts the refs of a workspace repository into packed-refs, at most once per interval.
+ * When it ran, the caller also prunes the remote-tracking refs of branches deleted on the remote.
+ * The time of the last run is kept as the modification time of a marker file in the .git directory,
+ * so every workspace is maintained on its own schedule.
+ */
+public class WorkspaceMaintenanceCallback extends RepositoryListenerAwareCallback<Boolean> {
+
+    /**
+     * The marker file in the .git directory.
+     */
+    static final String MARKER = "pretested-maintenance";
+
+    /**
+     * The git executable on the agent.
+     */
+    public final String gitExe;
+
+    /**
+     * The environment of the node, so git gets its PATH and configuration.
+     */
+    public final Map<String, String> environment;
+
+    /**
+     * The time between two runs.
+     */
+    public final long intervalMillis;
+
+    /**
+     * Constructor for WorkspaceMaintenanceCallback
+     * @param gitExe The git executable on the agent
+     * @param intervalMillis The time between two runs
+     */
+    public WorkspaceMaintenanceCallback(final String gitExe, final long intervalMillis) {
+        this(gitExe, Collections.<String, String>emptyMap(), intervalMillis);
+    }
+
+    /**
+     * Constructor for WorkspaceMaintenanceCallback
+     * @param gitExe The git executable on the agent
+     * @param environment The environment of the node
+     * @param intervalMillis The time between two runs
+     */
+    public WorkspaceMaintenanceCallback(final String gitExe, final Map<String, String> environment, final long intervalMillis) {
+        this.gitExe = gitExe;
+        this.environment = new HashMap<>(environment);
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return true if maintenance was due and ran, false if it ran less than the interval ago
+     */
+    @Override
+    public Boolean invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+        File marker = new File(repo.getDirectory(), MARKER);
+        long now = System.currentTimeMillis();
+        if (marker.exists() && now - marker.lastModified() < intervalMillis) {
+            return false;
+        }
+        GitProcess.Result packRefs = GitProcess.run(gitExe, repo.getDirectory(), environment, null, "pack-refs", "--all", "--prune");
+        if (packRefs.exitCode != 0) {
+            throw new IOException("git pack-refs failed: " + packRefs.stderr);
+        }
+        if (!marker.exists() && !marker.createNewFile() || !marker.setLastModified(now)) {
+            throw new IOException("Could not update " + marker);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,57 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.AncestryCheckCallback;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.AncestryCheckCallback.Ancestry;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class AncestryCheckCallbackIT {
+
+    private static final String FOLDER_PREFIX = "AncestryCheck_";
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            TestUtilsFactory.destroyDirectory(dir);
+        } catch (Exception e) {
+            System.out.format("WARNING: Could not delete the dir: " + dir.getAbsolutePath());
+        }
+    }
+
+    @Test
+    public void detects_integrated_fast_forwardable_and_diverged() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "ancestry");
+        Git git = Git.init().setDirectory(dir).call();
+        File testFile = new File(dir + "/file");
+
+        // First commit to master
+        FileUtils.writeStringToFile(testFile, "master commit 1");
+        git.add().addFilepattern("file").call();
+        ObjectId masterCommit = git.commit().setMessage("master commit 1").call();
+
+        // Create a branch with one commit
+        git.checkout().setCreateBranch(true).setName("branch").call();
+        FileUtils.writeStringToFile(testFile, "branch commit 1", true);
+        git.add().addFilepattern("file").call();
+        ObjectId branchCommit = git.commit().setMessage("branch commit 1").call();
+
+        assertEquals(Ancestry.ALREADY_INTEGRATED, new AncestryCheckCallback(masterCommit, "master").invoke(git.getRepository(), null));
+        assertEquals(Ancestry.FAST_FORWARDABLE, new AncestryCheckCallback(branchCommit, "master").invoke(git.getRepository(), null));
+
+        // Second commit to master
+        git.checkout().setName("master").call();
+        FileUtils.writeStringToFile(testFile, "master commit 2");
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("master commit 2").call();
+
+        assertEquals(Ancestry.DIVERGED, new AncestryCheckCallback(branchCommit, "master").invoke(git.getRepository(), null));
+    }
+}
@@ -0,0 +1,133 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.PushFailedException;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.AtomicPushCallback;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.GitBridge;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class AtomicPushCallbackIT {
+
+    private static final String FOLDER_PREFIX = "AtomicPush_";
+    private File bareDir;
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        for (File toDelete : new File[]{dir, bareDir}) {
+            try {
+                TestUtilsFactory.destroyDirectory(toDelete);
+            } catch (Exception e) {
+                System.out.format("WARNING: Could not delete the dir: " + toDelete.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Creates a bare remote with master and ready/feature, and a clone with a new commit on master.
+     */
+    private Git createClone(String name) throws Exception {
+        bareDir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name + ".git");
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name);
+        Git.init().setBare(true).setDirectory(bareDir).call().close();
+        Git git = Git.cloneRepository().setURI(bareDir.toURI().toString()).setDirectory(dir).call();
+
+        FileUtils.writeStringToFile(new File(dir, "file"), "master commit 1");
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("master commit 1").call();
+        git.push().add("master").call();
+
+        git.checkout().setCreateBranch(true).setName("ready/feature").call();
+        FileUtils.writeStringToFile(new File(dir, "feature"), "feature commit");
+        git.add().addFilepattern("feature").call();
+        git.commit().setMessage("feature commit").call();
+        git.push().add("ready/feature").call();
+
+        git.checkout().setName("master").call();
+        git.merge().include(git.getRepository().resolve("ready/feature")).call();
+        return git;
+    }
+
+    /**
+     * Deletes ready/feature with the commit the clone knows as the lease.
+     */
+    private static AtomicPushCallback callback(Git git) throws Exception {
+        String feature = git.getRepository().resolve("refs/remotes/origin/ready/feature").getName();
+        return new AtomicPushCallback("git", Collections.<String, String>emptyMap(), null, "origin", "master", Collections.singletonMap("ready/feature", feature));
+    }
+
+    @Test
+    public void pushes_and_deletes_in_one_push() throws Exception {
+        Git git = createClone("push");
+        ObjectId head = git.getRepository().resolve("HEAD");
+
+        Boolean pushed = callback(git).invoke(git.getRepository(), null);
+
+        assertTrue("Expected the atomic push to be supported.", pushed);
+        Repository remote = Git.open(bareDir).getRepository();
+        assertEquals("Integration branch should be pushed.", head, remote.resolve("refs/heads/master"));
+        assertNull("Development branch should be deleted.", remote.exactRef("refs/heads/ready/feature"));
+    }
+
+    @Test
+    public void keeps_the_development_branch_when_the_push_is_rejected() throws Exception {
+        Git git = createClone("rejected");
+        Repository remote = Git.open(bareDir).getRepository();
+
+        // Someone else moved the integration branch, so pushing HEAD is not a fast-forward
+        git.checkout().setCreateBranch(true).setName("other").setStartPoint("origin/master").call();
+        FileUtils.writeStringToFile(new File(dir, "other"), "other commit");
+        git.add().addFilepattern("other").call();
+        ObjectId otherCommit = git.commit().setMessage("other commit").call();
+        git.push().add("other:master").call();
+        git.checkout().setName("master").call();
+
+        try {
+            callback(git).invoke(git.getRepository(), null);
+            fail("Expected the push to be rejected.");
+        } catch (PushFailedException ex) {
+            assertTrue("Message should mention the rejection.", ex.getMessage().contains("rejected"));
+        }
+        assertEquals("Integration branch should not change.", otherCommit, remote.resolve("refs/heads/master"));
+        assertNotNull("Development branch should still exist.", remote.exactRef("refs/heads/ready/feature"));
+    }
+
+    @Test
+    public void keeps_everything_when_the_development_branch_got_new_commits() throws Exception {
+        Git git = createClone("lease");
+        Repository remote = Git.open(bareDir).getRepository();
+        AtomicPushCallback callback = callback(git);
+
+        // The developer pushed again while the build ran
+        git.checkout().setName("ready/feature").call();
+        FileUtils.writeStringToFile(new File(dir, "feature"), "second feature commit");
+        git.add().addFilepattern("feature").call();
+        ObjectId secondCommit = git.commit().setMessage("second feature commit").call();
+        git.push().add("ready/feature").call();
+        git.checkout().setName("master").call();
+        ObjectId master = remote.resolve("refs/heads/master");
+
+        try {
+            callback.invoke(git.getRepository(), null);
+            fail("Expected the push to be rejected.");
+        } catch (PushFailedException ex) {
+            assertTrue("Message should mention the new commits.", ex.getMessage().contains("new commits"));
+            assertTrue("The publisher should fall back to separate pushes.", GitBridge.isStaleBranchRejection(ex.getMessage()));
+        }
+        assertEquals("Integration branch should not change.", master, remote.resolve("refs/heads/master"));
+        assertEquals("Development branch should keep its new commit.", secondCommit, remote.resolve("refs/heads/ready/feature"));
+    }
+}
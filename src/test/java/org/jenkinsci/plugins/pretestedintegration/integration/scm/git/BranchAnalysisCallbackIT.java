@@ -0,0 +1,132 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.BranchAnalysis;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.BranchAnalysisCallback;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.GetAllCommitsFromBranchCallback;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class BranchAnalysisCallbackIT {
+
+    private static final String FOLDER_PREFIX = "BranchAnalysis_";
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            TestUtilsFactory.destroyDirectory(dir);
+        } catch (Exception e) {
+            System.out.format("WARNING: Could not delete the dir: " + dir.getAbsolutePath());
+        }
+    }
+
+    @Test
+    public void analyzes_branch_in_one_walk() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "analyze");
+        Git git = Git.init().setDirectory(dir).call();
+        File testFile = new File(dir + "/file");
+
+        // First commit to master
+        FileUtils.writeStringToFile(testFile, "master commit 1");
+        git.add().addFilepattern("file").call();
+        RevCommit masterCommit = git.commit().setMessage("master commit 1").call();
+
+        // Create a branch with two commits
+        git.checkout().setCreateBranch(true).setName("branch").call();
+        FileUtils.writeStringToFile(testFile, "branch commit 1", true);
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("branch commit 1").setAuthor(new PersonIdent("First Author", "first@praqma.net")).call();
+        FileUtils.writeStringToFile(testFile, "branch commit 2", true);
+        git.add().addFilepattern("file").call();
+        ObjectId startCommit = git.commit().setMessage("branch commit 2").setAuthor(new PersonIdent("Last Author", "last@praqma.net")).call();
+
+        BranchAnalysis analysis = new BranchAnalysisCallback(startCommit, "master", true, 0, 0, 0, true).invoke(git.getRepository(), null);
+
+        assertEquals("Commit count did not match expectations.", 2, analysis.getCommitCount());
+        assertTrue("Head author did not match expectations.", analysis.getHeadAuthor().startsWith("Last Author <last@praqma.net>"));
+        assertEquals("Merge base did not match expectations.", masterCommit.getName(), analysis.getMergeBase());
+        assertEquals("Expected a summary per commit.", 2, analysis.getCommits().size());
+        assertEquals("Commits should be newest first.", startCommit.getName(), analysis.getCommits().get(0).getSha());
+
+        String expectedMessages = new GetAllCommitsFromBranchCallback(startCommit, "master").invoke(git.getRepository(), null);
+        assertEquals("Formatted commits differ from GetAllCommitsFromBranchCallback.", expectedMessages, analysis.formatCommits());
+
+        // Without collecting commits only the summaries are left out
+        analysis = new BranchAnalysisCallback(startCommit, "master", false).invoke(git.getRepository(), null);
+        assertEquals("Commit count did not match expectations.", 2, analysis.getCommitCount());
+        assertTrue("Expected no commit summaries.", analysis.getCommits().isEmpty());
+        assertNull("The merge base should only be found when asked for.", analysis.getMergeBase());
+    }
+
+    @Test
+    public void squashed_commits_show_the_author_date_in_the_author_time_zone() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "authorDate");
+        Git git = Git.init().setDirectory(dir).call();
+        File testFile = new File(dir + "/file");
+
+        FileUtils.writeStringToFile(testFile, "master commit 1");
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("master commit 1").call();
+
+        // Authored in UTC+5:30 a day before it was committed, like a rebased or cherry-picked commit
+        git.checkout().setCreateBranch(true).setName("branch").call();
+        FileUtils.writeStringToFile(testFile, "branch commit 1", true);
+        git.add().addFilepattern("file").call();
+        PersonIdent author = new PersonIdent("Author", "author@praqma.net", new Date(1442321765000L), TimeZone.getTimeZone("Asia/Kolkata"));
+        PersonIdent committer = new PersonIdent("Committer", "committer@praqma.net", new Date(1442408165000L), TimeZone.getTimeZone("UTC"));
+        ObjectId startCommit = git.commit().setMessage("branch commit 1").setAuthor(author).setCommitter(committer).call();
+
+        BranchAnalysis analysis = new BranchAnalysisCallback(startCommit, "master", true).invoke(git.getRepository(), null);
+        StringBuilder squashed = new StringBuilder();
+        analysis.appendSquashedCommits(squashed);
+
+        assertTrue("Expected the author date in the author time zone: " + squashed, squashed.toString().contains("Date:   Tue Sep 15 18:26:05 2015 +0530"));
+    }
+
+    @Test
+    public void caps_collected_commits_but_counts_all() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "capped");
+        Git git = Git.init().setDirectory(dir).call();
+        File testFile = new File(dir + "/file");
+
+        // First commit to master
+        FileUtils.writeStringToFile(testFile, "master commit 1");
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("master commit 1").call();
+
+        // Create a branch with five commits
+        git.checkout().setCreateBranch(true).setName("branch").call();
+        ObjectId startCommit = null;
+        for (int i = 1; i <= 5; i++) {
+            FileUtils.writeStringToFile(testFile, "branch commit " + i, true);
+            git.add().addFilepattern("file").call();
+            startCommit = git.commit().setMessage("branch commit " + i).call();
+        }
+
+        BranchAnalysis analysis = new BranchAnalysisCallback(startCommit, "master", true, 0, 2, 0).invoke(git.getRepository(), null);
+        assertEquals("Commit count did not match expectations.", 5, analysis.getCommitCount());
+        assertEquals("Expected the commit cap to apply.", 2, analysis.getCommits().size());
+        assertEquals("Expected the rest to be omitted.", 3, analysis.getOmittedCommitCount());
+        assertEquals("Commits should be newest first.", startCommit.getName(), analysis.getCommits().get(0).getSha());
+
+        // A single formatted commit is well over 100 bytes, only one fits in 250
+        analysis = new BranchAnalysisCallback(startCommit, "master", true, 0, 0, 250).invoke(git.getRepository(), null);
+        assertEquals("Commit count did not match expectations.", 5, analysis.getCommitCount());
+        assertEquals("Expected the byte cap to apply.", 1, analysis.getCommits().size());
+        assertEquals("Expected the rest to be omitted.", 4, analysis.getOmittedCommitCount());
+        assertTrue("Formatted commits should stay within the byte cap.", analysis.formatCommits().getBytes("UTF-8").length <= 250);
+    }
+}
@@ -0,0 +1,136 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.CommitCounter;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class CommitCounterIT {
+
+    private static final String FOLDER_PREFIX = "CommitCounter_";
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            TestUtilsFactory.destroyDirectory(dir);
+        } catch (Exception e) {
+            System.out.format("WARNING: Could not delete the dir: " + dir.getAbsolutePath());
+        }
+    }
+
+    @Test
+    public void counts_with_and_without_bitmaps() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "bitmaps");
+        Git git = Git.init().setDirectory(dir).call();
+        File testFile = new File(dir + "/file");
+
+        for (int i = 1; i <= 3; i++) {
+            FileUtils.writeStringToFile(testFile, "master commit " + i, true);
+            git.add().addFilepattern("file").call();
+            git.commit().setMessage("master commit " + i).call();
+        }
+        git.checkout().setCreateBranch(true).setName("branch").call();
+        ObjectId startCommit = null;
+        for (int i = 1; i <= 2; i++) {
+            FileUtils.writeStringToFile(testFile, "branch commit " + i, true);
+            git.add().addFilepattern("file").call();
+            startCommit = git.commit().setMessage("branch commit " + i).call();
+        }
+
+        // No packs yet, so no bitmaps
+        assertCount(git, startCommit, 2, CommitCounter.Method.WALK);
+
+        // Packing writes bitmaps for the branch heads
+        git.gc().call();
+        assertCount(git, startCommit, 2, CommitCounter.Method.BITMAP);
+
+        // A commit newer than the bitmaps
+        FileUtils.writeStringToFile(testFile, "branch commit 3", true);
+        git.add().addFilepattern("file").call();
+        startCommit = git.commit().setMessage("branch commit 3").call();
+        assertCount(git, startCommit, 3, CommitCounter.Method.BITMAP_ASSISTED_WALK);
+    }
+
+    @Test
+    public void bitmaps_count_only_the_commits_of_a_range_with_many_files() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "files");
+        Git git = Git.init().setDirectory(dir).call();
+        FileUtils.writeStringToFile(new File(dir, "file"), "master commit");
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("master commit").call();
+        git.checkout().setCreateBranch(true).setName("branch").call();
+        ObjectId startCommit = null;
+        for (int i = 1; i <= 5; i++) {
+            // Every commit adds trees and blobs the bitmaps of the range hold as well
+            for (int f = 0; f < 20; f++) {
+                FileUtils.writeStringToFile(new File(dir, "dir" + f + "/file" + i), "branch commit " + i);
+            }
+            git.add().addFilepattern(".").call();
+            startCommit = git.commit().setMessage("branch commit " + i).call();
+        }
+        git.gc().call();
+
+        assertCount(git, startCommit, 5, CommitCounter.Method.BITMAP);
+        assertCount(git, startCommit, 3, 3, CommitCounter.Method.BITMAP);
+    }
+
+    @Test
+    public void bitmaps_written_by_git_with_annotated_tags_count_every_commit() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "tags");
+        Git git = Git.init().setDirectory(dir).call();
+        File testFile = new File(dir, "file");
+        FileUtils.writeStringToFile(testFile, "master commit");
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("master commit").call();
+        git.checkout().setCreateBranch(true).setName("branch").call();
+        ObjectId startCommit = null;
+        for (int i = 1; i <= 5; i++) {
+            FileUtils.writeStringToFile(testFile, "branch commit " + i, true);
+            git.add().addFilepattern("file").call();
+            startCommit = git.commit().setMessage("branch commit " + i).call();
+            // git writes each annotated tag next to the commit it tags, among the commits of the pack
+            git.tag().setName("tag" + i).setMessage("tag " + i).setAnnotated(true).call();
+        }
+        cliGit(dir, "repack", "-a", "-d", "--write-bitmap-index");
+
+        assertCount(git, startCommit, 5, CommitCounter.Method.BITMAP);
+        assertCount(git, startCommit, 4, 4, CommitCounter.Method.BITMAP);
+    }
+
+    private static void cliGit(File dir, String... args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        Collections.addAll(command, args);
+        Process process = new ProcessBuilder(command).directory(dir).redirectErrorStream(true).start();
+        String output = IOUtils.toString(process.getInputStream(), StandardCharsets.UTF_8);
+        assertEquals("git " + args[0] + " failed: " + output, 0, process.waitFor());
+    }
+
+    private void assertCount(Git git, ObjectId startCommit, int expectedCount, CommitCounter.Method expectedMethod) throws Exception {
+        assertCount(git, startCommit, 0, expectedCount, expectedMethod);
+    }
+
+    private void assertCount(Git git, ObjectId startCommit, int limit, int expectedCount, CommitCounter.Method expectedMethod) throws Exception {
+        RevWalk walk = new RevWalk(git.getRepository());
+        try {
+            CommitCounter.Result result = CommitCounter.count(walk, walk.parseCommit(startCommit), walk.parseCommit(git.getRepository().resolve("master")), limit);
+            assertEquals("Count method did not match expectations.", expectedMethod, result.getMethod());
+            assertEquals("Commit count did not match expectations.", expectedCount, result.getCount());
+        } finally {
+            walk.dispose();
+        }
+    }
+}
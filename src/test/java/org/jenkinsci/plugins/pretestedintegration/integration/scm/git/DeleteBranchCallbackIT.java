@@ -0,0 +1,86 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.DeleteBranchCallback;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class DeleteBranchCallbackIT {
+
+    private static final String FOLDER_PREFIX = "DeleteBranch_";
+    private File bareDir;
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        for (File toDelete : new File[]{dir, bareDir}) {
+            try {
+                TestUtilsFactory.destroyDirectory(toDelete);
+            } catch (Exception e) {
+                System.out.format("WARNING: Could not delete the dir: " + toDelete.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Creates a bare remote with master and ready/feature, and a clone of it.
+     */
+    private Git createClone(String name) throws Exception {
+        bareDir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name + ".git");
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name);
+        Git.init().setBare(true).setDirectory(bareDir).call().close();
+        Git git = Git.cloneRepository().setURI(bareDir.toURI().toString()).setDirectory(dir).call();
+
+        FileUtils.writeStringToFile(new File(dir, "file"), "master commit 1");
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("master commit 1").call();
+        git.push().add("master").call();
+
+        git.checkout().setCreateBranch(true).setName("ready/feature").call();
+        FileUtils.writeStringToFile(new File(dir, "feature"), "feature commit");
+        git.add().addFilepattern("feature").call();
+        git.commit().setMessage("feature commit").call();
+        git.push().add("ready/feature").call();
+        return git;
+    }
+
+    @Test
+    public void deletes_the_branch_at_the_integrated_commit() throws Exception {
+        Git git = createClone("delete");
+        String feature = git.getRepository().resolve("refs/remotes/origin/ready/feature").getName();
+
+        Boolean deleted = new DeleteBranchCallback("git", Collections.<String, String>emptyMap(), null, "origin", "ready/feature", feature).invoke(git.getRepository(), null);
+
+        assertTrue("Expected the branch to be deleted.", deleted);
+        assertNull("Development branch should be deleted.", Git.open(bareDir).getRepository().exactRef("refs/heads/ready/feature"));
+    }
+
+    @Test
+    public void keeps_the_branch_when_it_got_new_commits() throws Exception {
+        Git git = createClone("keep");
+        String feature = git.getRepository().resolve("refs/remotes/origin/ready/feature").getName();
+
+        // The developer pushed again while the build ran
+        FileUtils.writeStringToFile(new File(dir, "feature"), "second feature commit");
+        git.add().addFilepattern("feature").call();
+        ObjectId secondCommit = git.commit().setMessage("second feature commit").call();
+        git.push().add("ready/feature").call();
+
+        Boolean deleted = new DeleteBranchCallback("git", Collections.<String, String>emptyMap(), null, "origin", "ready/feature", feature).invoke(git.getRepository(), null);
+
+        assertFalse("Expected the branch to be kept.", deleted);
+        Repository remote = Git.open(bareDir).getRepository();
+        assertEquals("Development branch should keep its new commit.", secondCommit, remote.resolve("refs/heads/ready/feature"));
+    }
+}
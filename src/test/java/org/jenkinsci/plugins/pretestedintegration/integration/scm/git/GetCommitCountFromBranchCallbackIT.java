@@ -5,6 +5,7 @@ import java.io.File;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.BoundedCommitCount;
 import org.jenkinsci.plugins.pretestedintegration.scm.git.GetCommitCountFromBranchCallback;
 import org.junit.After;
 import org.junit.Test;
@@ -60,4 +61,35 @@ public class GetCommitCountFromBranchCallbackIT {
         callback = new GetCommitCountFromBranchCallback(startCommit, "master");
         assertEquals("Commit count did not match expectations.", new Integer(2), callback.invoke(git.getRepository(), null));
     }
+
+    @Test
+    public void bounded_count_stops_at_limit() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR,FOLDER_PREFIX + "bounded");
+        Git git = Git.init().setDirectory(dir).call();
+        File testFile = new File(dir + "/file");
+
+        // First commit to master
+        FileUtils.writeStringToFile(testFile, "master commit 1");
+        git.add().addFilepattern("file").call();
+        ObjectId masterCommit = git.commit().setMessage("master commit 1").call();
+
+        // Create a branch with five commits
+        git.checkout().setCreateBranch(true).setName("branch").call();
+        ObjectId startCommit = null;
+        for (int i = 1; i <= 5; i++) {
+            FileUtils.writeStringToFile(testFile, "branch commit " + i, true);
+            git.add().addFilepattern("file").call();
+            startCommit = git.commit().setMessage("branch commit " + i).call();
+        }
+
+        GetCommitCountFromBranchCallback callback = new GetCommitCountFromBranchCallback(startCommit, "master", BoundedCommitCount.LIMIT);
+        assertEquals("Bounded count did not stop at the limit.", Integer.valueOf(2), callback.invoke(git.getRepository(), null));
+        assertEquals(BoundedCommitCount.MANY, BoundedCommitCount.of(callback.invoke(git.getRepository(), null)));
+
+        callback = new GetCommitCountFromBranchCallback(startCommit, "master");
+        assertEquals("Exact count did not match expectations.", Integer.valueOf(5), callback.invoke(git.getRepository(), null));
+
+        callback = new GetCommitCountFromBranchCallback(masterCommit, "master", BoundedCommitCount.LIMIT);
+        assertEquals(BoundedCommitCount.ZERO, BoundedCommitCount.of(callback.invoke(git.getRepository(), null)));
+    }
 }
@@ -0,0 +1,182 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.IntegrationFailedException;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.InCoreMergeCallback;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.InCoreMergeCallback.Mode;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.ResetBranchCallback;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class InCoreMergeCallbackIT {
+
+    private static final String FOLDER_PREFIX = "InCoreMerge_";
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            TestUtilsFactory.destroyDirectory(dir);
+        } catch (Exception e) {
+            System.out.format("WARNING: Could not delete the dir: " + dir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Creates master with a single file, and a branch with two commits to another file.
+     * Master gets a commit of its own afterwards, so the two have diverged.
+     */
+    private Git createDivergedRepository(String name) throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name);
+        Git git = Git.init().setDirectory(dir).call();
+
+        FileUtils.writeStringToFile(new File(dir, "master.txt"), "master commit 1");
+        git.add().addFilepattern("master.txt").call();
+        git.commit().setMessage("master commit 1").call();
+
+        git.checkout().setCreateBranch(true).setName("branch").call();
+        FileUtils.writeStringToFile(new File(dir, "branch.txt"), "branch commit 1");
+        git.add().addFilepattern("branch.txt").call();
+        git.commit().setMessage("branch commit 1").call();
+        FileUtils.writeStringToFile(new File(dir, "branch.txt"), "branch commit 2");
+        git.add().addFilepattern("branch.txt").call();
+        git.commit().setMessage("branch commit 2").call();
+
+        git.checkout().setName("master").call();
+        FileUtils.writeStringToFile(new File(dir, "master.txt"), "master commit 2");
+        git.add().addFilepattern("master.txt").call();
+        git.commit().setMessage("master commit 2").call();
+        return git;
+    }
+
+    private static boolean treeContains(Repository repo, RevCommit commit, String path) throws Exception {
+        TreeWalk treeWalk = TreeWalk.forPath(repo, path, commit.getTree());
+        return treeWalk != null;
+    }
+
+    @Test
+    public void squashes_without_touching_the_worktree() throws Exception {
+        Git git = createDivergedRepository("squash");
+        Repository repo = git.getRepository();
+        ObjectId masterBefore = repo.resolve("master");
+        ObjectId branchHead = repo.resolve("branch");
+
+        ObjectId result = new InCoreMergeCallback(branchHead, "master", Mode.SQUASH, "Squashed \"it\"  \n\n\n", "John Doe", "john@praqma.net").invoke(repo, null);
+
+        assertEquals("Branch should point to the new commit.", result, repo.resolve("master"));
+        RevWalk walk = new RevWalk(repo);
+        RevCommit commit = walk.parseCommit(result);
+        assertEquals("Squash commit should have one parent.", 1, commit.getParentCount());
+        assertEquals("Squash commit should be based on the integration branch.", masterBefore, commit.getParent(0));
+        assertEquals("Author did not match expectations.", "John Doe", commit.getAuthorIdent().getName());
+        assertEquals("Message should be cleaned up like git commit does.", "Squashed \"it\"\n", commit.getFullMessage());
+        assertTrue("Merged tree should contain the branch file.", treeContains(repo, commit, "branch.txt"));
+        assertTrue("Merged tree should contain the master file.", treeContains(repo, commit, "master.txt"));
+        walk.dispose();
+
+        assertEquals("Worktree should be untouched.", "master commit 2", FileUtils.readFileToString(new File(dir, "master.txt")));
+        assertTrue("Branch file should not be checked out.", !new File(dir, "branch.txt").exists());
+    }
+
+    @Test
+    public void merges_with_both_parents() throws Exception {
+        Git git = createDivergedRepository("merge");
+        Repository repo = git.getRepository();
+        ObjectId branchHead = repo.resolve("branch");
+
+        ObjectId result = new InCoreMergeCallback(branchHead, "master", Mode.MERGE, "Accumulated", "John Doe", "john@praqma.net").invoke(repo, null);
+
+        RevWalk walk = new RevWalk(repo);
+        RevCommit commit = walk.parseCommit(result);
+        assertEquals("Merge commit should have two parents.", 2, commit.getParentCount());
+        assertEquals("Second parent should be the development branch.", branchHead, commit.getParent(1));
+        walk.dispose();
+    }
+
+    @Test
+    public void cherry_picks_keeping_author_and_message() throws Exception {
+        Git git = createDivergedRepository("cherrypick");
+        Repository repo = git.getRepository();
+
+        // A single commit branch, started before the last master commit
+        git.checkout().setCreateBranch(true).setName("single").setStartPoint("master~1").call();
+        FileUtils.writeStringToFile(new File(dir, "single.txt"), "single commit");
+        git.add().addFilepattern("single.txt").call();
+        ObjectId singleHead = git.commit().setMessage("single commit").call();
+        git.checkout().setName("master").call();
+        ObjectId masterBefore = repo.resolve("master");
+
+        ObjectId result = new InCoreMergeCallback(singleHead, "master", Mode.CHERRY_PICK, null, null, null).invoke(repo, null);
+
+        RevWalk walk = new RevWalk(repo);
+        RevCommit commit = walk.parseCommit(result);
+        assertEquals("Message should be kept.", "single commit", commit.getFullMessage());
+        assertEquals("Cherry-picked commit should have one parent.", 1, commit.getParentCount());
+        assertEquals("Cherry-picked commit should be based on the integration branch.", masterBefore, commit.getParent(0));
+        assertTrue("Tree should contain the cherry-picked file.", treeContains(repo, commit, "single.txt"));
+        walk.dispose();
+    }
+
+    @Test
+    public void fast_forwards_only_when_possible() throws Exception {
+        Git git = createDivergedRepository("fastforward");
+        Repository repo = git.getRepository();
+        ObjectId branchHead = repo.resolve("branch");
+
+        assertNull("Diverged branches cannot be fast-forwarded.", new InCoreMergeCallback(branchHead, "master", Mode.FAST_FORWARD, null, null, null).invoke(repo, null));
+
+        // Move a local integration branch back to where the development branch started
+        ObjectId branchBase = repo.resolve("branch~2");
+        git.branchCreate().setName("integration").setStartPoint(branchBase.getName()).call();
+        ObjectId result = new InCoreMergeCallback(branchHead, "integration", Mode.FAST_FORWARD, null, null, null).invoke(repo, null);
+        assertEquals("Expected a fast-forward to the development branch.", branchHead, result);
+        assertEquals("Branch should point to the development branch.", branchHead, repo.resolve("integration"));
+    }
+
+    @Test
+    public void reports_conflicting_paths() throws Exception {
+        Git git = createDivergedRepository("conflict");
+        Repository repo = git.getRepository();
+
+        git.checkout().setName("branch").call();
+        FileUtils.writeStringToFile(new File(dir, "master.txt"), "conflicting change");
+        git.add().addFilepattern("master.txt").call();
+        ObjectId branchHead = git.commit().setMessage("conflicting commit").call();
+        git.checkout().setName("master").call();
+        ObjectId masterBefore = repo.resolve("master");
+
+        try {
+            new InCoreMergeCallback(branchHead, "master", Mode.SQUASH, "Squashed", "John Doe", "john@praqma.net").invoke(repo, null);
+            fail("Expected the merge to conflict.");
+        } catch (IntegrationFailedException ex) {
+            assertTrue("Conflict message should list the path.", ex.getMessage().contains("master.txt"));
+        }
+        assertEquals("Branch should not move on conflicts.", masterBefore, repo.resolve("master"));
+    }
+
+    @Test
+    public void resets_branch_without_checkout() throws Exception {
+        Git git = createDivergedRepository("reset");
+        Repository repo = git.getRepository();
+
+        ObjectId result = new ResetBranchCallback("integration", "branch").invoke(repo, null);
+
+        assertNotNull(result);
+        assertEquals("Branch should point to the start point.", repo.resolve("branch"), repo.resolve("refs/heads/integration"));
+        assertEquals("HEAD should not move.", "refs/heads/master", repo.getFullBranch());
+    }
+}
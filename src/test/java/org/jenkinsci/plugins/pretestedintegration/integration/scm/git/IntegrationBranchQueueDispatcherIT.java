@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import hudson.plugins.git.GitSCM;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.IntegrationBranchQueueDispatcher;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.PretestedIntegrationAsGitPluginExt;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.SleepBuilder;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class IntegrationBranchQueueDispatcherIT {
+
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    private FreeStyleProject createProject(Repository repository) throws Exception {
+        FreeStyleProject project = TestUtilsFactory.configurePretestedIntegrationPlugin(jenkinsRule, TestUtilsFactory.STRATEGY_TYPE.ACCUMULATED, repository, false);
+        ((GitSCM) project.getScm()).getExtensions().get(PretestedIntegrationAsGitPluginExt.class).setMaxConcurrentIntegrations(1);
+        project.getBuildersList().add(new SleepBuilder(5000));
+        return project;
+    }
+
+    @Test
+    public void holds_back_builds_into_a_busy_integration_branch() throws Exception {
+        Repository repository = TestUtilsFactory.createValidRepository("test-repo");
+        jenkinsRule.jenkins.setNumExecutors(2);
+        FreeStyleProject first = createProject(repository);
+        FreeStyleProject second = createProject(repository);
+
+        FreeStyleBuild running = first.scheduleBuild2(0).waitForStart();
+        second.scheduleBuild2(0);
+        jenkinsRule.jenkins.getQueue().maintain();
+
+        Queue.Item waiting = jenkinsRule.jenkins.getQueue().getItem(second);
+        assertNotNull("Second build should wait in the queue.", waiting);
+        assertTrue("Second build should wait for the integration branch, was: " + waiting.getCauseOfBlockage(),
+                waiting.getCauseOfBlockage() instanceof IntegrationBranchQueueDispatcher.WaitingForIntegrationBranch);
+
+        jenkinsRule.waitUntilNoActivityUpTo(60000);
+        FreeStyleBuild next = second.getLastBuild();
+        assertNotNull("Second build should run once the first is done.", next);
+        assertTrue("Second build should start after the first finished.",
+                next.getStartTimeInMillis() >= running.getStartTimeInMillis() + running.getDuration());
+        TestUtilsFactory.destroyRepo(repository);
+    }
+
+    @Test
+    public void lets_builds_through_without_a_limit() throws Exception {
+        Repository repository = TestUtilsFactory.createValidRepository("test-repo");
+        jenkinsRule.jenkins.setNumExecutors(2);
+        FreeStyleProject first = createProject(repository);
+        FreeStyleProject second = createProject(repository);
+        ((GitSCM) second.getScm()).getExtensions().get(PretestedIntegrationAsGitPluginExt.class).setMaxConcurrentIntegrations(0);
+
+        first.scheduleBuild2(0).waitForStart();
+        second.scheduleBuild2(0).waitForStart();
+
+        jenkinsRule.waitUntilNoActivityUpTo(60000);
+        TestUtilsFactory.destroyRepo(repository);
+    }
+}
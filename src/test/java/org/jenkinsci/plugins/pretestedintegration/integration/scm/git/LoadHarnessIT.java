@@ -0,0 +1,307 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Result;
+import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
+import hudson.plugins.git.BranchSpec;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.SubmoduleConfig;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.plugins.git.extensions.GitSCMExtension;
+import hudson.plugins.git.extensions.impl.CleanCheckout;
+import hudson.plugins.git.extensions.impl.PruneStaleBranch;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.RefSpec;
+import org.jenkinsci.plugins.pretestedintegration.IntegrationStrategy;
+import org.jenkinsci.plugins.pretestedintegration.PretestedIntegrationPostCheckout;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.AccumulatedCommitStrategy;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.BatchedCommitStrategy;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.BranchMetrics;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.FFOnlyStrategy;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.IntegrationMetrics;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.IntegrationTimingAction;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.PretestedIntegrationAsGitPluginExt;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.SquashCommitStrategy;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.StreamingHistogram;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.SleepBuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * <h3>Load test of the integration strategies against a local bare repository</h3>
+ * <p>
+ * Pushes development branches to a bare repository at a steady rate, starts a build for each, and lets several
+ * executors integrate them concurrently, so the builds race each other for the integration branch like on a busy
+ * project. Reports the throughput, the time from the push of a branch to its integration, the rejected and retried
+ * pushes and the build minutes that integrated nothing. Nothing goes over the network.</p>
+ * <p>
+ * Only runs when asked to, since it takes minutes:</p>
+ * <pre>mvn verify -DloadTest=true -Dit.test=LoadHarnessIT</pre>
+ * <p>
+ * Tune it with the system properties <code>loadTest.branches</code> (default 20), <code>loadTest.branchesPerMinute</code>
+ * (30), <code>loadTest.executors</code> (4), <code>loadTest.buildSeconds</code> (5), and the job settings
+ * <code>loadTest.maxConcurrentIntegrations</code> (0), <code>loadTest.speculative</code> and
+ * <code>loadTest.conflictPreflight</code>. Run a single strategy with for instance
+ * <code>-Dit.test=LoadHarnessIT#batched</code>.</p>
+ */
+public class LoadHarnessIT {
+
+    private static final int BRANCHES = Integer.getInteger("loadTest.branches", 20);
+    private static final int BRANCHES_PER_MINUTE = Integer.getInteger("loadTest.branchesPerMinute", 30);
+    private static final int EXECUTORS = Integer.getInteger("loadTest.executors", 4);
+    private static final int BUILD_SECONDS = Integer.getInteger("loadTest.buildSeconds", 5);
+    private static final int MAX_CONCURRENT_INTEGRATIONS = Integer.getInteger("loadTest.maxConcurrentIntegrations", 0);
+    private static final boolean SPECULATIVE = Boolean.getBoolean("loadTest.speculative");
+    private static final boolean CONFLICT_PREFLIGHT = Boolean.getBoolean("loadTest.conflictPreflight");
+
+    /**
+     * How often to start builds again for branches that are still waiting once all branches are pushed.
+     * Concurrent builds may pick the same branch, and the one that loses leaves another branch behind.
+     */
+    private static final int DRAIN_ROUNDS = 5;
+
+    private static final String READY_PREFIX = "ready/load-";
+    private static final String PARAMETER = "READY_BRANCH";
+
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    {
+        // A run lasts as long as the pushes take, longer than the default timeout
+        jenkinsRule.timeout = 0;
+    }
+
+    @BeforeClass
+    public static void onlyWhenAsked() {
+        assumeTrue("The load test only runs with -DloadTest=true", Boolean.getBoolean("loadTest"));
+    }
+
+    @Test
+    public void squash() throws Exception {
+        assertAllIntegrated(run("squash", new SquashCommitStrategy()));
+    }
+
+    @Test
+    public void accumulated() throws Exception {
+        assertAllIntegrated(run("accumulated", new AccumulatedCommitStrategy()));
+    }
+
+    @Test
+    public void batched() throws Exception {
+        assertAllIntegrated(run("batched", new BatchedCommitStrategy()));
+    }
+
+    /**
+     * Fast forward only fails the branches that are behind the integration branch when their build starts,
+     * which under load is most of them, so it is only reported.
+     */
+    @Test
+    public void ffOnly() throws Exception {
+        Report report = run("ff-only", new FFOnlyStrategy());
+        assertTrue("At least one branch should be integrated.", report.integrated > 0);
+    }
+
+    private static void assertAllIntegrated(Report report) {
+        assertEquals("Every branch should be integrated.", report.pushed, report.integrated);
+    }
+
+    private Report run(String name, IntegrationStrategy strategy) throws Exception {
+        Repository remote = TestUtilsFactory.createRepoWithoutBranches("load-" + name);
+        File cloneDir = new File(TestUtilsFactory.WORKDIR, "load-" + name + "-clone");
+        FileUtils.deleteQuietly(cloneDir);
+        Git clone = Git.cloneRepository().setURI("file://" + remote.getDirectory().getAbsolutePath()).setDirectory(cloneDir).call();
+
+        jenkinsRule.jenkins.setNumExecutors(EXECUTORS);
+        FreeStyleProject project = createProject(name, strategy, remote);
+
+        Map<String, Long> pushedAt = new ConcurrentHashMap<>();
+        Map<String, Long> integratedAt = new ConcurrentHashMap<>();
+        ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor();
+        watcher.scheduleWithFixedDelay(() -> watchIntegrations(remote, pushedAt, integratedAt), 100, 100, TimeUnit.MILLISECONDS);
+
+        long start = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < BRANCHES; i++) {
+                long due = start + TimeUnit.MINUTES.toMillis(i) / BRANCHES_PER_MINUTE;
+                Thread.sleep(Math.max(0, due - System.currentTimeMillis()));
+                String branch = pushBranch(clone, i);
+                pushedAt.put(branch, System.currentTimeMillis());
+                schedule(project, branch);
+            }
+
+            for (int round = 0; round < DRAIN_ROUNDS; round++) {
+                jenkinsRule.waitUntilNoActivityUpTo((int) TimeUnit.MINUTES.toMillis(30));
+                // Builds are done, so nothing is deleted concurrently any more
+                watchIntegrations(remote, pushedAt, integratedAt);
+                List<String> waiting = new ArrayList<>(pushedAt.keySet());
+                waiting.removeAll(integratedAt.keySet());
+                if (waiting.isEmpty()) {
+                    break;
+                }
+                for (String branch : waiting) {
+                    schedule(project, branch);
+                }
+            }
+            jenkinsRule.waitUntilNoActivityUpTo((int) TimeUnit.MINUTES.toMillis(30));
+        } finally {
+            watcher.shutdownNow();
+            clone.close();
+        }
+        watchIntegrations(remote, pushedAt, integratedAt);
+
+        Report report = new Report(name, project, pushedAt, integratedAt, System.currentTimeMillis() - start);
+        report.print();
+        TestUtilsFactory.destroyRepo(remote);
+        FileUtils.deleteQuietly(cloneDir);
+        return report;
+    }
+
+    private FreeStyleProject createProject(String name, IntegrationStrategy strategy, Repository remote) throws IOException {
+        FreeStyleProject project = jenkinsRule.createFreeStyleProject("load-" + name);
+        project.setConcurrentBuild(true);
+        // Each push gets its own build, the queue would otherwise fold them into one
+        project.addProperty(new ParametersDefinitionProperty(Collections.<ParameterDefinition>singletonList(
+                new StringParameterDefinition(PARAMETER, "", "The pushed branch that started the build"))));
+        project.getBuildersList().add(new SleepBuilder(TimeUnit.SECONDS.toMillis(BUILD_SECONDS)));
+        project.getPublishersList().add(new PretestedIntegrationPostCheckout());
+
+        PretestedIntegrationAsGitPluginExt pretested = new PretestedIntegrationAsGitPluginExt(strategy, "master", "origin");
+        pretested.setMaxConcurrentIntegrations(MAX_CONCURRENT_INTEGRATIONS);
+        pretested.setSpeculative(SPECULATIVE);
+        pretested.setConflictPreflight(CONFLICT_PREFLIGHT);
+        List<GitSCMExtension> extensions = new ArrayList<>();
+        extensions.add(pretested);
+        extensions.add(new PruneStaleBranch());
+        extensions.add(new CleanCheckout());
+
+        project.setScm(new GitSCM(
+                Collections.singletonList(new UserRemoteConfig("file://" + remote.getDirectory().getAbsolutePath(), "origin", null, null)),
+                Collections.singletonList(new BranchSpec("*/ready/**")),
+                false, Collections.<SubmoduleConfig>emptyList(),
+                null, null, extensions));
+        project.save();
+        return project;
+    }
+
+    /**
+     * Pushes a branch with one new file on top of the current integration branch, so it can be integrated
+     * without conflicts by any strategy.
+     */
+    private static String pushBranch(Git clone, int index) throws GitAPIException, IOException {
+        String branch = READY_PREFIX + index;
+        clone.fetch().call();
+        clone.reset().setMode(ResetCommand.ResetType.HARD).setRef("origin/master").call();
+        FileUtils.writeStringToFile(new File(clone.getRepository().getWorkTree(), "load/" + index + ".txt"), "Change " + index);
+        clone.add().addFilepattern("load").call();
+        clone.commit().setMessage("Load test change " + index).setAuthor(TestUtilsFactory.AUTHOR_NAME, TestUtilsFactory.AUTHOR_EMAIL).call();
+        clone.push().setRefSpecs(new RefSpec("HEAD:" + Constants.R_HEADS + branch)).call();
+        return branch;
+    }
+
+    private static void schedule(FreeStyleProject project, String branch) {
+        project.scheduleBuild2(0, new ParametersAction(new StringParameterValue(PARAMETER, branch)));
+    }
+
+    /**
+     * Marks the pushed branches that are gone from the remote as integrated, the plugin deletes them after the push.
+     */
+    private static void watchIntegrations(Repository remote, Map<String, Long> pushedAt, Map<String, Long> integratedAt) {
+        try {
+            Map<String, Ref> branches = remote.getRefDatabase().getRefs(Constants.R_HEADS);
+            long now = System.currentTimeMillis();
+            for (String branch : pushedAt.keySet()) {
+                if (!branches.containsKey(branch) && !integratedAt.containsKey(branch)) {
+                    integratedAt.put(branch, now);
+                }
+            }
+        } catch (IOException ex) {
+            System.out.println("Could not read the refs of the load test repository: " + ex);
+        }
+    }
+
+    /**
+     * The outcome of one run.
+     */
+    private static class Report {
+        private final String name;
+        private final int pushed;
+        private final int integrated;
+        private final long elapsedMillis;
+        private final StreamingHistogram timeToIntegrate = new StreamingHistogram();
+        private int builds;
+        private int wastedBuilds;
+        private long wastedMillis;
+        private int pushAttempts;
+        private int pushingBuilds;
+        private long pushesRejected;
+
+        Report(String name, FreeStyleProject project, Map<String, Long> pushedAt, Map<String, Long> integratedAt, long elapsedMillis) {
+            this.name = name;
+            this.pushed = pushedAt.size();
+            this.integrated = integratedAt.size();
+            this.elapsedMillis = elapsedMillis;
+            for (Map.Entry<String, Long> entry : integratedAt.entrySet()) {
+                timeToIntegrate.record(entry.getValue() - pushedAt.get(entry.getKey()));
+            }
+            for (FreeStyleBuild build : project.getBuilds()) {
+                builds++;
+                if (build.getResult() != Result.SUCCESS) {
+                    wastedBuilds++;
+                    wastedMillis += build.getDuration();
+                }
+                IntegrationTimingAction timings = build.getAction(IntegrationTimingAction.class);
+                if (timings != null) {
+                    for (IntegrationTimingAction.Phase phase : timings.getPhases()) {
+                        if (phase.getName().equals(IntegrationTimingAction.PUSH)) {
+                            pushAttempts += phase.getCount();
+                            pushingBuilds++;
+                        }
+                    }
+                }
+            }
+            BranchMetrics metrics = IntegrationMetrics.get().find(IntegrationMetrics.key(project.getFullName(), "master"));
+            pushesRejected = metrics == null ? 0 : metrics.getPushesRejected();
+        }
+
+        void print() {
+            System.out.println(String.format("[load test] %s: %d branches at %d per minute, %d executors, %d s builds, "
+                            + "max concurrent integrations %d, speculative %s, conflict preflight %s",
+                    name, BRANCHES, BRANCHES_PER_MINUTE, EXECUTORS, BUILD_SECONDS, MAX_CONCURRENT_INTEGRATIONS, SPECULATIVE, CONFLICT_PREFLIGHT));
+            System.out.println(String.format("[load test]   integrated %d of %d in %d s, %.1f per minute",
+                    integrated, pushed, TimeUnit.MILLISECONDS.toSeconds(elapsedMillis), integrated * 60000.0 / elapsedMillis));
+            System.out.println(String.format("[load test]   time to integrate p50 %d ms, p95 %d ms, max %d ms",
+                    timeToIntegrate.getQuantile(0.5), timeToIntegrate.getQuantile(0.95), timeToIntegrate.getMax()));
+            System.out.println(String.format("[load test]   builds %d, wasted %d using %.1f build minutes",
+                    builds, wastedBuilds, wastedMillis / 60000.0));
+            System.out.println(String.format("[load test]   pushes rejected %d, push retries %d",
+                    pushesRejected, pushAttempts - pushingBuilds));
+        }
+    }
+}
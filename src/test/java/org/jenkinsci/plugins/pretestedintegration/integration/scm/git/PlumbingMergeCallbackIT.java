@@ -0,0 +1,162 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.IntegrationFailedException;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.InCoreMergeCallback.Mode;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.PlumbingMergeCallback;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class PlumbingMergeCallbackIT {
+
+    private static final String FOLDER_PREFIX = "PlumbingMerge_";
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            TestUtilsFactory.destroyDirectory(dir);
+        } catch (Exception e) {
+            System.out.format("WARNING: Could not delete the dir: " + dir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Creates master with a single file, and a branch with two commits to another file.
+     * Master gets a commit of its own afterwards, so the two have diverged.
+     */
+    private Git createDivergedRepository(String name) throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name);
+        Git git = Git.init().setDirectory(dir).call();
+
+        FileUtils.writeStringToFile(new File(dir, "master.txt"), "master commit 1");
+        git.add().addFilepattern("master.txt").call();
+        git.commit().setMessage("master commit 1").call();
+
+        git.checkout().setCreateBranch(true).setName("branch").call();
+        FileUtils.writeStringToFile(new File(dir, "branch.txt"), "branch commit 1");
+        git.add().addFilepattern("branch.txt").call();
+        git.commit().setMessage("branch commit 1").call();
+        FileUtils.writeStringToFile(new File(dir, "branch.txt"), "branch commit 2");
+        git.add().addFilepattern("branch.txt").call();
+        git.commit().setMessage("branch commit 2").call();
+
+        git.checkout().setName("master").call();
+        FileUtils.writeStringToFile(new File(dir, "master.txt"), "master commit 2");
+        git.add().addFilepattern("master.txt").call();
+        git.commit().setMessage("master commit 2").call();
+        return git;
+    }
+
+    /**
+     * Runs the callback, skipping the test when the installed git has no merge-tree --write-tree.
+     */
+    private static ObjectId integrate(Repository repo, ObjectId commitId, Mode mode, String message) throws Exception {
+        ObjectId result = new PlumbingMergeCallback("git", commitId, "master", mode, message, "John Doe", "john@praqma.net").invoke(repo, null);
+        Assume.assumeTrue("git merge-tree --write-tree is not supported by the installed git", result != null);
+        return result;
+    }
+
+    private static boolean treeContains(Repository repo, RevCommit commit, String path) throws Exception {
+        return TreeWalk.forPath(repo, path, commit.getTree()) != null;
+    }
+
+    @Test
+    public void squashes_without_touching_the_worktree() throws Exception {
+        Git git = createDivergedRepository("squash");
+        Repository repo = git.getRepository();
+        ObjectId masterBefore = repo.resolve("master");
+
+        ObjectId result = integrate(repo, repo.resolve("branch"), Mode.SQUASH, "Squashed \"it\"  \n\n\n");
+
+        assertEquals("Branch should point to the new commit.", result, repo.resolve("master"));
+        RevWalk walk = new RevWalk(repo);
+        RevCommit commit = walk.parseCommit(result);
+        assertEquals("Squash commit should have one parent.", 1, commit.getParentCount());
+        assertEquals("Squash commit should be based on the integration branch.", masterBefore, commit.getParent(0));
+        assertEquals("Author did not match expectations.", "John Doe", commit.getAuthorIdent().getName());
+        assertEquals("Message should be cleaned up like git commit does.", "Squashed \"it\"\n", commit.getFullMessage());
+        assertTrue("Merged tree should contain the branch file.", treeContains(repo, commit, "branch.txt"));
+        assertTrue("Merged tree should contain the master file.", treeContains(repo, commit, "master.txt"));
+        walk.dispose();
+
+        assertEquals("Worktree should be untouched.", "master commit 2", FileUtils.readFileToString(new File(dir, "master.txt")));
+        assertTrue("Branch file should not be checked out.", !new File(dir, "branch.txt").exists());
+    }
+
+    @Test
+    public void merges_with_both_parents() throws Exception {
+        Git git = createDivergedRepository("merge");
+        Repository repo = git.getRepository();
+        ObjectId branchHead = repo.resolve("branch");
+
+        ObjectId result = integrate(repo, branchHead, Mode.MERGE, "Accumulated");
+
+        RevWalk walk = new RevWalk(repo);
+        RevCommit commit = walk.parseCommit(result);
+        assertEquals("Merge commit should have two parents.", 2, commit.getParentCount());
+        assertEquals("Second parent should be the development branch.", branchHead, commit.getParent(1));
+        walk.dispose();
+    }
+
+    @Test
+    public void cherry_picks_or_leaves_the_branch_alone() throws Exception {
+        Git git = createDivergedRepository("cherrypick");
+        Repository repo = git.getRepository();
+
+        git.checkout().setCreateBranch(true).setName("single").setStartPoint("master~1").call();
+        FileUtils.writeStringToFile(new File(dir, "single.txt"), "single commit");
+        git.add().addFilepattern("single.txt").call();
+        ObjectId singleHead = git.commit().setMessage("single commit").call();
+        git.checkout().setName("master").call();
+        ObjectId masterBefore = repo.resolve("master");
+
+        ObjectId result = new PlumbingMergeCallback("git", singleHead, "master", Mode.CHERRY_PICK, null, null, null).invoke(repo, null);
+
+        if (result == null) {
+            // git older than 2.40 has no merge-tree --merge-base, the caller falls back to the in-memory merge
+            assertEquals("Branch should not move when falling back.", masterBefore, repo.resolve("master"));
+            return;
+        }
+        RevWalk walk = new RevWalk(repo);
+        RevCommit commit = walk.parseCommit(result);
+        assertEquals("Message should be kept.", "single commit", commit.getFullMessage());
+        assertEquals("Cherry-picked commit should be based on the integration branch.", masterBefore, commit.getParent(0));
+        assertTrue("Tree should contain the cherry-picked file.", treeContains(repo, commit, "single.txt"));
+        walk.dispose();
+    }
+
+    @Test
+    public void reports_conflicting_paths() throws Exception {
+        Git git = createDivergedRepository("conflict");
+        Repository repo = git.getRepository();
+
+        git.checkout().setName("branch").call();
+        FileUtils.writeStringToFile(new File(dir, "master.txt"), "conflicting change");
+        git.add().addFilepattern("master.txt").call();
+        ObjectId branchHead = git.commit().setMessage("conflicting commit").call();
+        git.checkout().setName("master").call();
+        ObjectId masterBefore = repo.resolve("master");
+
+        try {
+            integrate(repo, branchHead, Mode.SQUASH, "Squashed");
+            fail("Expected the merge to conflict.");
+        } catch (IntegrationFailedException ex) {
+            assertTrue("Conflict message should list the path.", ex.getMessage().contains("master.txt"));
+        }
+        assertEquals("Branch should not move on conflicts.", masterBefore, repo.resolve("master"));
+    }
+}
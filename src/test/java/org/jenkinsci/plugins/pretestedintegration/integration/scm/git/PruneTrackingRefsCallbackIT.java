@@ -0,0 +1,73 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.PruneTrackingRefsCallback;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class PruneTrackingRefsCallbackIT {
+
+    private static final String FOLDER_PREFIX = "PruneTrackingRefs_";
+    private File bareDir;
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        for (File toDelete : new File[]{dir, bareDir}) {
+            try {
+                TestUtilsFactory.destroyDirectory(toDelete);
+            } catch (Exception e) {
+                System.out.format("WARNING: Could not delete the dir: " + toDelete.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Creates a bare remote with master, ready/one and ready/two, and a clone that fetched them all.
+     */
+    private Repository createClone(String name) throws Exception {
+        bareDir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name + ".git");
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name);
+        Git.init().setBare(true).setDirectory(bareDir).call().close();
+        Git git = Git.cloneRepository().setURI(bareDir.toURI().toString()).setDirectory(dir).call();
+
+        FileUtils.writeStringToFile(new File(dir, "file"), "master commit");
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("master commit").call();
+        git.push().add("master").add("master:ready/one").add("master:ready/two").call();
+        git.fetch().call();
+        return git.getRepository();
+    }
+
+    @Test
+    public void prunes_loose_and_packed_tracking_refs() throws Exception {
+        Repository repo = createClone("prune");
+        Git.wrap(repo).gc().call();
+        List<String> deleted = new PruneTrackingRefsCallback(Arrays.asList("origin/ready/one", "refs/remotes/origin/ready/two")).invoke(repo, null);
+
+        assertEquals(Arrays.asList("refs/remotes/origin/ready/one", "refs/remotes/origin/ready/two"), deleted);
+        assertNull(repo.exactRef("refs/remotes/origin/ready/one"));
+        assertNull(repo.exactRef("refs/remotes/origin/ready/two"));
+        assertNotNull("Other tracking refs should stay.", repo.exactRef("refs/remotes/origin/master"));
+    }
+
+    @Test
+    public void ignores_tracking_refs_already_gone() throws Exception {
+        Repository repo = createClone("missing");
+        List<String> deleted = new PruneTrackingRefsCallback(Collections.singletonList("origin/ready/three")).invoke(repo, null);
+
+        assertTrue(deleted.isEmpty());
+    }
+}
@@ -0,0 +1,144 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.jenkinsci.plugins.pretestedintegration.exceptions.IntegrationFailedException;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.ReapplyCommitCallback;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class ReapplyCommitCallbackIT {
+
+    private static final String FOLDER_PREFIX = "ReapplyCommit_";
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            TestUtilsFactory.destroyDirectory(dir);
+        } catch (Exception e) {
+            System.out.format("WARNING: Could not delete the dir: " + dir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Creates master with two files, and a tested squash commit on a detached HEAD changing one of them.
+     * Master then gets a commit of its own, changing the given file.
+     */
+    private ObjectId tested;
+
+    private Git createMovedIntegrationBranch(String name, String fileChangedOnMaster, String contentOnMaster) throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name);
+        Git git = Git.init().setDirectory(dir).call();
+
+        FileUtils.writeStringToFile(new File(dir, "tested.txt"), "line 1\nline 2\nline 3\nline 4\nline 5\n");
+        FileUtils.writeStringToFile(new File(dir, "other.txt"), "other");
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("master commit 1").call();
+
+        git.checkout().setName(git.getRepository().resolve("master").getName()).call();
+        FileUtils.writeStringToFile(new File(dir, "tested.txt"), "line 1 tested\nline 2\nline 3\nline 4\nline 5\n");
+        git.add().addFilepattern("tested.txt").call();
+        tested = git.commit().setMessage("Tested squash commit").call();
+
+        git.checkout().setName("master").call();
+        FileUtils.writeStringToFile(new File(dir, fileChangedOnMaster), contentOnMaster);
+        git.add().addFilepattern(fileChangedOnMaster).call();
+        git.commit().setMessage("master commit 2").call();
+        return git;
+    }
+
+    @Test
+    public void reapplies_when_paths_do_not_overlap() throws Exception {
+        Git git = createMovedIntegrationBranch("disjoint", "other.txt", "other changed");
+        Repository repo = git.getRepository();
+        RevWalk walk = new RevWalk(repo);
+        RevCommit tested = walk.parseCommit(this.tested);
+        ObjectId masterBefore = repo.resolve("master");
+
+        ObjectId result = new ReapplyCommitCallback(tested.getName(), "master").invoke(repo, null);
+
+        RevCommit commit = walk.parseCommit(result);
+        assertEquals("Re-applied commit should be based on the new tip.", repo.resolve("master"), commit.getParent(0));
+        assertEquals("Message should be kept.", tested.getFullMessage(), commit.getFullMessage());
+        assertEquals("Author should be kept.", tested.getAuthorIdent(), commit.getAuthorIdent());
+        TreeWalk other = TreeWalk.forPath(repo, "other.txt", commit.getTree());
+        assertNotNull(other);
+        assertEquals("Change on the integration branch should be kept.", "other changed", new String(repo.open(other.getObjectId(0)).getBytes()));
+        assertEquals("Integration branch should not move.", masterBefore, repo.resolve("master"));
+        walk.dispose();
+    }
+
+    @Test
+    public void refuses_when_paths_overlap_even_if_the_merge_is_clean() throws Exception {
+        Git git = createMovedIntegrationBranch("overlap", "tested.txt", "line 1\nline 2\nline 3\nline 4\nline 5 master\n");
+        Repository repo = git.getRepository();
+
+        try {
+            new ReapplyCommitCallback(tested.getName(), "master").invoke(repo, null);
+            fail("Expected overlapping changes to be refused.");
+        } catch (IntegrationFailedException ex) {
+            assertTrue("Message should list the path.", ex.getMessage().contains("tested.txt"));
+        }
+    }
+
+    @Test
+    public void reapplies_when_the_tree_is_unchanged() throws Exception {
+        // The integration branch got the very same change
+        Git git = createMovedIntegrationBranch("identical", "tested.txt", "line 1 tested\nline 2\nline 3\nline 4\nline 5\n");
+        Repository repo = git.getRepository();
+        RevWalk walk = new RevWalk(repo);
+        RevCommit tested = walk.parseCommit(this.tested);
+
+        ObjectId result = new ReapplyCommitCallback(tested.getName(), "master").invoke(repo, null);
+
+        assertEquals("Tree should be the tested tree.", tested.getTree(), walk.parseCommit(result).getTree());
+        walk.dispose();
+    }
+
+    @Test
+    public void keeps_the_second_parent_of_merge_commits() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "merge");
+        Git git = Git.init().setDirectory(dir).call();
+        Repository repo = git.getRepository();
+        FileUtils.writeStringToFile(new File(dir, "master.txt"), "master commit 1");
+        git.add().addFilepattern("master.txt").call();
+        git.commit().setMessage("master commit 1").call();
+
+        git.checkout().setCreateBranch(true).setName("feature").call();
+        FileUtils.writeStringToFile(new File(dir, "feature.txt"), "feature commit");
+        git.add().addFilepattern("feature.txt").call();
+        ObjectId feature = git.commit().setMessage("feature commit").call();
+
+        git.checkout().setName("master").call();
+        git.checkout().setName(repo.resolve("master").getName()).call();
+        ObjectId tested = git.merge().include(feature).setFastForward(MergeCommand.FastForwardMode.NO_FF).setMessage("Accumulated commit").call().getNewHead();
+
+        git.checkout().setName("master").call();
+        FileUtils.writeStringToFile(new File(dir, "master.txt"), "master commit 2");
+        git.add().addFilepattern("master.txt").call();
+        git.commit().setMessage("master commit 2").call();
+
+        ObjectId result = new ReapplyCommitCallback(tested.getName(), "master").invoke(repo, null);
+
+        RevWalk walk = new RevWalk(repo);
+        RevCommit commit = walk.parseCommit(result);
+        assertEquals("Re-applied commit should have two parents.", 2, commit.getParentCount());
+        assertEquals("First parent should be the new tip.", repo.resolve("master"), commit.getParent(0));
+        assertEquals("Second parent should be the feature branch.", feature, commit.getParent(1));
+        walk.dispose();
+    }
+}
@@ -0,0 +1,80 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.RemoteBranchExistsCallback;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class RemoteBranchExistsCallbackIT {
+
+    private static final String FOLDER_PREFIX = "RemoteBranchExists_";
+    private File bareDir;
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        for (File toDelete : new File[]{dir, bareDir}) {
+            try {
+                TestUtilsFactory.destroyDirectory(toDelete);
+            } catch (Exception e) {
+                System.out.format("WARNING: Could not delete the dir: " + toDelete.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Creates a bare remote with master and ready/feature, and a clone of it.
+     */
+    private Repository createClone(String name) throws Exception {
+        bareDir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name + ".git");
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name);
+        Git.init().setBare(true).setDirectory(bareDir).call().close();
+        Git git = Git.cloneRepository().setURI(bareDir.toURI().toString()).setDirectory(dir).call();
+
+        FileUtils.writeStringToFile(new File(dir, "file"), "master commit");
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("master commit").call();
+        git.push().add("master").call();
+
+        git.checkout().setCreateBranch(true).setName("ready/feature").call();
+        FileUtils.writeStringToFile(new File(dir, "feature"), "feature commit");
+        git.add().addFilepattern("feature").call();
+        git.commit().setMessage("feature commit").call();
+        git.push().add("ready/feature").call();
+        git.checkout().setName("master").call();
+        git.fetch().call();
+        return git.getRepository();
+    }
+
+    @Test
+    public void finds_loose_remote_branch() throws Exception {
+        Repository repo = createClone("loose");
+
+        assertTrue(new RemoteBranchExistsCallback("origin/ready/feature").invoke(repo, null));
+        assertTrue(new RemoteBranchExistsCallback("refs/remotes/origin/ready/feature").invoke(repo, null));
+        assertFalse(new RemoteBranchExistsCallback("origin/ready/other").invoke(repo, null));
+    }
+
+    @Test
+    public void finds_packed_remote_branch() throws Exception {
+        Repository repo = createClone("packed");
+        Git.wrap(repo).gc().call();
+
+        assertTrue(new RemoteBranchExistsCallback("origin/ready/feature").invoke(repo, null));
+        assertFalse(new RemoteBranchExistsCallback("origin/ready").invoke(repo, null));
+    }
+
+    @Test
+    public void does_not_match_local_branches() throws Exception {
+        Repository repo = createClone("local");
+
+        assertFalse("Local branch ready/feature is not a remote branch.", new RemoteBranchExistsCallback("ready/feature").invoke(repo, null));
+    }
+}
@@ -0,0 +1,144 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.RefSpec;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.SharedObjectStore;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class SharedObjectStoreIT {
+
+    private static final String FOLDER_PREFIX = "SharedObjectStore_";
+    private static final Map<String, String> NO_ENV = Collections.emptyMap();
+    private static final List<String> MASTER = Collections.singletonList("refs/remotes/origin/master");
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            TestUtilsFactory.destroyDirectory(dir);
+        } catch (Exception e) {
+            System.out.format("WARNING: Could not delete the dir: " + dir.getAbsolutePath());
+        }
+    }
+
+    private ObjectId createOrigin(File origin) throws Exception {
+        Git git = Git.init().setDirectory(origin).call();
+        FileUtils.writeStringToFile(new File(origin, "file"), "commit");
+        git.add().addFilepattern("file").call();
+        return git.commit().setMessage("commit").call().getId();
+    }
+
+    private Repository fetch(File workspace) throws Exception {
+        Repository repo = new FileRepositoryBuilder().setWorkTree(workspace).build();
+        new Git(repo).fetch().setRemote("origin").setRefSpecs(new RefSpec("+refs/heads/*:refs/remotes/origin/*")).call();
+        return repo;
+    }
+
+    @Test
+    public void second_workspace_borrows_what_the_first_fetched() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "borrow");
+        File origin = new File(dir, "origin");
+        ObjectId commit = createOrigin(origin);
+        String store = new File(dir, "store.git").getAbsolutePath();
+        String url = origin.getAbsolutePath();
+
+        File first = new File(dir, "first");
+        assertTrue(new SharedObjectStore.Attach("git", NO_ENV, store, "origin", url).invoke(first, null));
+        Repository firstRepo = fetch(first);
+        assertEquals(commit, firstRepo.exactRef("refs/remotes/origin/master").getObjectId());
+        assertTrue("Should feed a workspace borrowing from the store.", new SharedObjectStore.Feed("git", NO_ENV, store, MASTER).invoke(firstRepo, null));
+
+        Repository storeRepo = new FileRepositoryBuilder().setGitDir(new File(store)).build();
+        assertNotNull("The store should have the fetched branch.", storeRepo.exactRef("refs/remotes/origin/master"));
+
+        File second = new File(dir, "second");
+        assertTrue(new SharedObjectStore.Attach("git", NO_ENV, store, "origin", url).invoke(second, null));
+        Repository secondRepo = new FileRepositoryBuilder().setWorkTree(second).build();
+        assertTrue("The new workspace should see the objects of the store before fetching.", secondRepo.hasObject(commit));
+        assertEquals(url, secondRepo.getConfig().getString("remote", "origin", "url"));
+    }
+
+    @Test
+    public void creates_the_store_once() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "create");
+        File store = new File(dir, "store.git");
+
+        assertTrue(new SharedObjectStore.Create("git", NO_ENV).invoke(store, null));
+        Repository storeRepo = new FileRepositoryBuilder().setGitDir(store).build();
+        assertTrue(storeRepo.isBare());
+        assertEquals("never", storeRepo.getConfig().getString("gc", null, "pruneExpire"));
+
+        assertFalse("An existing store should be kept.", new SharedObjectStore.Create("git", NO_ENV).invoke(store, null));
+    }
+
+    @Test
+    public void leaves_existing_workspaces_alone() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "existing");
+        File origin = new File(dir, "origin");
+        createOrigin(origin);
+        String store = new File(dir, "store.git").getAbsolutePath();
+
+        assertFalse(new SharedObjectStore.Attach("git", NO_ENV, store, "origin", "unused").invoke(origin, null));
+        Repository repo = new FileRepositoryBuilder().setWorkTree(origin).build();
+        assertFalse("Should not feed a workspace not borrowing from the store.", new SharedObjectStore.Feed("git", NO_ENV, store, MASTER).invoke(repo, null));
+        assertFalse(new File(store).exists());
+    }
+
+    @Test
+    public void feeds_only_the_refs_the_build_used() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "used");
+        File origin = new File(dir, "origin");
+        createOrigin(origin);
+        Git.open(origin).branchCreate().setName("ready/feature").call();
+        Git.open(origin).branchCreate().setName("ready/other").call();
+        String store = new File(dir, "store.git").getAbsolutePath();
+
+        File workspace = new File(dir, "workspace");
+        assertTrue(new SharedObjectStore.Attach("git", NO_ENV, store, "origin", origin.getAbsolutePath()).invoke(workspace, null));
+        Repository repo = fetch(workspace);
+        List<String> used = Arrays.asList("refs/remotes/origin/master", "refs/remotes/origin/ready/feature", "refs/remotes/origin/ready/gone");
+        assertTrue(new SharedObjectStore.Feed("git", NO_ENV, store, used).invoke(repo, null));
+
+        Repository storeRepo = new FileRepositoryBuilder().setGitDir(new File(store)).build();
+        assertNotNull(storeRepo.exactRef("refs/remotes/origin/master"));
+        assertNotNull(storeRepo.exactRef("refs/remotes/origin/ready/feature"));
+        assertNull("Branches the build did not use should not be fed.", storeRepo.exactRef("refs/remotes/origin/ready/other"));
+    }
+
+    @Test
+    public void refresh_fetches_and_prunes_deleted_branches() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "refresh");
+        File origin = new File(dir, "origin");
+        ObjectId commit = createOrigin(origin);
+        Git.open(origin).branchCreate().setName("ready/feature").call();
+        File store = new File(dir, "store.git");
+        List<String> refSpecs = Collections.singletonList("+refs/heads/*:refs/remotes/origin/*");
+
+        assertTrue(new SharedObjectStore.Refresh("git", NO_ENV, null, origin.getAbsolutePath(), refSpecs).invoke(store, null));
+        Repository storeRepo = new FileRepositoryBuilder().setGitDir(store).build();
+        assertEquals(commit, storeRepo.exactRef("refs/remotes/origin/ready/feature").getObjectId());
+
+        Git.open(origin).branchDelete().setBranchNames("ready/feature").setForce(true).call();
+        assertTrue(new SharedObjectStore.Refresh("git", NO_ENV, null, origin.getAbsolutePath(), refSpecs).invoke(store, null));
+        storeRepo = new FileRepositoryBuilder().setGitDir(store).build();
+        assertNull("A branch deleted on the remote should be pruned.", storeRepo.exactRef("refs/remotes/origin/ready/feature"));
+        assertTrue("Objects should never be pruned.", storeRepo.hasObject(commit));
+    }
+}
@@ -0,0 +1,65 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.TrialMergeCallback;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TrialMergeCallbackIT {
+
+    private static final String FOLDER_PREFIX = "TrialMerge_";
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            TestUtilsFactory.destroyDirectory(dir);
+        } catch (Exception e) {
+            System.out.format("WARNING: Could not delete the dir: " + dir.getAbsolutePath());
+        }
+    }
+
+    @Test
+    public void finds_conflicting_paths_without_touching_the_repository() throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + "conflict");
+        Git git = Git.init().setDirectory(dir).call();
+
+        FileUtils.writeStringToFile(new File(dir, "file"), "master commit 1");
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("master commit 1").call();
+
+        // A clean branch and a conflicting branch
+        git.checkout().setCreateBranch(true).setName("clean").call();
+        FileUtils.writeStringToFile(new File(dir, "other"), "clean commit");
+        git.add().addFilepattern("other").call();
+        ObjectId cleanCommit = git.commit().setMessage("clean commit").call();
+
+        git.checkout().setName("master").call();
+        git.checkout().setCreateBranch(true).setName("conflict").call();
+        FileUtils.writeStringToFile(new File(dir, "file"), "conflict commit");
+        git.add().addFilepattern("file").call();
+        ObjectId conflictCommit = git.commit().setMessage("conflict commit").call();
+
+        git.checkout().setName("master").call();
+        FileUtils.writeStringToFile(new File(dir, "file"), "master commit 2");
+        git.add().addFilepattern("file").call();
+        ObjectId masterHead = git.commit().setMessage("master commit 2").call();
+
+        assertTrue("Clean merge should not report conflicts.", new TrialMergeCallback(cleanCommit, "master").invoke(git.getRepository(), null).isEmpty());
+
+        List<String> conflicts = new TrialMergeCallback(conflictCommit, "master").invoke(git.getRepository(), null);
+        assertEquals("Expected one conflicting path.", 1, conflicts.size());
+        assertEquals("Expected the conflicting path.", "file", conflicts.get(0));
+
+        assertEquals("Branch should not move.", masterHead, git.getRepository().resolve("master"));
+        assertTrue("Worktree should be untouched.", git.status().call().isClean());
+    }
+}
@@ -0,0 +1,67 @@
+package org.jenkinsci.plugins.pretestedintegration.integration.scm.git;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.WorkspaceMaintenanceCallback;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class WorkspaceMaintenanceCallbackIT {
+
+    private static final String FOLDER_PREFIX = "WorkspaceMaintenance_";
+    private File dir;
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            TestUtilsFactory.destroyDirectory(dir);
+        } catch (Exception e) {
+            System.out.format("WARNING: Could not delete the dir: " + dir.getAbsolutePath());
+        }
+    }
+
+    private Repository createRepository(String name) throws Exception {
+        dir = new File(TestUtilsFactory.WORKDIR, FOLDER_PREFIX + name);
+        Git git = Git.init().setDirectory(dir).call();
+        FileUtils.writeStringToFile(new File(dir, "file"), "commit");
+        git.add().addFilepattern("file").call();
+        git.commit().setMessage("commit").call();
+        git.branchCreate().setName("ready/one").call();
+        git.branchCreate().setName("ready/two").call();
+        return git.getRepository();
+    }
+
+    @Test
+    public void packs_refs_once_per_interval() throws Exception {
+        Repository repo = createRepository("interval");
+        File looseRef = new File(repo.getDirectory(), "refs/heads/ready/one");
+        assertTrue(looseRef.exists());
+
+        WorkspaceMaintenanceCallback maintenance = new WorkspaceMaintenanceCallback("git", TimeUnit.HOURS.toMillis(1));
+        assertTrue("First run should be due.", maintenance.invoke(repo, null));
+        assertFalse("Loose refs should be packed.", looseRef.exists());
+        assertTrue(new File(repo.getDirectory(), "packed-refs").exists());
+        assertNotNull(repo.exactRef("refs/heads/ready/one"));
+
+        assertFalse("Second run within the interval should be skipped.", maintenance.invoke(repo, null));
+    }
+
+    @Test
+    public void runs_again_after_the_interval() throws Exception {
+        Repository repo = createRepository("again");
+        WorkspaceMaintenanceCallback maintenance = new WorkspaceMaintenanceCallback("git", TimeUnit.HOURS.toMillis(1));
+        assertTrue(maintenance.invoke(repo, null));
+
+        File marker = new File(repo.getDirectory(), "pretested-maintenance");
+        assertTrue(marker.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+        assertTrue("Should be due once the interval has passed.", maintenance.invoke(repo, null));
+    }
+}
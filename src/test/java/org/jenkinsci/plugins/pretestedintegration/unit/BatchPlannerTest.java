@@ -0,0 +1,99 @@
+package org.jenkinsci.plugins.pretestedintegration.unit;
+
+import hudson.plugins.git.Branch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.BatchIntegrationAction;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.BatchPlanner;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class BatchPlannerTest {
+
+    private static final String SHA_A = "1111111111111111111111111111111111111111";
+    private static final String SHA_B = "2222222222222222222222222222222222222222";
+    private static final String SHA_C = "3333333333333333333333333333333333333333";
+    private static final String SHA_D = "4444444444444444444444444444444444444444";
+
+    private final Branch a = branch("origin/ready/a", SHA_A);
+    private final Branch b = branch("origin/ready/b", SHA_B);
+    private final Branch c = branch("origin/ready/c", SHA_C);
+    private final Branch d = branch("origin/ready/d", SHA_D);
+
+    @Test
+    public void triggering_branch_goes_first_and_the_rest_by_name() {
+        List<Branch> plan = BatchPlanner.plan(c, Arrays.asList(d, a, c, b), null, false, Collections.<String>emptySet(), 0);
+        assertEquals(Arrays.asList("origin/ready/c", "origin/ready/a", "origin/ready/b", "origin/ready/d"), names(plan));
+    }
+
+    @Test
+    public void batch_size_is_capped() {
+        List<Branch> plan = BatchPlanner.plan(c, Arrays.asList(a, b, c, d), null, false, Collections.<String>emptySet(), 2);
+        assertEquals(Arrays.asList("origin/ready/c", "origin/ready/a"), names(plan));
+    }
+
+    @Test
+    public void failed_batch_is_halved_around_the_triggering_branch() {
+        BatchIntegrationAction failed = batch(a, b, c, d);
+        List<Branch> pending = Arrays.asList(a, b, c, d);
+        assertEquals(Arrays.asList("origin/ready/b", "origin/ready/a"),
+                names(BatchPlanner.plan(b, pending, failed, true, Collections.<String>emptySet(), 0)));
+        assertEquals(Arrays.asList("origin/ready/d", "origin/ready/c"),
+                names(BatchPlanner.plan(d, pending, failed, true, Collections.<String>emptySet(), 0)));
+    }
+
+    @Test
+    public void successful_batch_is_not_halved() {
+        List<Branch> plan = BatchPlanner.plan(a, Arrays.asList(a, b, c, d), batch(a, b, c, d), false, Collections.<String>emptySet(), 0);
+        assertEquals(4, plan.size());
+    }
+
+    @Test
+    public void branch_failing_on_its_own_is_excluded_until_it_changes() {
+        BatchIntegrationAction failed = batch(b);
+        List<String> excluded = BatchPlanner.excludedAfter(failed, true, Arrays.asList(a, b, c));
+        assertEquals(Collections.singletonList(BatchPlanner.key(b)), excluded);
+        List<Branch> plan = BatchPlanner.plan(a, Arrays.asList(a, b, c), failed, true, new HashSet<>(excluded), 0);
+        assertEquals(Arrays.asList("origin/ready/a", "origin/ready/c"), names(plan));
+
+        // New commits on the branch give it another chance
+        Branch changed = branch("origin/ready/b", SHA_D);
+        assertTrue(BatchPlanner.excludedAfter(failed, true, Arrays.asList(a, changed, c)).isEmpty());
+    }
+
+    @Test
+    public void exclusions_are_carried_over_by_later_batches() {
+        BatchIntegrationAction passed = new BatchIntegrationAction(Arrays.asList("origin/ready/a"), Arrays.asList(SHA_A),
+                Collections.singletonList(BatchPlanner.key(b)));
+        assertEquals(Collections.singletonList(BatchPlanner.key(b)), BatchPlanner.excludedAfter(passed, false, Arrays.asList(b, c)));
+        assertTrue(BatchPlanner.excludedAfter(passed, false, Arrays.asList(c)).isEmpty());
+    }
+
+    private static Branch branch(String name, String sha) {
+        return new Branch(name, ObjectId.fromString(sha));
+    }
+
+    private static BatchIntegrationAction batch(Branch... branches) {
+        List<String> names = new ArrayList<>();
+        List<String> commits = new ArrayList<>();
+        for (Branch branch : branches) {
+            names.add(branch.getName());
+            commits.add(branch.getSHA1String());
+        }
+        return new BatchIntegrationAction(names, commits, Collections.<String>emptyList());
+    }
+
+    private static List<String> names(List<Branch> branches) {
+        List<String> names = new ArrayList<>();
+        for (Branch branch : branches) {
+            names.add(branch.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,119 @@
+package org.jenkinsci.plugins.pretestedintegration.unit;
+
+import static junit.framework.TestCase.assertEquals;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.regex.Pattern;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.CommitMessageFormatter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommitMessageFormatterTest {
+
+    private static final String NL = System.getProperty("line.separator");
+
+    private TimeZone defaultTimeZone;
+
+    @Before
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    @Test
+    public void formatsLikeGitSquashMessage() {
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Copenhagen"));
+        StringBuilder sb = new StringBuilder();
+        CommitMessageFormatter.appendCommit(sb, "4cd6f0d6e5b6e7a5a3c3d5c1b4a2f7e8d9c0b1a2", "john Doe", "Joh@praqma.net", 1442321765, "Subject" + NL + NL + "- bullet");
+        String expected = "commit 4cd6f0d6e5b6e7a5a3c3d5c1b4a2f7e8d9c0b1a2" + NL
+                + "Author: john Doe <Joh@praqma.net>" + NL
+                + "Date:   Tue Sep 15 14:56:05 2015 +0200" + NL
+                + NL
+                + "    Subject" + NL
+                + "    " + NL
+                + "    - bullet" + NL
+                + NL;
+        assertEquals(expected, sb.toString());
+    }
+
+    @Test
+    public void formatsSquashedCommitWithAuthorDateInAuthorTimeZone() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        StringBuilder sb = new StringBuilder();
+        // Midnight for an author in UTC-7, which git shows as 00, not 24
+        CommitMessageFormatter.appendCommit(sb, "4cd6f0d6e5b6e7a5a3c3d5c1b4a2f7e8d9c0b1a2", "john Doe", "Joh@praqma.net", 1442300400L, -420, "Subject");
+        String expected = "commit 4cd6f0d6e5b6e7a5a3c3d5c1b4a2f7e8d9c0b1a2" + NL
+                + "Author: john Doe <Joh@praqma.net>" + NL
+                + "Date:   Tue Sep 15 00:00:00 2015 -0700" + NL
+                + NL
+                + "    Subject" + NL
+                + NL;
+        assertEquals(expected, sb.toString());
+    }
+
+    @Test
+    public void matchesPreviousFormattingByteForByte() {
+        Random random = new Random(42);
+        String[] zones = {"UTC", "Europe/Copenhagen", "America/New_York", "Asia/Kolkata", "Australia/Adelaide"};
+        String[] messages = {
+            "",
+            "Single line",
+            "Subject" + NL,
+            "Subject" + NL + NL + "Body with 100% $1 \\escapes" + NL + "  indented" + NL,
+            NL + NL + "leading blank lines",
+            "Tabs\tand \"quotes\"" + NL + "last"
+        };
+        for (String zone : zones) {
+            TimeZone.setDefault(TimeZone.getTimeZone(zone));
+            for (int i = 0; i < 200; i++) {
+                // Include midnight, where kk prints 24
+                int commitTime = i == 0 ? 0 : random.nextInt(Integer.MAX_VALUE);
+                String message = messages[i % messages.length];
+                StringBuilder actual = new StringBuilder();
+                CommitMessageFormatter.appendCommit(actual, "sha" + i, "Author " + i, "author" + i + "@example.com", commitTime, message);
+                StringBuilder expected = new StringBuilder();
+                appendCommitPreviously(expected, "sha" + i, "Author " + i, "author" + i + "@example.com", commitTime, message);
+                assertEquals("Zone " + zone + ", time " + commitTime, expected.toString(), actual.toString());
+            }
+        }
+    }
+
+    /**
+     * The formatting used before CommitMessageFormatter, kept verbatim as the reference.
+     */
+    private static void appendCommitPreviously(StringBuilder sb, String sha, String authorName, String authorEmail, int commitTime, String fullMessage) {
+        sb.append(String.format("commit %s", sha));
+        sb.append(String.format("%n"));
+        sb.append(String.format("Author: %s <%s>", authorName, authorEmail));
+        sb.append(String.format("%n"));
+
+        Integer secondsSinceUnixEpoch = commitTime;
+        SimpleDateFormat formatter = new SimpleDateFormat("EEE MMM d kk:mm:ss yyyy ZZZZ", Locale.ENGLISH);
+        Date commitDate = new Date(secondsSinceUnixEpoch * 1000L);
+        String asString = formatter.format(commitDate);
+        sb.append(String.format("Date:   %s", asString));
+
+        sb.append(String.format("%n"));
+        sb.append(String.format("%n"));
+
+        String newlinechar = System.getProperty("line.separator");
+        Integer numberOfSpaces = 4;
+        String indentation = String.format("%" + numberOfSpaces + "s", "");
+        Pattern myregexp = Pattern.compile(newlinechar, Pattern.MULTILINE);
+
+        String newstring = myregexp.matcher(fullMessage).replaceAll(newlinechar + indentation);
+
+        sb.append(String.format(indentation + "%s", newstring));
+        sb.append(String.format("%n"));
+        sb.append(String.format("%n"));
+    }
+}
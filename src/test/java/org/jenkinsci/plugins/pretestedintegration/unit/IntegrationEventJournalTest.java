@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.pretestedintegration.unit;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.IntegrationEventJournal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class IntegrationEventJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> lines(File file) throws Exception {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void events_are_appended_as_lines_in_order() throws Exception {
+        File file = new File(folder.getRoot(), "events/integration-events.jsonl");
+        IntegrationEventJournal journal = new IntegrationEventJournal(file, 1024 * 1024, 3);
+        for (int i = 0; i < 1000; i++) {
+            journal.append("{\"run\":" + i + "}");
+        }
+        journal.flush();
+
+        List<String> lines = lines(file);
+        assertEquals(1000, lines.size());
+        assertEquals("{\"run\":0}", lines.get(0));
+        assertEquals("{\"run\":999}", lines.get(999));
+        assertEquals(0, journal.getDropped());
+    }
+
+    @Test
+    public void a_new_journal_appends_to_the_existing_file() throws Exception {
+        File file = new File(folder.getRoot(), "integration-events.jsonl");
+        Files.write(file.toPath(), "{\"run\":1}\n".getBytes(StandardCharsets.UTF_8));
+        IntegrationEventJournal journal = new IntegrationEventJournal(file, 1024 * 1024, 3);
+        journal.append("{\"run\":2}");
+        journal.flush();
+
+        assertEquals(Arrays.asList("{\"run\":1}", "{\"run\":2}"), lines(file));
+    }
+
+    @Test
+    public void full_files_are_rotated_and_the_oldest_deleted() throws Exception {
+        File file = new File(folder.getRoot(), "integration-events.jsonl");
+        // Each event is 10 bytes with its line break, so a file holds two
+        IntegrationEventJournal journal = new IntegrationEventJournal(file, 20, 3);
+        for (int i = 0; i < 8; i++) {
+            journal.append("{\"run\":" + i + "}");
+            // One at a time, so the writer does not batch them into one oversized write
+            journal.flush();
+        }
+
+        assertEquals(Arrays.asList("{\"run\":6}", "{\"run\":7}"), lines(file));
+        assertEquals(Arrays.asList("{\"run\":4}", "{\"run\":5}"), lines(new File(file.getPath() + ".1")));
+        assertEquals(Arrays.asList("{\"run\":2}", "{\"run\":3}"), lines(new File(file.getPath() + ".2")));
+        assertFalse(new File(file.getPath() + ".3").exists());
+    }
+
+    @Test
+    public void flush_returns_at_once_without_events() throws Exception {
+        IntegrationEventJournal journal = new IntegrationEventJournal(new File(folder.getRoot(), "integration-events.jsonl"), 1024, 1);
+        journal.flush();
+        assertTrue(journal.getFile().getName().endsWith(".jsonl"));
+    }
+}
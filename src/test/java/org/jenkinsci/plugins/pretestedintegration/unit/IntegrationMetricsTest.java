@@ -0,0 +1,84 @@
+package org.jenkinsci.plugins.pretestedintegration.unit;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.BranchMetrics;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.IntegrationMetrics;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class IntegrationMetricsTest {
+
+    private final IntegrationMetrics metrics = new IntegrationMetrics(false);
+    private final String key = IntegrationMetrics.key("folder/job", "master");
+
+    @Test
+    public void rates_are_shares_of_started_integrations_and_pushes() {
+        for (int i = 0; i < 10; i++) {
+            metrics.started(key);
+        }
+        metrics.nothingToDo(key);
+        metrics.conflict(key);
+        metrics.conflict(key);
+        metrics.pushRejected(key);
+        for (int i = 0; i < 3; i++) {
+            metrics.pushed(key, Collections.<Long>emptyList());
+        }
+
+        BranchMetrics branch = metrics.find(key);
+        assertEquals("folder/job#master", branch.getKey());
+        assertEquals(10, branch.getIntegrationsStarted());
+        assertEquals(3, branch.getIntegrationsPushed());
+        assertEquals(3, branch.getIntegrationsLastHour());
+        assertEquals(0.1, branch.getNothingToDoRate(), 1e-9);
+        assertEquals(0.2, branch.getConflictRate(), 1e-9);
+        assertEquals(1, branch.getPushesRejected());
+        assertEquals(0.25, branch.getPushRejectRate(), 1e-9);
+    }
+
+    @Test
+    public void latency_is_measured_from_the_commit_times() {
+        long now = System.currentTimeMillis();
+        metrics.pushed(key, Arrays.asList(now - TimeUnit.MINUTES.toMillis(10), now - TimeUnit.MINUTES.toMillis(20)));
+
+        BranchMetrics branch = metrics.find(key);
+        long max = branch.getLatencyMaxMillis();
+        assertTrue("Latency was " + max, max >= TimeUnit.MINUTES.toMillis(20) && max < TimeUnit.MINUTES.toMillis(21));
+        assertTrue(branch.getLatencyMedianMillis() <= max);
+    }
+
+    @Test
+    public void branches_are_kept_apart() {
+        metrics.started(key);
+        metrics.started(IntegrationMetrics.key("folder/job", "release"));
+        assertEquals(2, metrics.getBranches().size());
+        assertEquals(1, metrics.find(key).getIntegrationsStarted());
+        assertNull(metrics.find(IntegrationMetrics.key("other", "master")));
+    }
+
+    @Test
+    public void the_job_is_read_back_from_the_key() {
+        assertEquals("folder/job", IntegrationMetrics.jobOf(key));
+        assertEquals("job", IntegrationMetrics.jobOf(IntegrationMetrics.key("job", "feature#1")));
+    }
+
+    @Test
+    public void removing_a_job_or_folder_drops_only_its_branches() {
+        metrics.started(key);
+        metrics.started(IntegrationMetrics.key("folder/job", "release"));
+        metrics.started(IntegrationMetrics.key("folder/jobs", "master"));
+        metrics.started(IntegrationMetrics.key("other", "master"));
+
+        assertEquals(2, metrics.remove("folder/job"));
+        assertNull(metrics.find(key));
+        assertEquals(2, metrics.getBranches().size());
+
+        assertEquals(1, metrics.remove("folder"));
+        assertNull(metrics.find(IntegrationMetrics.key("folder/jobs", "master")));
+        assertEquals(1, metrics.getBranches().size());
+    }
+}
@@ -0,0 +1,43 @@
+package org.jenkinsci.plugins.pretestedintegration.unit;
+
+import java.util.List;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.IntegrationTimingAction;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class IntegrationTimingActionTest {
+
+    @Test
+    public void repeated_phases_add_up_in_the_order_they_first_ran() {
+        IntegrationTimingAction timings = new IntegrationTimingAction();
+        timings.add(IntegrationTimingAction.COUNT_COMMITS, 5);
+        timings.add(IntegrationTimingAction.MERGE, 20);
+        timings.add(IntegrationTimingAction.COUNT_COMMITS, 7);
+
+        List<IntegrationTimingAction.Phase> phases = timings.getPhases();
+        assertEquals(2, phases.size());
+        assertEquals(IntegrationTimingAction.COUNT_COMMITS, phases.get(0).getName());
+        assertEquals(12, phases.get(0).getMillis());
+        assertEquals(2, phases.get(0).getCount());
+        assertEquals(IntegrationTimingAction.MERGE, phases.get(1).getName());
+        assertEquals(32, timings.getTotalMillis());
+    }
+
+    @Test
+    public void table_has_a_row_per_phase_and_a_total() {
+        IntegrationTimingAction timings = new IntegrationTimingAction();
+        timings.add(IntegrationTimingAction.PUSH, 1200);
+        timings.add(IntegrationTimingAction.DELETE_BRANCH, 300);
+
+        List<String> table = timings.formatTable();
+        assertEquals(4, table.size());
+        assertTrue(table.get(0).startsWith("Phase"));
+        assertTrue(table.get(1).startsWith(IntegrationTimingAction.PUSH));
+        assertTrue(table.get(1).endsWith("1200"));
+        assertTrue(table.get(3).startsWith("Total"));
+        assertTrue(table.get(3).endsWith("1500"));
+        assertEquals("Columns should line up.", table.get(0).length(), table.get(2).length());
+    }
+}
@@ -0,0 +1,43 @@
+package org.jenkinsci.plugins.pretestedintegration.unit;
+
+import java.util.List;
+import org.eclipse.jgit.transport.RefSpec;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.PretestedIntegrationAsGitPluginExt;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class NarrowRefSpecsTest {
+
+    @Test
+    public void fetches_integration_branch_and_prefixed_branches_only() {
+        List<RefSpec> refSpecs = PretestedIntegrationAsGitPluginExt.narrowRefSpecs("origin", "master", "ready/");
+
+        assertEquals(2, refSpecs.size());
+        assertEquals("+refs/heads/master:refs/remotes/origin/master", refSpecs.get(0).toString());
+        assertEquals("+refs/heads/ready/*:refs/remotes/origin/ready/*", refSpecs.get(1).toString());
+        assertTrue(matchesAny(refSpecs, "refs/heads/master"));
+        assertTrue(matchesAny(refSpecs, "refs/heads/ready/feature"));
+        assertFalse(matchesAny(refSpecs, "refs/heads/feature"));
+        assertFalse(matchesAny(refSpecs, "refs/heads/master-old"));
+    }
+
+    @Test
+    public void maps_to_the_remote_tracking_branches_of_the_remote() {
+        List<RefSpec> refSpecs = PretestedIntegrationAsGitPluginExt.narrowRefSpecs("upstream", "release/1.0", "ready/");
+
+        assertEquals("refs/remotes/upstream/release/1.0", refSpecs.get(0).expandFromSource("refs/heads/release/1.0").getDestination());
+        assertEquals("refs/remotes/upstream/ready/x", refSpecs.get(1).expandFromSource("refs/heads/ready/x").getDestination());
+    }
+
+    private static boolean matchesAny(List<RefSpec> refSpecs, String ref) {
+        for (RefSpec refSpec : refSpecs) {
+            if (refSpec.matchSource(ref)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
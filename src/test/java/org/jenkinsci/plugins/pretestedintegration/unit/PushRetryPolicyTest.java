@@ -0,0 +1,62 @@
+package org.jenkinsci.plugins.pretestedintegration.unit;
+
+import java.util.Random;
+
+import org.jenkinsci.plugins.pretestedintegration.scm.git.PushRetryPolicy;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class PushRetryPolicyTest {
+
+    @Test
+    public void delays_stay_within_the_exponential_cap() {
+        PushRetryPolicy policy = new PushRetryPolicy(10, 1000, 8000, 0);
+        Random random = new Random(42);
+        long[] caps = {1000, 2000, 4000, 8000, 8000, 8000};
+        for (int retry = 1; retry <= caps.length; retry++) {
+            long max = 0;
+            for (int i = 0; i < 1000; i++) {
+                long delay = policy.delayBeforeRetry(retry, random);
+                assertTrue("Delay should not be negative.", delay >= 0);
+                assertTrue("Delay " + delay + " should not exceed " + caps[retry - 1], delay <= caps[retry - 1]);
+                max = Math.max(max, delay);
+            }
+            assertTrue("Delays should spread over the whole range.", max > caps[retry - 1] / 2);
+        }
+    }
+
+    @Test
+    public void large_retry_counts_do_not_overflow() {
+        PushRetryPolicy policy = new PushRetryPolicy(Integer.MAX_VALUE, 1000, 30000, 0);
+        long delay = policy.delayBeforeRetry(Integer.MAX_VALUE, new Random(1));
+        assertTrue("Delay should stay capped.", delay >= 0 && delay <= 30000);
+    }
+
+    @Test
+    public void stops_when_retries_are_used_up() {
+        PushRetryPolicy policy = new PushRetryPolicy(2, 0, 0, 0);
+        assertTrue(policy.allowsRetry(1, 0, 0));
+        assertTrue(policy.allowsRetry(2, 0, 0));
+        assertFalse(policy.allowsRetry(3, 0, 0));
+        assertFalse("No retries at all.", PushRetryPolicy.NO_RETRIES.allowsRetry(1, 0, 0));
+    }
+
+    @Test
+    public void stops_when_the_budget_would_be_exceeded() {
+        PushRetryPolicy policy = new PushRetryPolicy(5, 1000, 8000, 10000);
+        assertTrue(policy.allowsRetry(1, 5000, 4000));
+        assertFalse("Waiting would end past the budget.", policy.allowsRetry(1, 5000, 5000));
+        assertTrue("No budget means no limit.", new PushRetryPolicy(5, 1000, 8000, 0).allowsRetry(5, Long.MAX_VALUE / 2, 8000));
+    }
+
+    @Test
+    public void negative_values_are_treated_as_zero() {
+        PushRetryPolicy policy = new PushRetryPolicy(-1, -1, -1, -1);
+        assertEquals(0, policy.getMaxRetries());
+        assertEquals(0, policy.delayBeforeRetry(1, new Random(1)));
+        assertEquals(0, policy.getBudgetMillis());
+    }
+}
@@ -0,0 +1,201 @@
+package org.jenkinsci.plugins.pretestedintegration.unit;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.SpeculativeChains;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.SpeculativeChains.Entry;
+import org.jenkinsci.plugins.pretestedintegration.scm.git.SpeculativeChains.State;
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class SpeculativeChainsTest {
+
+    private final SpeculativeChains chains = SpeculativeChains.get();
+    private final String key = SpeculativeChains.chainKey("job-" + System.nanoTime(), "master");
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void builds_integrate_on_top_of_the_build_before_them() throws Exception {
+        Entry first = chains.join(key, "job#1", "origin/ready/a");
+        assertNull(chains.awaitBase(first));
+        chains.speculate(first, "refs/pretested/master/job/1", "1111");
+
+        Entry second = chains.join(key, "job#2", "origin/ready/b");
+        assertSame(first, chains.awaitBase(second));
+        assertEquals(State.SPECULATING, first.getState());
+    }
+
+    @Test
+    public void build_waits_until_the_build_before_it_has_integrated() throws Exception {
+        final Entry first = chains.join(key, "job#1", "origin/ready/a");
+        final Entry second = chains.join(key, "job#2", "origin/ready/b");
+        Future<Entry> base = executor.submit(new Callable<Entry>() {
+            @Override
+            public Entry call() throws Exception {
+                return chains.awaitBase(second);
+            }
+        });
+        assertStillWaiting(base);
+        chains.speculate(first, "refs/pretested/master/job/1", "1111");
+        assertSame(first, base.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void builds_push_in_order() throws Exception {
+        Entry first = chains.join(key, "job#1", "origin/ready/a");
+        chains.awaitBase(first);
+        chains.speculate(first, "refs/pretested/master/job/1", "1111");
+        final Entry second = chains.join(key, "job#2", "origin/ready/b");
+        chains.awaitBase(second);
+        chains.speculate(second, "refs/pretested/master/job/2", "2222");
+
+        Future<Boolean> mayPush = executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return chains.awaitPromotion(second);
+            }
+        });
+        assertStillWaiting(mayPush);
+        assertTrue(chains.awaitPromotion(first));
+        chains.promote(first);
+        assertTrue(mayPush.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failure_invalidates_the_builds_on_top_of_it() throws Exception {
+        Entry first = chains.join(key, "job#1", "origin/ready/a");
+        chains.awaitBase(first);
+        chains.speculate(first, "refs/pretested/master/job/1", "1111");
+        Entry second = chains.join(key, "job#2", "origin/ready/b");
+        chains.awaitBase(second);
+        chains.speculate(second, "refs/pretested/master/job/2", "2222");
+        Entry third = chains.join(key, "job#3", "origin/ready/c");
+        chains.awaitBase(third);
+
+        List<Entry> invalidated = chains.fail(first);
+        assertEquals(Arrays.asList(second, third), invalidated);
+        assertFalse(chains.awaitPromotion(second));
+        assertFalse(chains.awaitPromotion(third));
+
+        // A build joining now skips the failed and invalidated builds
+        Entry fourth = chains.join(key, "job#4", "origin/ready/d");
+        assertNull(chains.awaitBase(fourth));
+        assertTrue(chains.awaitPromotion(fourth));
+    }
+
+    @Test
+    public void failure_does_not_invalidate_builds_on_top_of_an_earlier_build() throws Exception {
+        Entry first = chains.join(key, "job#1", "origin/ready/a");
+        chains.awaitBase(first);
+        chains.speculate(first, "refs/pretested/master/job/1", "1111");
+        Entry second = chains.join(key, "job#2", "origin/ready/b");
+        chains.awaitBase(second);
+        chains.speculate(second, "refs/pretested/master/job/2", "2222");
+        chains.fail(second);
+
+        Entry third = chains.join(key, "job#3", "origin/ready/c");
+        assertSame(first, chains.awaitBase(third));
+        chains.promote(first);
+        assertTrue(chains.awaitPromotion(third));
+        assertEquals(State.FAILED, second.getState());
+    }
+
+    @Test
+    public void abandoned_build_releases_the_builds_waiting_for_it() throws Exception {
+        Entry first = chains.join(key, "job#1", "origin/ready/a");
+        final Entry second = chains.join(key, "job#2", "origin/ready/b");
+        Future<Entry> base = executor.submit(new Callable<Entry>() {
+            @Override
+            public Entry call() throws Exception {
+                return chains.awaitBase(second);
+            }
+        });
+        assertStillWaiting(base);
+        chains.abandon("job#1");
+        assertNull(base.get(5, TimeUnit.SECONDS));
+        assertEquals(State.FAILED, first.getState());
+    }
+
+    @Test
+    public void finished_builds_are_dropped_from_the_chain() throws Exception {
+        Entry first = chains.join(key, "job#1", "origin/ready/a");
+        chains.awaitBase(first);
+        chains.speculate(first, "refs/pretested/master/job/1", "1111");
+        chains.promote(first);
+        assertTrue(chains.entries(key).isEmpty());
+        assertNull(chains.find(key, "job#1"));
+    }
+
+    @Test
+    public void build_stops_waiting_for_a_build_that_does_not_integrate() throws Exception {
+        Entry first = chains.join(key, "job#1", "origin/ready/a");
+        Entry second = chains.join(key, "job#2", "origin/ready/b");
+
+        assertNull(chains.awaitBase(second, 100));
+        assertEquals(State.FAILED, first.getState());
+    }
+
+    @Test
+    public void build_failed_while_waiting_stops_waiting() throws Exception {
+        Entry first = chains.join(key, "job#1", "origin/ready/a");
+        final Entry second = chains.join(key, "job#2", "origin/ready/b");
+        Future<Entry> base = executor.submit(new Callable<Entry>() {
+            @Override
+            public Entry call() throws Exception {
+                return chains.awaitBase(second, TimeUnit.MINUTES.toMillis(1));
+            }
+        });
+        assertStillWaiting(base);
+
+        // The third build gives up on the second and then on the first, which empties the chain
+        Entry third = chains.join(key, "job#3", "origin/ready/c");
+        assertNull(chains.awaitBase(third, 100));
+        assertEquals(State.FAILED, first.getState());
+        assertEquals(State.FAILED, second.getState());
+        assertNull("A failed build should not integrate on top of anything.", base.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void build_waiting_too_long_for_a_push_invalidates_the_chain() throws Exception {
+        Entry first = chains.join(key, "job#1", "origin/ready/a");
+        chains.awaitBase(first);
+        chains.speculate(first, "refs/pretested/master/job/1", "1111");
+        Entry second = chains.join(key, "job#2", "origin/ready/b");
+        chains.awaitBase(second);
+        chains.speculate(second, "refs/pretested/master/job/2", "2222");
+        Entry third = chains.join(key, "job#3", "origin/ready/c");
+        chains.awaitBase(third);
+
+        assertFalse(chains.awaitPromotion(second, 100));
+        assertEquals(State.FAILED, first.getState());
+        assertEquals(State.INVALIDATED, second.getState());
+        assertEquals(State.INVALIDATED, third.getState());
+    }
+
+    private static void assertStillWaiting(Future<?> future) throws Exception {
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+            fail("Should still be waiting.");
+        } catch (TimeoutException expected) {
+            // Still waiting
+        }
+    }
+}
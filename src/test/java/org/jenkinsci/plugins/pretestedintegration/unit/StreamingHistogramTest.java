@@ -0,0 +1,56 @@
+package org.jenkinsci.plugins.pretestedintegration.unit;
+
+import org.jenkinsci.plugins.pretestedintegration.scm.git.StreamingHistogram;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class StreamingHistogramTest {
+
+    @Test
+    public void empty_histogram_reports_zero() {
+        StreamingHistogram histogram = new StreamingHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getQuantile(0.99));
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void quantiles_are_within_ten_percent() {
+        StreamingHistogram histogram = new StreamingHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 100);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(50050, histogram.getMean());
+        assertWithinTenPercent(50000, histogram.getQuantile(0.5));
+        assertWithinTenPercent(90000, histogram.getQuantile(0.9));
+        assertWithinTenPercent(99000, histogram.getQuantile(0.99));
+        assertEquals(100000, histogram.getQuantile(1.0));
+        assertEquals(100, histogram.getMin());
+    }
+
+    @Test
+    public void single_value_is_exact() {
+        StreamingHistogram histogram = new StreamingHistogram();
+        histogram.record(1234);
+        assertEquals(1234, histogram.getQuantile(0.5));
+        assertEquals(1234, histogram.getQuantile(0.99));
+    }
+
+    @Test
+    public void huge_and_negative_values_are_kept_in_range() {
+        StreamingHistogram histogram = new StreamingHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE / 2);
+        assertEquals(0, histogram.getMin());
+        assertEquals(Long.MAX_VALUE / 2, histogram.getMax());
+        assertEquals(Long.MAX_VALUE / 2, histogram.getQuantile(1.0));
+    }
+
+    private static void assertWithinTenPercent(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 10);
+    }
+}